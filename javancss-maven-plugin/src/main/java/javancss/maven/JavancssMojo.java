@@ -0,0 +1,289 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss.maven;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javancss.GeneratedSourceFilter;
+import javancss.IncrementalCache;
+import javancss.Javancss;
+import javancss.ParserPool;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Measures the sources of a module in the build JVM and writes a
+ * JavaNCSS report.<p>
+ *
+ * In incremental mode the result of each source file is cached in
+ * the build directory of the module, so a build parses only the files
+ * changed since the last one and is skipped when nothing changed.
+ * Each module has its own cache and report, and the modules of a
+ * build take their parsers from one pool, so a parser is created once
+ * per thread rather than once per module. Modules can be measured in
+ * parallel with <code>mvn -T</code>.
+ *
+ * @goal measure
+ * @phase verify
+ * @threadSafe
+ * @version $Id$
+ */
+public class JavancssMojo
+    extends AbstractMojo
+{
+    /**
+     * The parsers of all modules. The class is loaded once for the
+     * plugin in a build, so the pool lasts as long as the build and
+     * goes away with the plugin's class loader.
+     */
+    private static final ParserPool PARSERS = new ParserPool();
+
+    /**
+     * The source directories of the module.
+     *
+     * @parameter default-value="${project.compileSourceRoots}"
+     * @required
+     * @readonly
+     */
+    private List<String> sourceRoots;
+
+    /**
+     * The report file.
+     *
+     * @parameter expression="${javancss.outputFile}" default-value="${project.build.directory}/javancss/javancss.xml"
+     */
+    private File outputFile;
+
+    /**
+     * The format of the report, 'xml', 'html' or 'plain'.
+     *
+     * @parameter expression="${javancss.format}" default-value="xml"
+     */
+    private String format;
+
+    /**
+     * Whether only the files changed since the last build are parsed.
+     *
+     * @parameter expression="${javancss.incremental}" default-value="true"
+     */
+    private boolean incremental;
+
+    /**
+     * The directory the results of the single files are cached in.
+     *
+     * @parameter default-value="${project.build.directory}/javancss/cache"
+     */
+    private File cacheDirectory;
+
+    /**
+     * Whether generated sources, marked with "@Generated" or "DO NOT EDIT",
+     * are skipped.
+     *
+     * @parameter expression="${javancss.skipGenerated}" default-value="false"
+     */
+    private boolean skipGenerated;
+
+    /**
+     * The encoding of the source files, the platform encoding if not set.
+     *
+     * @parameter expression="${project.build.sourceEncoding}"
+     */
+    private String encoding;
+
+    /**
+     * Skips the measurement.
+     *
+     * @parameter expression="${javancss.skip}" default-value="false"
+     */
+    private boolean skip;
+
+    public void execute()
+        throws MojoExecutionException
+    {
+        if ( skip )
+        {
+            getLog().info( "Skipping JavaNCSS" );
+            return;
+        }
+
+        GeneratedSourceFilter filter = null;
+        if ( skipGenerated )
+        {
+            filter = new GeneratedSourceFilter();
+            filter.addDefaultMarkers();
+        }
+        List<File> vFiles = new ArrayList<File>();
+        List<File> vSkipped = new ArrayList<File>();
+        for ( String sRoot : sourceRoots )
+        {
+            findFiles( new File( sRoot ), filter, vFiles, vSkipped );
+        }
+        if ( !vSkipped.isEmpty() )
+        {
+            // the single files and reasons are logged at debug level
+            getLog().info( "Skipped " + vSkipped.size() + " generated source files" );
+        }
+        if ( vFiles.isEmpty() )
+        {
+            getLog().info( "No sources to measure" );
+            return;
+        }
+
+        Javancss javancss = null;
+        try
+        {
+            if ( incremental )
+            {
+                IncrementalCache cache = new IncrementalCache( cacheDirectory, encoding );
+                cache.setParserPool( PARSERS );
+                cache.load();
+                String sSettings = getSettings();
+                if ( cache.isUpToDate( vFiles, sSettings ) && outputFile.isFile() )
+                {
+                    getLog().info( "Metrics of " + vFiles.size() + " files are up to date" );
+                    return;
+                }
+                javancss = cache.measure( vFiles );
+                getLog().info( "Parsed " + cache.getParsedFiles() + " of " + vFiles.size() + " files" );
+                for ( File file : cache.getFailedFiles() )
+                {
+                    getLog().warn( "Could not parse " + file );
+                }
+                writeReport( javancss );
+                cache.save( cache.getFailedFiles().isEmpty() ? sSettings : null );
+            }
+            else
+            {
+                javancss = new Javancss();
+                javancss.setEncoding( encoding );
+                javancss.setParserPool( PARSERS );
+                javancss.measure( vFiles );
+                if ( javancss.getLastErrorMessage() != null )
+                {
+                    getLog().warn( javancss.getLastErrorMessage() );
+                }
+                writeReport( javancss );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Could not measure the sources: " + e.getMessage(), e );
+        }
+        finally
+        {
+            if ( javancss != null )
+            {
+                javancss.close();
+            }
+        }
+    }
+
+    /**
+     * Adds the source files below <code>dir</code> to <code>vFiles</code>
+     * in name order, leaving out those <code>filter</code> skips.
+     */
+    private void findFiles( File dir, GeneratedSourceFilter filter, List<File> vFiles, List<File> vSkipped )
+        throws MojoExecutionException
+    {
+        File[] files = dir.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        Arrays.sort( files );
+
+        for ( File file : files )
+        {
+            if ( file.isDirectory() )
+            {
+                findFiles( file, filter, vFiles, vSkipped );
+            }
+            else if ( file.getName().endsWith( ".java" ) )
+            {
+                try
+                {
+                    String sReason = filter == null ? null : filter.getSkipReason( file, encoding );
+                    if ( sReason == null )
+                    {
+                        vFiles.add( file );
+                    }
+                    else
+                    {
+                        vSkipped.add( file );
+                        getLog().debug( "Skipping " + file + " (" + sReason + ")" );
+                    }
+                }
+                catch ( IOException e )
+                {
+                    throw new MojoExecutionException( "Could not read " + file + ": " + e.getMessage(), e );
+                }
+            }
+        }
+    }
+
+    /**
+     * The settings which change the report, a build with other settings
+     * writes the report again.
+     */
+    private String getSettings()
+    {
+        return "format=" + format + " encoding=" + encoding + " skipGenerated=" + skipGenerated
+            + " out=" + outputFile.getAbsolutePath();
+    }
+
+    private void writeReport( Javancss javancss )
+        throws IOException
+    {
+        javancss.setXML( "xml".equals( format ) );
+        javancss.setHTML( "html".equals( format ) );
+        javancss.setReportFile( outputFile );
+
+        File dir = outputFile.getAbsoluteFile().getParentFile();
+        if ( dir != null && !dir.isDirectory() && !dir.mkdirs() )
+        {
+            throw new IOException( "could not create directory " + dir );
+        }
+        PrintWriter pw = new PrintWriter( new OutputStreamWriter( new FileOutputStream( outputFile ), "UTF-8" ) );
+        try
+        {
+            javancss.printStart( pw );
+            javancss.printPackageNcss( pw );
+            pw.println();
+            javancss.printObjectNcss( pw );
+            pw.println();
+            javancss.printFunctionNcss( pw );
+            javancss.printEnd( pw );
+        }
+        finally
+        {
+            pw.close();
+        }
+        getLog().info( "JavaNCSS report written to " + outputFile );
+    }
+}
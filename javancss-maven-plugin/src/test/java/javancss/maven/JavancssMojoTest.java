@@ -0,0 +1,208 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss.maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+/**
+ * Runs the mojo for a full, an up to date and an incremental build
+ * of a small module.
+ *
+ * @version $Id$
+ */
+public class JavancssMojoTest
+    extends TestCase
+{
+    private File _dir;
+    private File _sourceDir;
+    private File _report;
+    private final List<String> _vMessages = new ArrayList<String>();
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        _dir = new File( System.getProperty( "basedir", "." ), "target/mojo-test" );
+        delete( _dir );
+        _sourceDir = new File( _dir, "src/main/java" );
+        _report = new File( _dir, "target/javancss/javancss.xml" );
+        write( "p/A.java", "package p; class A { void f() { int i = 0; } }\n" );
+        write( "p/B.java", "package p; class B { void g() { int i = 0; } }\n" );
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        delete( _dir );
+        super.tearDown();
+    }
+
+    private static void delete( File file )
+    {
+        File[] files = file.listFiles();
+        if ( files != null )
+        {
+            for ( File child : files )
+            {
+                delete( child );
+            }
+        }
+        file.delete();
+    }
+
+    private void write( String sPath, String sContent )
+        throws IOException
+    {
+        File file = new File( _sourceDir, sPath );
+        file.getParentFile().mkdirs();
+        Writer w = new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" );
+        try
+        {
+            w.write( sContent );
+        }
+        finally
+        {
+            w.close();
+        }
+    }
+
+    private String readReport()
+        throws IOException
+    {
+        InputStream in = new FileInputStream( _report );
+        try
+        {
+            byte[] content = new byte[ (int) _report.length() ];
+            int length = 0;
+            int read;
+            while ( length < content.length && ( read = in.read( content, length, content.length - length ) ) > 0 )
+            {
+                length += read;
+            }
+
+            return new String( content, 0, length, "UTF-8" );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static void set( Object object, String sField, Object value )
+        throws Exception
+    {
+        Field field = object.getClass().getDeclaredField( sField );
+        field.setAccessible( true );
+        field.set( object, value );
+    }
+
+    private void execute( boolean incremental )
+        throws Exception
+    {
+        execute( incremental, false );
+    }
+
+    private void execute( boolean incremental, boolean skipGenerated )
+        throws Exception
+    {
+        JavancssMojo mojo = new JavancssMojo();
+        set( mojo, "skipGenerated", Boolean.valueOf( skipGenerated ) );
+        set( mojo, "sourceRoots", Collections.singletonList( _sourceDir.getPath() ) );
+        set( mojo, "outputFile", _report );
+        set( mojo, "format", "xml" );
+        set( mojo, "incremental", Boolean.valueOf( incremental ) );
+        set( mojo, "cacheDirectory", new File( _dir, "target/javancss/cache" ) );
+        set( mojo, "encoding", "UTF-8" );
+        mojo.setLog( new SystemStreamLog()
+        {
+            @Override
+            public void info( CharSequence message )
+            {
+                _vMessages.add( message.toString() );
+            }
+        } );
+        _vMessages.clear();
+        mojo.execute();
+    }
+
+    public void testFullBuild()
+        throws Exception
+    {
+        execute( false );
+        String sReport = readReport();
+        assertTrue( sReport, sReport.indexOf( "<name>p.A.f()</name>" ) >= 0 );
+        assertTrue( sReport, sReport.indexOf( "<name>p.B.g()</name>" ) >= 0 );
+        assertFalse( new File( _dir, "target/javancss/cache" ).exists() );
+    }
+
+    public void testIncrementalBuilds()
+        throws Exception
+    {
+        execute( true );
+        assertTrue( _vMessages.toString(), _vMessages.contains( "Parsed 2 of 2 files" ) );
+        String sReport = readReport();
+        assertTrue( sReport, sReport.indexOf( "<name>p.B.g()</name>" ) >= 0 );
+
+        // nothing changed, the report stays
+        long lastModified = _report.lastModified();
+        execute( true );
+        assertTrue( _vMessages.toString(), _vMessages.contains( "Metrics of 2 files are up to date" ) );
+        assertEquals( lastModified, _report.lastModified() );
+
+        // only the changed file is parsed again
+        File changed = new File( _sourceDir, "p/B.java" );
+        write( "p/B.java", "package p; class B { void h() { int i = 0; int j = 1; } }\n" );
+        changed.setLastModified( changed.lastModified() + 2000 );
+        execute( true );
+        assertTrue( _vMessages.toString(), _vMessages.contains( "Parsed 1 of 2 files" ) );
+        sReport = readReport();
+        assertTrue( sReport, sReport.indexOf( "<name>p.A.f()</name>" ) >= 0 );
+        assertTrue( sReport, sReport.indexOf( "<name>p.B.h()</name>" ) >= 0 );
+        assertEquals( sReport, -1, sReport.indexOf( "<name>p.B.g()</name>" ) );
+    }
+
+    public void testSkipGenerated()
+        throws Exception
+    {
+        write( "p/C.java", "// DO NOT EDIT\npackage p; class C { void k() { } }\n" );
+        execute( false, true );
+        assertTrue( _vMessages.toString(), _vMessages.contains( "Skipped 1 generated source files" ) );
+        String sReport = readReport();
+        assertTrue( sReport, sReport.indexOf( "<name>p.A.f()</name>" ) >= 0 );
+        assertEquals( sReport, -1, sReport.indexOf( "<name>p.C.k()</name>" ) );
+    }
+}
@@ -23,7 +23,9 @@ package javancss;
 import java.io.IOException;
 import java.io.Writer;
 import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
 import java.text.NumberFormat;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 
@@ -41,51 +43,9 @@ public class AsciiFormatter implements Formatter
 
     private final Javancss _javancss;
 
-    private String[] _header = null;
-    private int      _length = 0;
-    private int      _nr     = 0;
+    private final int[] _values = new int[ 4 ];
 
-    private NumberFormat _pNumberFormat = null;
-
-    private String _formatListHeader( int lines, String[] header )
-    {
-        _header = header;
-
-        _nr = 0;
-
-        StringBuilder sRetVal = new StringBuilder();
-
-        _length = String.valueOf( lines ).length();
-        int spaces = Math.max( 0, _length - LEN_NR );
-        _length = spaces + LEN_NR;
-        sRetVal.append( multiplyChar( ' ', spaces ) );
-        sRetVal.append( "Nr." );
-        for (String h : header)
-        {
-            sRetVal.append(' ').append(h);
-        }
-        sRetVal.append( NL );
-
-        return sRetVal.toString();
-    }
-
-    private String _formatListLine( String name, int[] value )
-    {
-        StringBuilder sLine = new StringBuilder();
-
-        _nr++;
-        sLine.append( pad( String.valueOf( _nr ), _length ) );
-        for( int index = 0; index < _header.length - 1; index++ )
-        {
-            sLine.append( ' ' );
-            sLine.append( pad( String.valueOf( value[index] ), _header[index].length() ) );
-        }
-        sLine.append( ' ' );
-        sLine.append( name );
-        sLine.append( NL );
-
-        return sLine.toString();
-    }
+    private final NumberFormat _pNumberFormat;
 
     private double _divide( int divident, int divisor )
     {
@@ -110,12 +70,11 @@ public class AsciiFormatter implements Formatter
     }
 
     private String _formatPackageMatrix( int packages
-                                         , int classesSum
-                                         , int functionsSum
-                                         , int javadocsSum
-                                         , int ncssSum      )
+                                         , long classesSum
+                                         , long functionsSum
+                                         , long javadocsSum
+                                         , long ncssSum      )
     {
-        ( (DecimalFormat) _pNumberFormat ).applyPattern( "###0.00" );
         int maxItemLength = _pNumberFormat.format( ncssSum ).length();
         maxItemLength = Math.max( 9, maxItemLength );
         String sRetVal =
@@ -152,8 +111,6 @@ public class AsciiFormatter implements Formatter
             + pad( _pNumberFormat.format( _divide( javadocsSum, functionsSum ) ), maxItemLength )
             + " | Function" + NL;
 
-        ((DecimalFormat)_pNumberFormat).applyPattern( "#,##0.00" );
-
         return sRetVal;
     }
 
@@ -161,8 +118,7 @@ public class AsciiFormatter implements Formatter
     {
         _javancss = javancss;
 
-        _pNumberFormat = NumberFormat.getInstance( Locale.US );
-        ((DecimalFormat)_pNumberFormat).applyPattern( "#,##0.00" );
+        _pNumberFormat = new DecimalFormat( "###0.00", new DecimalFormatSymbols( Locale.US ) );
     }
 
     public void printPackageNcss( Writer w )
@@ -172,31 +128,30 @@ public class AsciiFormatter implements Formatter
 
         int packages = vPackageMetrics.size();
 
-        w.write( _formatListHeader( packages
-                                            , new String[] {   "  Classes"
-                                                             , "Functions"
-                                                             , "     NCSS"
-                                                             , " Javadocs"
-                                                             , "Package" } ) );
-
-        int classesSum   = 0;
-        int functionsSum = 0;
-        int javadocsSum  = 0;
-        int ncssSum      = 0;
+        AsciiTableWriter table = new AsciiTableWriter( w, packages
+                                                       , new String[] {   "  Classes"
+                                                                        , "Functions"
+                                                                        , "     NCSS"
+                                                                        , " Javadocs"
+                                                                        , "Package" } );
+        table.writeHeader();
+
         for( PackageMetric pPackageMetric : vPackageMetrics )
         {
-            classesSum   += pPackageMetric.classes;
-            functionsSum += pPackageMetric.functions;
-            ncssSum      += pPackageMetric.ncss;
-            javadocsSum  += pPackageMetric.javadocs;
-            w.write( _formatListLine( pPackageMetric.name
-                                        , new int[] { pPackageMetric.classes
-                                                      , pPackageMetric.functions
-                                                      , pPackageMetric.ncss
-                                                      , pPackageMetric.javadocs
-                                        } ) );
+            _values[ 0 ] = pPackageMetric.classes;
+            _values[ 1 ] = pPackageMetric.functions;
+            _values[ 2 ] = pPackageMetric.ncss;
+            _values[ 3 ] = pPackageMetric.javadocs;
+            table.writeRow( pPackageMetric.name, _values );
         }
 
+        // of all packages, also when only the top ones are listed
+        Totals totals = _javancss.getTotals();
+        long classesSum   = totals.getPackageSum( MetricTable.CLASSES );
+        long functionsSum = totals.getPackageSum( MetricTable.FUNCTIONS );
+        long ncssSum      = totals.getPackageSum( MetricTable.NCSS );
+        long javadocsSum  = totals.getPackageSum( MetricTable.JAVADOCS );
+
         int packagesLength = String.valueOf( packages ).length();
         int spaces = Math.max( packagesLength, LEN_NR ) + 1;
         w.write( multiplyChar( ' ', spaces ) +
@@ -205,7 +160,7 @@ public class AsciiFormatter implements Formatter
         w.write( multiplyChar( ' ', spaces )
                 + String.format( "%9d %9d %9d %9d Total" + NL + NL, classesSum, functionsSum, ncssSum, javadocsSum ) );
 
-        w.write( _formatPackageMatrix( packages
+        w.write( _formatPackageMatrix( totals.getPackages()
                                          , classesSum
                                          , functionsSum
                                          , javadocsSum
@@ -227,48 +182,49 @@ public class AsciiFormatter implements Formatter
                 + "Average Object Functions:        %9.2f" + NL
                 + "Average Object Inner Classes:    %9.2f" + NL
                 + "Average Object Javadoc Comments: %9.2f" + NL
+                + "Object NCSS p50/p90/p99/max: %13s" + NL
                 + "Program NCSS:                    %,9.2f" + NL,
-                fAverageNcss, fAverageFuncs, fAverageClasses, fAverageJavadocs, (double) _javancss.getNcss() );
+                fAverageNcss, fAverageFuncs, fAverageClasses, fAverageJavadocs
+                , _javancss.getDistributions().objectNcss, (double) _javancss.getNcss() );
     }
 
     public void printObjectNcss( Writer w )
         throws IOException
     {
-        List<ObjectMetric> vObjectMetrics = _javancss.getObjectMetrics();
-
-        w.write( _formatListHeader( vObjectMetrics.size()
-                                            , new String[] { "NCSS"
-                                                             , "Functions"
-                                                             , "Classes"
-                                                             , "Javadocs"
-                                                             , "Class"     } ) );
-        long lFunctionSum = 0;
-        long lClassesSum  = 0;
-        long lObjectSum   = 0;
-        long lJVDCSum     = 0;
-        for ( ObjectMetric classMetric : vObjectMetrics )
+        final MetricTable objectTable = _javancss.getObjectTable();
+        final int objects = objectTable.size();
+        final String[] header = new String[] { "NCSS"
+                                               , "Functions"
+                                               , "Classes"
+                                               , "Javadocs"
+                                               , "Class"     };
+
+        new AsciiTableWriter( w, objects, header ).writeHeader();
+        ChunkedRowWriter.write( w, objects, ChunkedRowWriter.threads( objectTable, _javancss.getThreads() ), new ChunkedRowWriter.RowRenderer()
         {
-            String sClass = classMetric.name;
-            int objectNcss = classMetric.ncss;
-            int functions  = classMetric.functions;
-            int classes    = classMetric.classes;
-            int jvdcs      = classMetric.javadocs;
-            lObjectSum   += objectNcss;
-            lFunctionSum += functions;
-            lClassesSum  += classes;
-            lJVDCSum     += jvdcs;
-            w.write( _formatListLine( sClass
-                                        , new int[] { objectNcss
-                                                      , functions
-                                                      , classes
-                                                      , jvdcs     } ) );
-        }
-
-        w.write( _formatObjectResume( vObjectMetrics.size()
-                                        , lObjectSum
-                                        , lFunctionSum
-                                        , lClassesSum
-                                        , lJVDCSum            ) );
+            public void render( Writer chunk, int fromRow, int toRow )
+                throws IOException
+            {
+                AsciiTableWriter table = new AsciiTableWriter( chunk, objects, header );
+                table.setNextRow( fromRow + 1 );
+                int[] values = new int[ 4 ];
+                for ( int row = fromRow; row < toRow; row++ )
+                {
+                    values[ 0 ] = objectTable.getNcss( row );
+                    values[ 1 ] = objectTable.getFunctions( row );
+                    values[ 2 ] = objectTable.getClasses( row );
+                    values[ 3 ] = objectTable.getJavadocs( row );
+                    table.writeRow( objectTable.getName( row ), values );
+                }
+            }
+        } );
+
+        Totals totals = _javancss.getTotals();
+        w.write( _formatObjectResume( totals.getObjects()
+                                        , totals.getObjectSum( MetricTable.NCSS )
+                                        , totals.getObjectSum( MetricTable.FUNCTIONS )
+                                        , totals.getObjectSum( MetricTable.CLASSES )
+                                        , totals.getObjectSum( MetricTable.JAVADOCS ) ) );
     }
 
     private String _formatFunctionResume( int functions
@@ -280,48 +236,56 @@ public class AsciiFormatter implements Formatter
         double fAverageCCN  = _divide( lCCNSum     , functions );
         double fAverageJVDC = _divide( lJVDCSum    , functions );
 
+        // the labels of the percentiles are too long for the label column, they are aligned with each other
+        String sNcss = _javancss.getDistributions().functionNcss.toString();
+        String sCcn = _javancss.getDistributions().functionCcn.toString();
+        String sPercentiles = "%" + Math.max( sNcss.length(), sCcn.length() ) + "s";
+
         return String.format( Locale.US,
                   "Average Function NCSS: %10.2f" + NL 
                 + "Average Function CCN:  %10.2f" + NL
                 + "Average Function JVDC: %10.2f" + NL
+                + "Function NCSS p50/p90/p99/max: " + sPercentiles + NL
+                + "Function CCN p50/p90/p99/max:  " + sPercentiles + NL
                 + "Program NCSS:          %,10.2f" + NL,
-                fAverageNcss, fAverageCCN, fAverageJVDC, (double) _javancss.getNcss() );
+                fAverageNcss, fAverageCCN, fAverageJVDC, sNcss, sCcn
+                , (double) _javancss.getNcss() );
     }
 
     public void printFunctionNcss( Writer w )
         throws IOException
     {
-        List<FunctionMetric> vFunctionMetrics = _javancss.getFunctionMetrics();
-
-        w.write( _formatListHeader( vFunctionMetrics.size()
-                                           , new String[] { "NCSS"
-                                                            , "CCN"
-                                                            , "JVDC"
-                                                            , "Function" } ) );
-
-        long lFunctionSum = 0;
-        long lCCNSum      = 0;
-        long lJVDCSum     = 0;
-        for ( FunctionMetric functionMetric : vFunctionMetrics )
+        final MetricTable functionTable = _javancss.getFunctionTable();
+        final int functions = functionTable.size();
+        final String[] header = new String[] { "NCSS"
+                                               , "CCN"
+                                               , "JVDC"
+                                               , "Function" };
+
+        new AsciiTableWriter( w, functions, header ).writeHeader();
+        ChunkedRowWriter.write( w, functions, ChunkedRowWriter.threads( functionTable, _javancss.getThreads() ), new ChunkedRowWriter.RowRenderer()
         {
-            String sFunction = functionMetric.name;
-            int functionNcss = functionMetric.ncss;
-            int functionCCN  = functionMetric.ccn;
-            int functionJVDC = functionMetric.javadocs;
-
-            lFunctionSum += functionNcss;
-            lCCNSum      += functionCCN;
-            lJVDCSum     += functionJVDC;
-            w.write( _formatListLine( sFunction
-                                             , new int[] { functionNcss
-                                                           , functionCCN
-                                                           , functionJVDC } ) );
-        }
-
-        w.write( _formatFunctionResume( vFunctionMetrics.size()
-                                               , lFunctionSum
-                                               , lCCNSum
-                                               , lJVDCSum              ) );
+            public void render( Writer chunk, int fromRow, int toRow )
+                throws IOException
+            {
+                AsciiTableWriter table = new AsciiTableWriter( chunk, functions, header );
+                table.setNextRow( fromRow + 1 );
+                int[] values = new int[ 3 ];
+                for ( int row = fromRow; row < toRow; row++ )
+                {
+                    values[ 0 ] = functionTable.getNcss( row );
+                    values[ 1 ] = functionTable.getCcn( row );
+                    values[ 2 ] = functionTable.getJavadocs( row );
+                    table.writeRow( functionTable.getName( row ), values );
+                }
+            }
+        } );
+
+        Totals totals = _javancss.getTotals();
+        w.write( _formatFunctionResume( totals.getFunctions()
+                                               , totals.getFunctionSum( MetricTable.NCSS )
+                                               , totals.getFunctionSum( MetricTable.CCN )
+                                               , totals.getFunctionSum( MetricTable.JAVADOCS ) ) );
     }
 
     public void printJavaNcss( Writer w )
@@ -340,13 +304,10 @@ public class AsciiFormatter implements Formatter
 
     private String multiplyChar( char c, int count )
     {
-        String s;
-        for ( s = ""; count > 0; --count )
-        {
-            s = s + c;
-        }
+        char[] ac = new char[ Math.max( count, 0 ) ];
+        Arrays.fill( ac, c );
 
-        return s;
+        return new String( ac );
     }
 
     private String pad( String s, int count )
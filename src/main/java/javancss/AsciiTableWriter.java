@@ -0,0 +1,183 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the numbered lists of the ascii output. Column widths are
+ * taken from the header once, numbers are formatted right aligned
+ * into one reused line buffer, which is written to the Writer as a
+ * whole, so a row costs no allocation.
+ *
+ * @version $Id$
+ */
+class AsciiTableWriter
+{
+    private static final int LEN_NR = 3;
+    private static final String NL = System.getProperty( "line.separator" );
+
+    private final Writer _w;
+    private final String[] _header;
+    private final int _nrWidth;
+    private final int[] _widths;
+
+    private char[] _line = new char[ 256 ];
+    private int _position = 0;
+    private int _nr = 0;
+
+    /**
+     * @param rows    number of rows, gives the width of the "Nr." column
+     * @param header  titles of the value columns, followed by the title
+     *                of the name column; a value is padded to the width
+     *                of its title
+     */
+    AsciiTableWriter( Writer w, int rows, String[] header )
+    {
+        _w = w;
+        _header = header;
+        _nrWidth = Math.max( String.valueOf( rows ).length(), LEN_NR );
+        _widths = new int[ header.length - 1 ];
+        for ( int index = 0; index < _widths.length; index++ )
+        {
+            _widths[ index ] = header[ index ].length();
+        }
+    }
+
+    void writeHeader()
+        throws IOException
+    {
+        _position = 0;
+        appendSpaces( _nrWidth - LEN_NR );
+        append( "Nr." );
+        for ( String h : _header )
+        {
+            appendChar( ' ' );
+            append( h );
+        }
+        append( NL );
+        flushLine();
+    }
+
+    /**
+     * Sets the number the next row gets, for writing a part of a list.
+     */
+    void setNextRow( int nr )
+    {
+        _nr = nr - 1;
+    }
+
+    /**
+     * Writes the next row, values in the order of the header.
+     */
+    void writeRow( String name, int[] values )
+        throws IOException
+    {
+        _position = 0;
+        _nr++;
+        appendInt( _nr, _nrWidth );
+        for ( int index = 0; index < _widths.length; index++ )
+        {
+            appendChar( ' ' );
+            appendInt( values[ index ], _widths[ index ] );
+        }
+        appendChar( ' ' );
+        append( name );
+        append( NL );
+        flushLine();
+    }
+
+    private void flushLine()
+        throws IOException
+    {
+        _w.write( _line, 0, _position );
+    }
+
+    private void ensureCapacity( int additional )
+    {
+        if ( _position + additional > _line.length )
+        {
+            char[] line = new char[ Math.max( _line.length * 2, _position + additional ) ];
+            System.arraycopy( _line, 0, line, 0, _position );
+            _line = line;
+        }
+    }
+
+    private void appendChar( char c )
+    {
+        ensureCapacity( 1 );
+        _line[ _position++ ] = c;
+    }
+
+    private void appendSpaces( int count )
+    {
+        ensureCapacity( Math.max( count, 0 ) );
+        for ( int i = 0; i < count; i++ )
+        {
+            _line[ _position++ ] = ' ';
+        }
+    }
+
+    private void append( String s )
+    {
+        int length = s.length();
+        ensureCapacity( length );
+        s.getChars( 0, length, _line, _position );
+        _position += length;
+    }
+
+    /**
+     * Appends the decimal digits of <code>value</code>, padded on the
+     * left to <code>width</code>, like String.valueOf would print them.
+     */
+    private void appendInt( int value, int width )
+    {
+        long rest = value;
+        boolean negative = rest < 0;
+        if ( negative )
+        {
+            rest = -rest;
+        }
+        int digits = 1;
+        for ( long limit = 10; rest >= limit && digits < 19; limit *= 10 )
+        {
+            digits++;
+        }
+        int length = negative ? digits + 1 : digits;
+
+        appendSpaces( width - length );
+        ensureCapacity( length );
+        int end = _position + length;
+        int position = end;
+        do
+        {
+            _line[ --position ] = (char) ( '0' + rest % 10 );
+            rest /= 10;
+        }
+        while ( rest > 0 );
+        if ( negative )
+        {
+            _line[ --position ] = '-';
+        }
+        _position = end;
+    }
+}
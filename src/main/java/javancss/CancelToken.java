@@ -0,0 +1,62 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Asks a running measurement to stop. The parser's token manager
+ * looks at the token every few hundred tokens, so a measurement is
+ * aborted within the file being parsed instead of after it. An
+ * aborted measurement throws a CancellationException inside the
+ * parser; Javancss then drops the partial result and reports the
+ * run as cancelled.<p>
+ *
+ * A token may be shared by several measurements and cancelled
+ * from any thread.
+ *
+ * @version $Id$
+ */
+public class CancelToken
+{
+    private volatile boolean _bCancelled = false;
+
+    public void cancel()
+    {
+        _bCancelled = true;
+    }
+
+    public boolean isCancelled()
+    {
+        return _bCancelled;
+    }
+
+    /**
+     * @throws CancellationException  if the token has been cancelled
+     */
+    public void checkCancelled()
+    {
+        if ( _bCancelled )
+        {
+            throw new CancellationException( "measurement cancelled" );
+        }
+    }
+}
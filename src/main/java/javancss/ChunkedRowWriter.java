@@ -0,0 +1,152 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Renders the rows of a report section in chunks of CHUNK_ROWS
+ * rows on several threads and writes the chunks in row order, so
+ * the output is the same as rendering all rows on one thread.<p>
+ *
+ * Each chunk is rendered into its own buffer; at most two chunks
+ * per thread are buffered at any time. Small sections and a thread
+ * count of one render directly into the target Writer. Tables with
+ * spilled rows are rendered on one thread, see threads().
+ *
+ * @version $Id$
+ */
+class ChunkedRowWriter
+{
+    static final int CHUNK_ROWS = 4096;
+
+    /**
+     * Renders the rows <code>fromRow</code> (inclusive) to
+     * <code>toRow</code> (exclusive). Called from several threads
+     * at once, each call with its own Writer.
+     */
+    interface RowRenderer
+    {
+        void render( Writer w, int fromRow, int toRow )
+            throws IOException;
+    }
+
+    private ChunkedRowWriter()
+    {
+    }
+
+    /**
+     * The number of threads to render the rows of <code>table</code>
+     * with. The reads of spilled rows share one mapped segment and
+     * name window, so several threads would only wait for each other
+     * and map the segments of their chunks in turns; such tables are
+     * rendered in row order on one thread.
+     */
+    static int threads( MetricTable table, int threads )
+    {
+        return table.getSpilledRows() > 0 ? 1 : threads;
+    }
+
+    static void write( Writer w, int rows, int threads, final RowRenderer renderer )
+        throws IOException
+    {
+        if ( threads <= 1 || rows <= CHUNK_ROWS )
+        {
+            renderer.render( w, 0, rows );
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( threads, new ThreadFactory()
+        {
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, "javancss-format" );
+                thread.setDaemon( true );
+
+                return thread;
+            }
+        } );
+        try
+        {
+            LinkedList<Future<CharArrayWriter>> vPending = new LinkedList<Future<CharArrayWriter>>();
+            int next = 0;
+            while ( next < rows || !vPending.isEmpty() )
+            {
+                while ( next < rows && vPending.size() < threads * 2 )
+                {
+                    final int fromRow = next;
+                    final int toRow = Math.min( rows, next + CHUNK_ROWS );
+                    vPending.add( executor.submit( new Callable<CharArrayWriter>()
+                    {
+                        public CharArrayWriter call()
+                            throws IOException
+                        {
+                            CharArrayWriter chunk = new CharArrayWriter( ( toRow - fromRow ) * 128 );
+                            renderer.render( chunk, fromRow, toRow );
+
+                            return chunk;
+                        }
+                    } ) );
+                    next = toRow;
+                }
+                vPending.removeFirst().get().writeTo( w );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "formatting interrupted" );
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            if ( cause instanceof IOException )
+            {
+                throw (IOException) cause;
+            }
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+            IOException ioe = new IOException( String.valueOf( cause ) );
+            ioe.initCause( cause );
+            throw ioe;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+
+package javancss;
+
+import java.util.List;
+
+/**
+ * The distributions of function NCSS, function CCN and object NCSS
+ * of a project or package, kept as LogHistograms while metrics are
+ * produced, so percentiles can be reported in constant memory.
+ *
+ * @version $Id$
+ */
+public class Distributions
+{
+    public final LogHistogram functionNcss = new LogHistogram();
+    public final LogHistogram functionCcn = new LogHistogram();
+    public final LogHistogram objectNcss = new LogHistogram();
+
+    public void addFunction( int ncss, int ccn )
+    {
+        functionNcss.add( ncss );
+        functionCcn.add( ccn );
+    }
+
+    public void addObject( int ncss )
+    {
+        objectNcss.add( ncss );
+    }
+
+    public void addFunctions( List<FunctionMetric> vFunctions )
+    {
+        for ( FunctionMetric function : vFunctions )
+        {
+            addFunction( function.ncss, function.ccn );
+        }
+    }
+
+    public void addObjects( List<ObjectMetric> vObjects )
+    {
+        for ( ObjectMetric object : vObjects )
+        {
+            addObject( object.ncss );
+        }
+    }
+
+    public void add( Distributions pDistributions_ )
+    {
+        if ( pDistributions_ == null )
+        {
+            return;
+        }
+        functionNcss.add( pDistributions_.functionNcss );
+        functionCcn.add( pDistributions_.functionCcn );
+        objectNcss.add( pDistributions_.objectNcss );
+    }
+
+    public void clear()
+    {
+        functionNcss.clear();
+        functionCcn.clear();
+        objectNcss.clear();
+    }
+}
@@ -0,0 +1,193 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Tells generated source files from hand written ones by the first
+ * HEAD_BYTES bytes of a file, so they can be skipped without being
+ * parsed.<p>
+ *
+ * A file is skipped when its head contains one of the markers, like
+ * "DO NOT EDIT", or matches one of the regular expressions, like the
+ * one of the @Generated annotation, or when the file is larger than
+ * the size limit.
+ *
+ * @version $Id$
+ */
+public class GeneratedSourceFilter
+{
+    static final int HEAD_BYTES = 4096;
+
+    /**
+     * Markers of the usual generators: protoc and many others write
+     * "DO NOT EDIT".
+     */
+    public static final String[] DEFAULT_MARKERS = { "DO NOT EDIT" };
+
+    /**
+     * The annotation javax.annotation.Generated or
+     * javax.annotation.processing.Generated, as a whole word, so
+     * e.g. JPA's @GeneratedValue does not match.
+     */
+    public static final String GENERATED_ANNOTATION = "@(javax\\.annotation\\.(processing\\.)?)?Generated\\b";
+
+    private final List<String> _vMarkers = new ArrayList<String>();
+    private final List<Pattern> _vPatterns = new ArrayList<Pattern>();
+    private final List<String> _vPatternReasons = new ArrayList<String>();
+    private long _maxBytes = 0;
+
+    /**
+     * Skips files with the generated annotation or one of the
+     * default markers.
+     */
+    public void addDefaultMarkers()
+    {
+        _addPattern( Pattern.compile( GENERATED_ANNOTATION ), "contains '@Generated'" );
+        for ( String sMarker : DEFAULT_MARKERS )
+        {
+            addMarker( sMarker );
+        }
+    }
+
+    /**
+     * Skips files whose head contains the marker.
+     */
+    public void addMarker( String sMarker )
+    {
+        _vMarkers.add( sMarker );
+    }
+
+    /**
+     * Skips files whose head matches the regular expression
+     * somewhere.
+     *
+     * @throws java.util.regex.PatternSyntaxException  for an invalid expression
+     */
+    public void addPattern( String sRegex )
+    {
+        _addPattern( Pattern.compile( sRegex ), "matches '" + sRegex + "'" );
+    }
+
+    private void _addPattern( Pattern pattern, String sReason )
+    {
+        _vPatterns.add( pattern );
+        _vPatternReasons.add( sReason );
+    }
+
+    /**
+     * Skips files larger than the given number of bytes, zero or
+     * less measures files of any size.
+     */
+    public void setMaxBytes( long maxBytes )
+    {
+        _maxBytes = maxBytes;
+    }
+
+    public boolean isEmpty()
+    {
+        return _vMarkers.isEmpty() && _vPatterns.isEmpty() && _maxBytes <= 0;
+    }
+
+    /**
+     * Returns a filter skipping the same files, which may be changed
+     * without changing this one.
+     */
+    GeneratedSourceFilter copy()
+    {
+        GeneratedSourceFilter copy = new GeneratedSourceFilter();
+        copy._vMarkers.addAll( _vMarkers );
+        copy._vPatterns.addAll( _vPatterns );
+        copy._vPatternReasons.addAll( _vPatternReasons );
+        copy._maxBytes = _maxBytes;
+
+        return copy;
+    }
+
+    /**
+     * Returns why the file is skipped, or null if it has to be
+     * measured.
+     *
+     * @param encoding  encoding of the file, null for the platform encoding
+     */
+    public String getSkipReason( File file, String encoding )
+        throws IOException
+    {
+        if ( _maxBytes > 0 && file.length() > _maxBytes )
+        {
+            return "larger than " + _maxBytes + " bytes";
+        }
+        if ( _vMarkers.isEmpty() && _vPatterns.isEmpty() )
+        {
+            return null;
+        }
+
+        String sHead = readHead( file, encoding );
+        for ( String sMarker : _vMarkers )
+        {
+            if ( sHead.indexOf( sMarker ) >= 0 )
+            {
+                return "contains '" + sMarker + "'";
+            }
+        }
+        for ( int pattern = 0; pattern < _vPatterns.size(); pattern++ )
+        {
+            if ( _vPatterns.get( pattern ).matcher( sHead ).find() )
+            {
+                return _vPatternReasons.get( pattern );
+            }
+        }
+
+        return null;
+    }
+
+    private static String readHead( File file, String encoding )
+        throws IOException
+    {
+        byte[] head = new byte[ HEAD_BYTES ];
+        int length = 0;
+        InputStream in = new FileInputStream( file );
+        try
+        {
+            int read;
+            while ( length < head.length && ( read = in.read( head, length, head.length - length ) ) > 0 )
+            {
+                length += read;
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+
+        Charset charset = encoding == null ? Charset.defaultCharset() : Charset.forName( encoding );
+
+        return new String( head, 0, length, charset );
+    }
+}
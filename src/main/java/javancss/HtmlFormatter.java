@@ -0,0 +1,487 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Generates HTML output of Java metrics, the same report
+ * xslt/javancss2html.xsl makes of the XML output, but written in
+ * one pass over the metrics without building a document first.<p>
+ *
+ * Object and function lists longer than a page are split into
+ * pages of PAGE_ROWS rows. If the report is written to a file, the
+ * first page is part of the report and the others are written to
+ * files next to it, which the report links to, so the report stays
+ * small however long the lists are. Otherwise each page is a
+ * collapsible <code>&lt;details&gt;</code> element of which only
+ * the first is open, so a browser does not need to lay out the
+ * whole list.
+ *
+ * @version $Id$
+ */
+public class HtmlFormatter
+    implements Formatter
+{
+    public static final int PAGE_ROWS = 1000;
+
+    private static final String TABLE = "<table class=\"details\" border=\"0\" width=\"100%\">\n";
+
+    private static final String OBJECT_HEADER =
+        "<tr><th>Nr.</th><th>NCSS</th><th>Functions</th><th>Classes</th><th>Javadocs</th><th>Class</th></tr>\n";
+
+    private static final String FUNCTION_HEADER =
+        "<tr><th>Nr.</th><th>NCSS</th><th>CCN</th><th>Javadoc</th><th>Function</th></tr>\n";
+
+    private final Javancss _javancss;
+    private final int _pageRows;
+    private final NumberFormat _pNumberFormat = new DecimalFormat( "#,##0.00", new DecimalFormatSymbols( Locale.US ) );
+    private File _fReport = null;
+
+    public HtmlFormatter( Javancss javancss )
+    {
+        this( javancss, PAGE_ROWS );
+    }
+
+    HtmlFormatter( Javancss javancss, int pageRows )
+    {
+        _javancss = javancss;
+        _pageRows = pageRows;
+    }
+
+    /**
+     * The file the report is written to, null if it is not written
+     * to a file. Pages after the first are written to files named
+     * after it, e.g. report-functions-2.html next to report.html.
+     */
+    public void setReportFile( File fReport )
+    {
+        _fReport = fReport;
+    }
+
+    private double _divide( long divident, long divisor )
+    {
+        double dRetVal = 0.0;
+        if ( divisor > 0 )
+        {
+            dRetVal = Math.round( ( (double) divident / (double) divisor ) * 100 ) / 100.0;
+        }
+
+        return dRetVal;
+    }
+
+    /**
+     * Appends <code>s</code> with the characters HTML gives a meaning escaped.
+     */
+    static void appendEscaped( StringBuilder sb, String s )
+    {
+        for ( int i = 0; i < s.length(); i++ )
+        {
+            char c = s.charAt( i );
+            switch ( c )
+            {
+                case '<':
+                    sb.append( "&lt;" );
+                    break;
+                case '>':
+                    sb.append( "&gt;" );
+                    break;
+                case '&':
+                    sb.append( "&amp;" );
+                    break;
+                case '"':
+                    sb.append( "&quot;" );
+                    break;
+                default:
+                    sb.append( c );
+            }
+        }
+    }
+
+    private static void appendCell( StringBuilder sb, int value )
+    {
+        sb.append( "<td>" ).append( value ).append( "</td>" );
+    }
+
+    private void appendMatrixRow( StringBuilder sb, String sCell, String[] values, String sPer )
+    {
+        sb.append( "<tr>" );
+        for ( String sValue : values )
+        {
+            sb.append( '<' ).append( sCell ).append( '>' ).append( sValue ).append( "&#160;</" ).append( sCell ).append( '>' );
+        }
+        // like the stylesheet, "|" before the header and "| " before the other cells
+        sb.append( '<' ).append( sCell ).append( "th".equals( sCell ) ? ">|" : ">| " ).append( sPer ).append( "&#160;</" ).append( sCell ).append( ">" );
+        sb.append( "</tr>\n" );
+    }
+
+    private String _formatPackageMatrix( int packages
+                                         , long classesSum
+                                         , long functionsSum
+                                         , long ncssSum
+                                         , long javadocsSum  )
+    {
+        StringBuilder sb = new StringBuilder( 2048 );
+        sb.append( TABLE );
+        appendMatrixRow( sb, "th", new String[] { "Packages", "Classes", "Functions", "NCSS", "Javadocs" }, "per" );
+        appendMatrixRow( sb, "td", new String[] {   _pNumberFormat.format( packages )
+                                                  , _pNumberFormat.format( classesSum )
+                                                  , _pNumberFormat.format( functionsSum )
+                                                  , _pNumberFormat.format( ncssSum )
+                                                  , _pNumberFormat.format( javadocsSum ) }, "Project" );
+        appendMatrixRow( sb, "td", new String[] {   ""
+                                                  , _pNumberFormat.format( _divide( classesSum, packages ) )
+                                                  , _pNumberFormat.format( _divide( functionsSum, packages ) )
+                                                  , _pNumberFormat.format( _divide( ncssSum, packages ) )
+                                                  , _pNumberFormat.format( _divide( javadocsSum, packages ) ) }, "Package" );
+        appendMatrixRow( sb, "td", new String[] {   ""
+                                                  , ""
+                                                  , _pNumberFormat.format( _divide( functionsSum, classesSum ) )
+                                                  , _pNumberFormat.format( _divide( ncssSum, classesSum ) )
+                                                  , _pNumberFormat.format( _divide( javadocsSum, classesSum ) ) }, "Class" );
+        appendMatrixRow( sb, "td", new String[] {   ""
+                                                  , ""
+                                                  , ""
+                                                  , _pNumberFormat.format( _divide( ncssSum, functionsSum ) )
+                                                  , _pNumberFormat.format( _divide( javadocsSum, functionsSum ) ) }, "Function" );
+        sb.append( "</table>\n<p/>\n" );
+
+        return sb.toString();
+    }
+
+    public void printPackageNcss( Writer w )
+        throws IOException
+    {
+        List<PackageMetric> vPackageMetrics = _javancss.getPackageMetrics();
+
+        w.write( "<h2>Packages</h2>\n" );
+        w.write( TABLE );
+        w.write( "<tr><th>Nr.</th><th>Classes</th><th>Functions</th><th>NCSS</th><th>Javadocs</th><th>Package</th></tr>\n" );
+
+        StringBuilder sb = new StringBuilder( 256 );
+        int nr = 0;
+        for ( PackageMetric pPackageMetric : vPackageMetrics )
+        {
+            sb.setLength( 0 );
+            sb.append( "<tr>" );
+            appendCell( sb, ++nr );
+            appendCell( sb, pPackageMetric.classes );
+            appendCell( sb, pPackageMetric.functions );
+            appendCell( sb, pPackageMetric.ncss );
+            appendCell( sb, pPackageMetric.javadocs );
+            sb.append( "<td>" );
+            appendEscaped( sb, pPackageMetric.name );
+            sb.append( "</td></tr>\n" );
+            w.write( sb.toString() );
+        }
+
+        // of all packages, also when only the top ones are listed
+        Totals totals = _javancss.getTotals();
+        long classesSum   = totals.getPackageSum( MetricTable.CLASSES );
+        long functionsSum = totals.getPackageSum( MetricTable.FUNCTIONS );
+        long ncssSum      = totals.getPackageSum( MetricTable.NCSS );
+        long javadocsSum  = totals.getPackageSum( MetricTable.JAVADOCS );
+
+        w.write( "<tr><td>&#160;</td><td>&#160;</td><td>&#160;</td><td>&#160;</td><td>&#160;</td><td>&#160;</td></tr>\n" );
+        w.write( "<tr><td>&#160;</td><td>" + classesSum + "</td><td>" + functionsSum + "</td><td>" + ncssSum
+                 + "</td><td>" + javadocsSum + "</td><td>Total</td></tr>\n" );
+        w.write( "</table>\n<p/>\n" );
+
+        w.write( _formatPackageMatrix( totals.getPackages(), classesSum, functionsSum, ncssSum, javadocsSum ) );
+    }
+
+    /**
+     * Writes the rows of a list, split into pages if it is longer
+     * than one page. The table is left open for the summary rows
+     * if the list fits into one page, and closed otherwise.
+     */
+    private void writeRows( Writer w, final int rows, int threads, final String sTitle, final String sHeader
+                            , final RowAppender appender )
+        throws IOException
+    {
+        final boolean paged = rows > _pageRows;
+        if ( paged && _fReport != null )
+        {
+            writePageFiles( w, rows, threads, sTitle, sHeader, appender );
+            return;
+        }
+        if ( !paged )
+        {
+            w.write( TABLE );
+            w.write( sHeader );
+        }
+        ChunkedRowWriter.write( w, rows, threads, new ChunkedRowWriter.RowRenderer()
+        {
+            public void render( Writer chunk, int fromRow, int toRow )
+                throws IOException
+            {
+                StringBuilder sb = new StringBuilder( 256 );
+                for ( int row = fromRow; row < toRow; row++ )
+                {
+                    sb.setLength( 0 );
+                    if ( paged && row % _pageRows == 0 )
+                    {
+                        if ( row > 0 )
+                        {
+                            sb.append( "</table>\n</details>\n" );
+                        }
+                        sb.append( row == 0 ? "<details open>" : "<details>" );
+                        sb.append( "<summary>" ).append( sTitle ).append( ' ' ).append( row + 1 ).append( " - " )
+                          .append( Math.min( rows, row + _pageRows ) ).append( " of " ).append( rows ).append( "</summary>\n" );
+                        sb.append( TABLE ).append( sHeader );
+                    }
+                    sb.append( "<tr>" );
+                    appendCell( sb, row + 1 );
+                    appender.appendRow( sb, row );
+                    sb.append( "</tr>\n" );
+                    chunk.write( sb.toString() );
+                }
+            }
+        } );
+        if ( paged )
+        {
+            w.write( "</table>\n</details>\n" );
+            w.write( TABLE );
+        }
+    }
+
+    /**
+     * Writes the first page of a list into the report, followed by
+     * links to the other pages, which are written to files of their
+     * own. The table is left open for the summary rows.
+     */
+    private void writePageFiles( Writer w, int rows, int threads, String sTitle, String sHeader, RowAppender appender )
+        throws IOException
+    {
+        w.write( TABLE );
+        w.write( sHeader );
+        writeRange( w, 0, _pageRows, threads, appender );
+        w.write( "</table>\n" );
+
+        String sReportName = _fReport.getName();
+        int dot = sReportName.lastIndexOf( '.' );
+        String sBaseName = dot > 0 ? sReportName.substring( 0, dot ) : sReportName;
+        String sExtension = dot > 0 ? sReportName.substring( dot ) : ".html";
+        String sPrefix = sBaseName + "-" + sTitle.toLowerCase( Locale.US ) + "-";
+
+        StringBuilder sb = new StringBuilder( 256 );
+        sb.append( "<p>" ).append( sTitle ).append( " 1 - " ).append( _pageRows ).append( " of " ).append( rows );
+        for ( int fromRow = _pageRows, page = 2; fromRow < rows; fromRow += _pageRows, page++ )
+        {
+            int toRow = Math.min( rows, fromRow + _pageRows );
+            String sPageName = sPrefix + page + sExtension;
+            sb.append( ", <a href=\"" );
+            appendEscaped( sb, sPageName );
+            sb.append( "\">" ).append( fromRow + 1 ).append( " - " ).append( toRow ).append( "</a>" );
+            w.write( sb.toString() );
+            sb.setLength( 0 );
+
+            Writer pageWriter = new BufferedWriter( new OutputStreamWriter(
+                new FileOutputStream( new File( _fReport.getAbsoluteFile().getParentFile(), sPageName ) ), "UTF-8" ) );
+            try
+            {
+                printStart( pageWriter );
+                sb.append( "<h2>" ).append( sTitle ).append( ' ' ).append( fromRow + 1 ).append( " - " ).append( toRow )
+                  .append( " of " ).append( rows ).append( "</h2>\n<p><a href=\"" );
+                appendEscaped( sb, sReportName );
+                sb.append( "\">Back to the report</a></p>\n" );
+                pageWriter.write( sb.toString() );
+                sb.setLength( 0 );
+                pageWriter.write( TABLE );
+                pageWriter.write( sHeader );
+                writeRange( pageWriter, fromRow, toRow, threads, appender );
+                pageWriter.write( "</table>\n" );
+                printEnd( pageWriter );
+            }
+            finally
+            {
+                pageWriter.close();
+            }
+        }
+        w.write( "</p>\n" );
+        w.write( TABLE );
+    }
+
+    /**
+     * Writes the numbered rows from fromRow to toRow, exclusive.
+     */
+    private void writeRange( Writer w, final int fromRow, int toRow, int threads, final RowAppender appender )
+        throws IOException
+    {
+        ChunkedRowWriter.write( w, toRow - fromRow, threads, new ChunkedRowWriter.RowRenderer()
+        {
+            public void render( Writer chunk, int from, int to )
+                throws IOException
+            {
+                StringBuilder sb = new StringBuilder( 256 );
+                for ( int row = fromRow + from; row < fromRow + to; row++ )
+                {
+                    sb.setLength( 0 );
+                    sb.append( "<tr>" );
+                    appendCell( sb, row + 1 );
+                    appender.appendRow( sb, row );
+                    sb.append( "</tr>\n" );
+                    chunk.write( sb.toString() );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Appends the cells of one row after its number.
+     */
+    private interface RowAppender
+    {
+        void appendRow( StringBuilder sb, int row );
+    }
+
+    private void appendSummaryRow( StringBuilder sb, int columns, String sLabel, String sValue )
+    {
+        sb.append( "<tr><td colspan=\"" ).append( columns ).append( "\">" ).append( sLabel )
+          .append( "</td><td>" ).append( sValue ).append( "</td></tr>\n" );
+    }
+
+    public void printObjectNcss( Writer w )
+        throws IOException
+    {
+        final MetricTable objectTable = _javancss.getObjectTable();
+        int objects = objectTable.size();
+
+        w.write( "<h2>Objects</h2>\n" );
+        writeRows( w, objects, ChunkedRowWriter.threads( objectTable, _javancss.getThreads() ), "Objects", OBJECT_HEADER, new RowAppender()
+        {
+            public void appendRow( StringBuilder sb, int row )
+            {
+                appendCell( sb, objectTable.getNcss( row ) );
+                appendCell( sb, objectTable.getFunctions( row ) );
+                appendCell( sb, objectTable.getClasses( row ) );
+                appendCell( sb, objectTable.getJavadocs( row ) );
+                sb.append( "<td>" );
+                appendEscaped( sb, objectTable.getName( row ) );
+                sb.append( "</td>" );
+            }
+        } );
+
+        Totals totals = _javancss.getTotals();
+        StringBuilder sb = new StringBuilder( 1024 );
+        appendSummaryRow( sb, 5, "Average Object NCSS:"
+                          , _pNumberFormat.format( _divide( totals.getObjectSum( MetricTable.NCSS ), totals.getObjects() ) ) );
+        appendSummaryRow( sb, 5, "Average Object Functions:"
+                          , _pNumberFormat.format( _divide( totals.getObjectSum( MetricTable.FUNCTIONS ), totals.getObjects() ) ) );
+        appendSummaryRow( sb, 5, "Average Object Inner Classes:"
+                          , _pNumberFormat.format( _divide( totals.getObjectSum( MetricTable.CLASSES ), totals.getObjects() ) ) );
+        appendSummaryRow( sb, 5, "Average Object Javadoc Comments:"
+                          , _pNumberFormat.format( _divide( totals.getObjectSum( MetricTable.JAVADOCS ), totals.getObjects() ) ) );
+        appendSummaryRow( sb, 5, "Object NCSS p50/p90/p99/max:"
+                          , _javancss.getDistributions().objectNcss.toString() );
+        appendSummaryRow( sb, 5, "Program NCSS:", _pNumberFormat.format( _javancss.getNcss() ) );
+        sb.append( "</table>\n<p/>\n" );
+        w.write( sb.toString() );
+    }
+
+    public void printFunctionNcss( Writer w )
+        throws IOException
+    {
+        final MetricTable functionTable = _javancss.getFunctionTable();
+        int functions = functionTable.size();
+
+        w.write( "<h2>Functions</h2>\n" );
+        writeRows( w, functions, ChunkedRowWriter.threads( functionTable, _javancss.getThreads() ), "Functions", FUNCTION_HEADER, new RowAppender()
+        {
+            public void appendRow( StringBuilder sb, int row )
+            {
+                int ccn = functionTable.getCcn( row );
+                int javadocs = functionTable.getJavadocs( row );
+                appendCell( sb, functionTable.getNcss( row ) );
+                sb.append( "<td><font color=\"" ).append( ccn > 9 ? "#ff0000" : "#000000" ).append( "\">" )
+                  .append( ccn ).append( "</font></td>" );
+                sb.append( "<td><font color=\"" ).append( javadocs < 1 ? "#ff0000" : "#000000" ).append( "\">" )
+                  .append( javadocs ).append( "</font></td>" );
+                sb.append( "<td>" );
+                appendEscaped( sb, functionTable.getName( row ) );
+                sb.append( "</td>" );
+            }
+        } );
+
+        Totals totals = _javancss.getTotals();
+        StringBuilder sb = new StringBuilder( 1024 );
+        appendSummaryRow( sb, 4, "Average Function NCSS:"
+                          , _pNumberFormat.format( _divide( totals.getFunctionSum( MetricTable.NCSS ), totals.getFunctions() ) ) );
+        appendSummaryRow( sb, 4, "Average Function CCN:"
+                          , _pNumberFormat.format( _divide( totals.getFunctionSum( MetricTable.CCN ), totals.getFunctions() ) ) );
+        appendSummaryRow( sb, 4, "Average Function Javadocs:"
+                          , _pNumberFormat.format( _divide( totals.getFunctionSum( MetricTable.JAVADOCS ), totals.getFunctions() ) ) );
+        appendSummaryRow( sb, 4, "Function NCSS p50/p90/p99/max:"
+                          , _javancss.getDistributions().functionNcss.toString() );
+        appendSummaryRow( sb, 4, "Function CCN p50/p90/p99/max:"
+                          , _javancss.getDistributions().functionCcn.toString() );
+        appendSummaryRow( sb, 4, "Program NCSS:", _pNumberFormat.format( _javancss.getNcss() ) );
+        sb.append( "</table>\n<p/>\n" );
+        w.write( sb.toString() );
+    }
+
+    public void printJavaNcss( Writer w )
+        throws IOException
+    {
+        w.write( "<p>Program NCSS: " + _pNumberFormat.format( _javancss.getNcss() ) + "</p>\n" );
+    }
+
+    public void printStart( Writer w )
+        throws IOException
+    {
+        w.write( "<html>\n"
+                 + "<head>\n"
+                 + "<meta http-equiv=\"Content-Type\" content=\"text/html; charset=UTF-8\">\n"
+                 + "<title>JavaNCSS Analysis</title>\n"
+                 + "<style type=\"text/css\">\n"
+                 + "body { font:normal 68% verdana,arial,helvetica; color:#000000; }\n"
+                 + "table tr td, tr th { font-size: 68%; }\n"
+                 + "table.details tr th { font-weight: bold; text-align:left; background:#a6caf0; }\n"
+                 + "table.details tr td { background:#eeeee0; }\n"
+                 + "p { line-height:1.5em; margin-top:0.5em; margin-bottom:1.0em; margin-left:2em; margin-right:2em; }\n"
+                 + "h1 { margin: 0px 0px 5px; font: 165% verdana,arial,helvetica }\n"
+                 + "h2 { margin-top: 1em; margin-bottom: 0.5em; font: bold 125% verdana,arial,helvetica }\n"
+                 + "summary { cursor: pointer; margin: 0.5em 0em; }\n"
+                 + "</style>\n"
+                 + "</head>\n"
+                 + "<body>\n"
+                 + "<h1><a name=\"top\">JavaNCSS Analysis</a></h1>\n"
+                 + "<p align=\"right\">Designed for use with <a href=\"http://www.kclee.de/clemens/java/javancss/\">JavaNCSS</a>"
+                 + " and <a href=\"http://jakarta.apache.org\">Ant</a>.</p>\n"
+                 + "<hr size=\"2\"/>\n" );
+    }
+
+    public void printEnd( Writer w )
+        throws IOException
+    {
+        w.write( "</body>\n</html>\n" );
+    }
+}
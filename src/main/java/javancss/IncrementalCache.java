@@ -0,0 +1,356 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the result of each source file of a run in a cache directory,
+ * so the next run only parses the files which changed since.<p>
+ *
+ * The manifest records the length and modification time of each file
+ * along with the name of its result file (written with ResultFile)
+ * and the settings of the last successful run. A run with the same
+ * settings over the same unchanged files is up to date. Otherwise
+ * changed and new files are parsed, the results of the other files
+ * are read from the cache, and all of them are merged with
+ * ResultMerger, so the lists come out ordered by name like with
+ * -merge. Files which fail to parse are not cached and parsed again
+ * next time.<p>
+ *
+ * The manifest is replaced as a whole when it is written, so a build
+ * which is interrupted leaves the last complete manifest behind.
+ *
+ * @version $Id$
+ */
+public class IncrementalCache
+{
+    static final String MANIFEST = "manifest.txt";
+
+    private static final String HEADER = "# JavaNCSS incremental manifest " + ResultFile.VERSION;
+    private static final String SETTINGS = "settings=";
+
+    private final File _dir;
+    private final String _encoding;
+    private String _sSettings = null;
+    private Map<String, Entry> _htEntries = new LinkedHashMap<String, Entry>();
+    private int _nextEntry = 0;
+    private int _parsed = 0;
+    private final List<File> _vFailedFiles = new ArrayList<File>();
+    private ParserPool _parserPool = null;
+
+    public IncrementalCache( File dir, String encoding )
+    {
+        _dir = dir;
+        _encoding = encoding;
+    }
+
+    /**
+     * Takes the parsers from the given pool, e.g. one shared by the
+     * modules of a build, instead of reusing a parser for the files of
+     * one call of measure only.
+     */
+    public void setParserPool( ParserPool parserPool )
+    {
+        _parserPool = parserPool;
+    }
+
+    /**
+     * Reads the manifest of the cache directory. A missing or
+     * unreadable manifest leaves the cache empty.
+     */
+    public void load()
+    {
+        _sSettings = null;
+        _htEntries.clear();
+        File manifest = new File( _dir, MANIFEST );
+        if ( !manifest.isFile() )
+        {
+            return;
+        }
+
+        try
+        {
+            BufferedReader in = new BufferedReader( new InputStreamReader( new FileInputStream( manifest ), "UTF-8" ) );
+            try
+            {
+                if ( !HEADER.equals( in.readLine() ) )
+                {
+                    return;
+                }
+                String sLine = in.readLine();
+                if ( sLine == null || !sLine.startsWith( SETTINGS ) )
+                {
+                    return;
+                }
+                String sSettings = sLine.substring( SETTINGS.length() );
+                Map<String, Entry> htEntries = new LinkedHashMap<String, Entry>();
+                while ( ( sLine = in.readLine() ) != null )
+                {
+                    String[] fields = sLine.split( "\t", 4 );
+                    if ( fields.length != 4 )
+                    {
+                        return;
+                    }
+                    Entry entry = new Entry( fields[ 0 ], Long.parseLong( fields[ 1 ] ), Long.parseLong( fields[ 2 ] ) );
+                    htEntries.put( fields[ 3 ], entry );
+                    _nextEntry = Math.max( _nextEntry, entry.number() + 1 );
+                }
+                _sSettings = sSettings.length() > 0 ? sSettings : null;
+                _htEntries = htEntries;
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch ( IOException e )
+        {
+            // start over with an empty cache
+        }
+        catch ( NumberFormatException e )
+        {
+            // start over with an empty cache
+        }
+    }
+
+    /**
+     * Whether the last run was successful, had the same settings and
+     * covered exactly these files, none of them changed since.
+     */
+    public boolean isUpToDate( List<File> vFiles, String sSettings )
+    {
+        if ( _sSettings == null || !_sSettings.equals( sSettings ) || vFiles.size() != _htEntries.size() )
+        {
+            return false;
+        }
+        for ( File file : vFiles )
+        {
+            Entry entry = _htEntries.get( file.getAbsolutePath() );
+            if ( entry == null || !entry.matches( file ) )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the merged result of <code>vFiles</code>, parsing the
+     * files which are not in the cache or changed since they were
+     * cached. Results of files which are no longer measured are
+     * deleted from the cache.
+     */
+    public Javancss measure( List<File> vFiles )
+        throws IOException
+    {
+        if ( !_dir.isDirectory() && !_dir.mkdirs() )
+        {
+            throw new IOException( "could not create cache directory " + _dir );
+        }
+        _parsed = 0;
+        _vFailedFiles.clear();
+
+        JavancssStatistics statistics = JavancssStatistics.getInstance();
+        Map<String, Entry> htOldEntries = _htEntries;
+        Map<String, Entry> htEntries = new LinkedHashMap<String, Entry>();
+        List<Javancss> vResults = new ArrayList<Javancss>( vFiles.size() );
+        ParserPool parserPool = _parserPool != null ? _parserPool : new ParserPool();
+        for ( File file : vFiles )
+        {
+            String sPath = file.getAbsolutePath();
+            Entry entry = htOldEntries.remove( sPath );
+            if ( entry != null && entry.matches( file ) )
+            {
+                try
+                {
+                    vResults.add( ResultFile.load( entry.file() ) );
+                    htEntries.put( sPath, entry );
+                    if ( statistics != null )
+                    {
+                        statistics.cacheHit();
+                    }
+                    continue;
+                }
+                catch ( IOException e )
+                {
+                    // parse the file again
+                }
+            }
+
+            if ( statistics != null )
+            {
+                statistics.cacheMiss();
+            }
+            // take the stamp first, a change while parsing is seen next time
+            long length = file.length();
+            long lastModified = file.lastModified();
+            Javancss javancss = new Javancss();
+            javancss.setEncoding( _encoding );
+            javancss.setParserPool( parserPool );
+            javancss.measure( Collections.singletonList( file ) );
+            _parsed++;
+            if ( javancss.getLastError() != null )
+            {
+                _vFailedFiles.add( file );
+                if ( entry != null )
+                {
+                    entry.file().delete();
+                }
+                continue;
+            }
+            if ( entry == null )
+            {
+                entry = new Entry( ( _nextEntry++ ) + ".jncs", length, lastModified );
+            }
+            else
+            {
+                entry = new Entry( entry.sName, length, lastModified );
+            }
+            ResultFile.save( javancss, entry.file(), false );
+            htEntries.put( sPath, entry );
+            vResults.add( javancss );
+        }
+        for ( Entry entry : htOldEntries.values() )
+        {
+            entry.file().delete();
+        }
+        _htEntries = htEntries;
+        _sSettings = null;
+
+        return ResultMerger.merge( vResults );
+    }
+
+    /**
+     * Number of files the last call of measure parsed.
+     */
+    public int getParsedFiles()
+    {
+        return _parsed;
+    }
+
+    /**
+     * Files the last call of measure could not parse.
+     */
+    public List<File> getFailedFiles()
+    {
+        return _vFailedFiles;
+    }
+
+    /**
+     * Writes the manifest. <code>sSettings</code> are the settings of
+     * a successful run, null when the run failed, so the next run is
+     * not up to date whatever its settings.
+     */
+    public void save( String sSettings )
+        throws IOException
+    {
+        if ( !_dir.isDirectory() && !_dir.mkdirs() )
+        {
+            throw new IOException( "could not create cache directory " + _dir );
+        }
+        _sSettings = sSettings;
+        File manifest = new File( _dir, MANIFEST );
+        File temp = new File( _dir, MANIFEST + ".tmp" );
+        PrintWriter out = new PrintWriter( new OutputStreamWriter( new FileOutputStream( temp ), "UTF-8" ) );
+        try
+        {
+            out.print( HEADER + "\n" );
+            out.print( SETTINGS + ( sSettings == null ? "" : sSettings ) + "\n" );
+            for ( Map.Entry<String, Entry> entry : _htEntries.entrySet() )
+            {
+                Entry value = entry.getValue();
+                out.print( value.sName + "\t" + value.length + "\t" + value.lastModified + "\t" + entry.getKey() + "\n" );
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        if ( out.checkError() )
+        {
+            temp.delete();
+            throw new IOException( "could not write " + manifest );
+        }
+        if ( !temp.renameTo( manifest ) )
+        {
+            // renameTo does not replace an existing file on every platform
+            manifest.delete();
+            if ( !temp.renameTo( manifest ) )
+            {
+                throw new IOException( "could not write " + manifest );
+            }
+        }
+    }
+
+    /**
+     * Stamp and result file of one source file.
+     */
+    private class Entry
+    {
+        final String sName;
+        final long length;
+        final long lastModified;
+
+        Entry( String sName_, long length_, long lastModified_ )
+        {
+            sName = sName_;
+            length = length_;
+            lastModified = lastModified_;
+        }
+
+        File file()
+        {
+            return new File( _dir, sName );
+        }
+
+        int number()
+        {
+            int dot = sName.indexOf( '.' );
+            try
+            {
+                return Integer.parseInt( dot < 0 ? sName : sName.substring( 0, dot ) );
+            }
+            catch ( NumberFormatException e )
+            {
+                return 0;
+            }
+        }
+
+        boolean matches( File source )
+        {
+            return source.length() == length && source.lastModified() == lastModified && file().isFile();
+        }
+    }
+}
@@ -27,11 +27,14 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.PatternSyntaxException;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.DefaultParser;
@@ -40,10 +43,10 @@ import org.apache.commons.cli.OptionBuilder;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
+import javancss.parser.CanonicalCharStream;
 import javancss.parser.JavaParser;
 import javancss.parser.JavaParserDebug;
 import javancss.parser.JavaParserInterface;
-import javancss.parser.JavaParserTokenManager;
 import javancss.parser.TokenMgrError;
 
 import javax .swing.*;
@@ -65,7 +68,8 @@ public class Javancss
 
     private static final String DEFAULT_ENCODING = null;
     
-    private boolean exit = false;
+    private CancelToken _cancelToken = new CancelToken();
+    private boolean _bCancelled = false;
 
     private List<File> _vJavaSourceFiles = null;
     private String encoding = DEFAULT_ENCODING;
@@ -73,15 +77,36 @@ public class Javancss
     private String _sErrorMessage = null;
     private Throwable _thrwError = null;
 
-    private JavaParserInterface _pJavaParser = null;
+    private ParserPool _parserPool = null;
+    private ParserPool _measuringPool = null;
+    private String _sLastFunction = null;
     private int _ncss = 0;
     private int _loc = 0;
-    private List<FunctionMetric> _vFunctionMetrics = new ArrayList<FunctionMetric>();
-    private List<ObjectMetric> _vObjectMetrics = new ArrayList<ObjectMetric>();
+    private int _jdcl = 0;
+    private int _sl = 0;
+    private int _ml = 0;
+    private int _jvdc = 0;
+    private MetricTable _functionTable = new MetricTable();
+    private MetricTable _objectTable = new MetricTable();
     private List<PackageMetric> _vPackageMetrics = null;
     private List<Object[]> _vImports = null;
     private Map<String,PackageMetric> _htPackages = null;
+    private Distributions _distributions = new Distributions();
     private Object[] _aoPackage = null;
+    private int _top = 0;
+    private String _sTopBy = TopN.NCSS;
+    private TopN<FunctionMetric> _topFunctions = null;
+    private TopN<ObjectMetric> _topObjects = null;
+    private Totals _totals = null;
+    private int _threads = Runtime.getRuntime().availableProcessors();
+
+    private MeasurementListener _listener = null;
+    private JavancssStatistics _statistics = null;
+    private GeneratedSourceFilter _sourceFilter = null;
+    private Map<File, String> _htSkippedFiles = new LinkedHashMap<File, String>();
+    private List<FunctionMetric> _vFileFunctions = null;
+    private List<ObjectMetric> _vFileObjects = null;
+    private List<PackageMetric> _vFilePackages = null;
 
     /**
      * Just used for parseImports.
@@ -115,6 +140,10 @@ public class Javancss
         throws Exception, Error
     {
         log.fine( "_measureSource(File"+ sSourceFile_.getAbsolutePath() + ").ENTER" );
+        if ( _statistics != null )
+        {
+            _statistics.fileStarted( sSourceFile_ );
+        }
 
         Reader reader;
 
@@ -135,6 +164,10 @@ public class Javancss
             }
             _sErrorMessage += "File not found: " + sSourceFile_.getAbsolutePath();
             _thrwError = pIOException;
+            if ( _statistics != null )
+            {
+                _statistics.fileFinished( sSourceFile_ );
+            }
 
             throw pIOException;
         }
@@ -145,6 +178,10 @@ public class Javancss
             // the same method but with a Reader
             _measureSource( reader );
         }
+        catch ( CancellationException e )
+        {
+            throw e;
+        }
         catch ( Exception pParseException )
         {
             if ( sTempErrorMessage == null )
@@ -152,7 +189,7 @@ public class Javancss
                 sTempErrorMessage = "";
             }
             sTempErrorMessage += "ParseException in " + sSourceFile_.getAbsolutePath() +
-                   "\nLast useful checkpoint: \"" + _pJavaParser.getLastFunction() + "\"\n";
+                   "\nLast useful checkpoint: \"" + _sLastFunction + "\"\n";
             sTempErrorMessage += pParseException.getMessage() + "\n";
 
             _sErrorMessage = sTempErrorMessage;
@@ -173,6 +210,22 @@ public class Javancss
 
             throw pTokenMgrError;
         }
+        finally
+        {
+            if ( _statistics != null )
+            {
+                _statistics.bytesProcessed( sSourceFile_.length() );
+                _statistics.fileFinished( sSourceFile_ );
+            }
+            try
+            {
+                reader.close();
+            }
+            catch ( IOException e )
+            {
+                log.fine( "Javancss._measureSource(File).close: " + e );
+            }
+        }
     }
 
     private void _measureSource( Reader reader )
@@ -180,30 +233,65 @@ public class Javancss
     {
         log.fine( "_measureSource(Reader).ENTER" );
 
+        JavaParserInterface pJavaParser = null;
+        JavaParser pooledParser = null;
+        _sLastFunction = null;
         try
         {
             // create a parser object
             if ( log.isLoggable( Level.FINE ) )
             {
                 log.fine( "creating JavaParserDebug" );
-                _pJavaParser = new JavaParserDebug( reader );
+                CanonicalCharStream stream = new CanonicalCharStream( reader );
+                stream.setCommentImages( true );
+                pJavaParser = new JavaParserDebug( stream );
             }
             else
             {
-                log.fine( "creating JavaParser" );
-                _pJavaParser = new JavaParser( reader );
+                log.fine( "reusing JavaParser" );
+                pooledParser = _measuringPool.borrow( reader );
+                pJavaParser = pooledParser;
             }
+            pJavaParser.setCancelToken( _cancelToken );
 
             // execute the parser
-            _pJavaParser.parse();
+            long start = System.nanoTime();
+            pJavaParser.parse();
             log.fine( "Javancss._measureSource(DataInputStream).SUCCESSFULLY_PARSED" );
+            if ( _statistics != null )
+            {
+                _statistics.sourceParsed( System.nanoTime() - start, pJavaParser.getTokens() );
+            }
+
+            _ncss += pJavaParser.getNcss(); // increment the ncss
+            _loc += pJavaParser.getLOC(); // and loc
+            _jdcl += pJavaParser.getJdcl();
+            _sl += pJavaParser.getSl();
+            _ml += pJavaParser.getMl();
+            _jvdc = pJavaParser.getJvdc();
+            if ( _listener != null )
+            {
+                _vFileFunctions = pJavaParser.getFunction();
+                _vFileObjects = pJavaParser.getObject();
+                _vFilePackages = new ArrayList<PackageMetric>();
+            }
 
-            _ncss += _pJavaParser.getNcss(); // increment the ncss
-            _loc += _pJavaParser.getLOC(); // and loc
             // add new data to global vector
-            _vFunctionMetrics.addAll( _pJavaParser.getFunction() );
-            _vObjectMetrics.addAll( _pJavaParser.getObject() );
-            Map<String, PackageMetric> htNewPackages = _pJavaParser.getPackage();
+            if ( _top > 0 )
+            {
+                _topFunctions.offerAll( pJavaParser.getFunction() );
+                _topObjects.offerAll( pJavaParser.getObject() );
+                _totals.addFunctions( pJavaParser.getFunction() );
+                _totals.addObjects( pJavaParser.getObject() );
+            }
+            else
+            {
+                _functionTable.addAll( pJavaParser.getFunction() );
+                _objectTable.addAll( pJavaParser.getObject() );
+            }
+            _distributions.addFunctions( pJavaParser.getFunction() );
+            _distributions.addObjects( pJavaParser.getObject() );
+            Map<String, PackageMetric> htNewPackages = pJavaParser.getPackage();
 
             /* List vNewPackages = new Vector(); */
             for ( Map.Entry<String, PackageMetric> entry : htNewPackages.entrySet() )
@@ -212,13 +300,24 @@ public class Javancss
 
                 PackageMetric pckmNext = htNewPackages.get( sPackage );
                 pckmNext.name = sPackage;
+                // a source file belongs to exactly one package
+                pckmNext.distributions.addFunctions( pJavaParser.getFunction() );
+                pckmNext.distributions.addObjects( pJavaParser.getObject() );
 
                 PackageMetric pckmPrevious = _htPackages.get( sPackage );
                 pckmNext.add( pckmPrevious );
 
                 _htPackages.put( sPackage, pckmNext );
+                if ( _vFilePackages != null )
+                {
+                    _vFilePackages.add( pckmNext );
+                }
             }
         }
+        catch ( CancellationException e )
+        {
+            throw e;
+        }
         catch ( Exception pParseException )
         {
             if ( _sErrorMessage == null )
@@ -226,12 +325,13 @@ public class Javancss
                 _sErrorMessage = "";
             }
             _sErrorMessage += "ParseException in STDIN";
-            if ( _pJavaParser != null )
+            if ( pJavaParser != null )
             {
-                _sErrorMessage += "\nLast useful checkpoint: \"" + _pJavaParser.getLastFunction() + "\"\n";
+                _sErrorMessage += "\nLast useful checkpoint: \"" + pJavaParser.getLastFunction() + "\"\n";
             }
             _sErrorMessage += pParseException.getMessage() + "\n";
             _thrwError = pParseException;
+            _countFailure( pJavaParser );
 
             throw pParseException;
         }
@@ -244,30 +344,113 @@ public class Javancss
             _sErrorMessage += "TokenMgrError in STDIN\n";
             _sErrorMessage += pTokenMgrError.getMessage() + "\n";
             _thrwError = pTokenMgrError;
+            _countFailure( pJavaParser );
 
             throw pTokenMgrError;
         }
+        finally
+        {
+            // keep what an error message needs, the parser goes on to other sources
+            if ( pJavaParser != null )
+            {
+                _sLastFunction = pJavaParser.getLastFunction();
+            }
+            if ( pooledParser != null )
+            {
+                _measuringPool.release( pooledParser );
+            }
+        }
+    }
+
+    private void _countFailure( JavaParserInterface parser )
+    {
+        if ( _statistics != null )
+        {
+            _statistics.sourceFailed( parser == null ? 0 : parser.getTokens() );
+        }
     }
 
     private void _measureFiles( List<File> sourceFiles ) throws TokenMgrError
     {
+        if ( _statistics != null )
+        {
+            _statistics.filesQueued( sourceFiles.size() );
+        }
+        int measured = 0;
         for ( File file : sourceFiles )
         {
-            if ( !exit )
+            _cancelToken.checkCancelled();
+            if ( !_skip( file ) )
             {
                 try
                 {
                     _measureSource( file );
                 }
+                catch ( CancellationException e )
+                {
+                    throw e;
+                }
                 catch ( Throwable pThrowable )
                 {
                     // hmm, do nothing? Use getLastError() or so to check for details.
                     // error details have been written into lastError
                 }
             }
+            measured++;
+            _fireFileMeasured( file, measured, sourceFiles.size() );
         }
     }
 
+    /**
+     * Tells whether the source filter skips the file and records why.
+     * A file which can not be read is not skipped, measuring it
+     * reports the error.
+     */
+    private boolean _skip( File file )
+    {
+        if ( _sourceFilter == null )
+        {
+            return false;
+        }
+        try
+        {
+            String sReason = _sourceFilter.getSkipReason( file, encoding );
+            if ( sReason != null )
+            {
+                _htSkippedFiles.put( file, sReason );
+
+                return true;
+            }
+        }
+        catch ( IOException e )
+        {
+            log.fine( "Javancss._skip(File).e: " + e );
+        }
+
+        return false;
+    }
+
+    private void _fireFileMeasured( File file, int measured, int total )
+    {
+        if ( _listener == null )
+        {
+            return;
+        }
+        List<FunctionMetric> vFunctions = _vFileFunctions;
+        List<ObjectMetric> vObjects = _vFileObjects;
+        List<PackageMetric> vPackages = _vFilePackages;
+        _vFileFunctions = null;
+        _vFileObjects = null;
+        _vFilePackages = null;
+        if ( vFunctions == null )
+        {
+            vFunctions = Collections.emptyList();
+            vObjects = Collections.emptyList();
+            vPackages = Collections.emptyList();
+        }
+        _listener.fileMeasured( file, measured, total, vFunctions, vObjects, vPackages );
+    }
+
     /**
      * If arguments were provided, they are used, otherwise
      * the input stream is used.
@@ -276,16 +459,56 @@ public class Javancss
         throws Exception, Error
     {
         _htPackages = new HashMap<String, PackageMetric>();
+        _distributions = new Distributions();
+        _htSkippedFiles = new LinkedHashMap<File, String>();
+        if ( _top > 0 )
+        {
+            _topFunctions = new TopN<FunctionMetric>( _top, _sTopBy );
+            _topObjects = new TopN<ObjectMetric>( _top, _sTopBy );
+        }
+        // with -top the totals are collected while the functions and objects are offered
+        _totals = _top > 0 ? new Totals() : null;
 
-        // either there are argument files, or stdin is used
-        if ( _vJavaSourceFiles == null )
+        _bCancelled = false;
+        _statistics = JavancssStatistics.getInstance();
+        // without a shared pool the parser is reused for the files of this measurement only
+        _measuringPool = _parserPool != null ? _parserPool : new ParserPool();
+        try
         {
-            _measureSource( reader );
+            // either there are argument files, or stdin is used
+            if ( _vJavaSourceFiles == null )
+            {
+                if ( _statistics != null )
+                {
+                    _statistics.filesQueued( 1 );
+                }
+                try
+                {
+                    // like a file, also when the source is too short for the parser to look
+                    _cancelToken.checkCancelled();
+                    _measureSource( reader );
+                }
+                finally
+                {
+                    _fireFileMeasured( null, 1, 1 );
+                }
+            }
+            else
+            {
+                // the collection of files get measured
+                _measureFiles( _vJavaSourceFiles );
+            }
         }
-        else
+        catch ( CancellationException e )
+        {
+            _discardResult();
+            _bCancelled = true;
+
+            return;
+        }
+        finally
         {
-            // the collection of files get measured
-            _measureFiles( _vJavaSourceFiles );
+            _measuringPool = null;
         }
 
         _vPackageMetrics = new ArrayList<PackageMetric>();
@@ -294,6 +517,80 @@ public class Javancss
             _vPackageMetrics.add( pkm );
         }
         Collections.sort( _vPackageMetrics );
+
+        if ( _top > 0 )
+        {
+            _totals.addPackages( _vPackageMetrics );
+            _setTop( _topFunctions, _topObjects );
+        }
+    }
+
+    /**
+     * Drops everything a cancelled measurement has collected so far,
+     * including its error messages, since it has not failed.
+     */
+    private void _discardResult()
+    {
+        _ncss = 0;
+        _loc = 0;
+        _jdcl = 0;
+        _sl = 0;
+        _ml = 0;
+        _jvdc = 0;
+        _functionTable.clear();
+        _objectTable.clear();
+        _htPackages = new HashMap<String, PackageMetric>();
+        _vPackageMetrics = new ArrayList<PackageMetric>();
+        _distributions = new Distributions();
+        _topFunctions = null;
+        _topObjects = null;
+        _totals = null;
+        _vFileFunctions = null;
+        _vFileObjects = null;
+        _vFilePackages = null;
+        _htSkippedFiles = new LinkedHashMap<File, String>();
+        _sErrorMessage = null;
+        _thrwError = null;
+    }
+
+    /**
+     * Replaces the tables with the kept functions and objects and the
+     * package list with its top entries, highest value first.
+     */
+    private void _setTop( TopN<FunctionMetric> topFunctions, TopN<ObjectMetric> topObjects )
+    {
+        _functionTable.clear();
+        _functionTable.addAll( topFunctions.toList() );
+        _objectTable.clear();
+        _objectTable.addAll( topObjects.toList() );
+
+        TopN<PackageMetric> topPackages = new TopN<PackageMetric>( _top, _sTopBy );
+        topPackages.offerAll( _vPackageMetrics );
+        _vPackageMetrics = topPackages.toList();
+
+        _topFunctions = null;
+        _topObjects = null;
+    }
+
+    /**
+     * Reduces an already complete result, e.g. a loaded one, to the top entries.
+     */
+    private void _selectTop()
+    {
+        // the distributions and totals still cover the complete result
+        getDistributions();
+        getTotals();
+        TopN<FunctionMetric> topFunctions = new TopN<FunctionMetric>( _top, _sTopBy );
+        for ( int row = 0; row < _functionTable.size(); row++ )
+        {
+            topFunctions.offer( _functionTable.getFunctionMetric( row ) );
+        }
+        TopN<ObjectMetric> topObjects = new TopN<ObjectMetric>( _top, _sTopBy );
+        for ( int row = 0; row < _objectTable.size(); row++ )
+        {
+            topObjects.offer( _objectTable.getObjectMetric( row ) );
+        }
+        _setTop( topFunctions, topObjects );
     }
 
     public List<Object[]> getImports()
@@ -316,7 +613,7 @@ public class Javancss
      */
     public List<FunctionMetric> getFunctions()
     {
-        return _vFunctionMetrics;
+        return getFunctionMetrics();
     }
 
     public void printObjectNcss( Writer w )
@@ -360,25 +657,13 @@ public class Javancss
         this( vJavaSourceFiles_, DEFAULT_ENCODING );
     }
 
+    /**
+     * Measures the source files like a JavancssSession with the given
+     * encoding does.
+     */
     public Javancss( List<File> vJavaSourceFiles_, String encoding_ )
     {
-        setEncoding( encoding_ );
-        _vJavaSourceFiles = vJavaSourceFiles_;
-        _measureRoot();
-    }
-
-    private void _measureRoot()
-        throws Error
-    {
-        try
-        {
-            _measureRoot( newReader( System.in ) );
-        }
-        catch ( Throwable pThrowable )
-        {
-            log.fine( "Javancss._measureRoot().e: " + pThrowable );
-            pThrowable.printStackTrace(System.err);
-        }
+        JavancssSession.builder().encoding( encoding_ ).build().measure( this, vJavaSourceFiles_ );
     }
 
     public Javancss( File sJavaSourceFile_ )
@@ -388,12 +673,7 @@ public class Javancss
 
     public Javancss( File sJavaSourceFile_, String encoding_ )
     {
-        log.fine( "Javancss.<init>(String).sJavaSourceFile_: " + sJavaSourceFile_ );
-        setEncoding( encoding_ );
-        _sErrorMessage = null;
-        _vJavaSourceFiles = new ArrayList<File>();
-        _vJavaSourceFiles.add( sJavaSourceFile_ );
-        _measureRoot();
+        this( Collections.singletonList( sJavaSourceFile_ ), encoding_ );
     }
 
     /**
@@ -422,20 +702,23 @@ public class Javancss
             return true;
         }
 
+        JavaParserInterface pJavaParser = null;
         try
         {
             log.fine( "Javancss.parseImports().START_PARSING" );
             if ( !log.isLoggable( Level.FINE ) )
             {
-                _pJavaParser = new JavaParser( reader );
+                pJavaParser = new JavaParser( new CanonicalCharStream( reader ) );
             }
             else
             {
-                _pJavaParser = new JavaParserDebug( reader );
+                CanonicalCharStream stream = new CanonicalCharStream( reader );
+                stream.setCommentImages( true );
+                pJavaParser = new JavaParserDebug( stream );
             }
-            _pJavaParser.parseImportUnit();
-            _vImports = _pJavaParser.getImports();
-            _aoPackage = _pJavaParser.getPackageObjects();
+            pJavaParser.parseImportUnit();
+            _vImports = pJavaParser.getImports();
+            _aoPackage = pJavaParser.getPackageObjects();
             log.fine( "Javancss.parseImports().END_PARSING" );
         }
         catch ( Exception pParseException )
@@ -446,9 +729,9 @@ public class Javancss
                 _sErrorMessage = "";
             }
             _sErrorMessage += "ParseException in STDIN";
-            if ( _pJavaParser != null )
+            if ( pJavaParser != null )
             {
-                _sErrorMessage += "\nLast useful checkpoint: \"" + _pJavaParser.getLastFunction() + "\"\n";
+                _sErrorMessage += "\nLast useful checkpoint: \"" + pJavaParser.getLastFunction() + "\"\n";
             }
             _sErrorMessage += pParseException.getMessage() + "\n";
             _thrwError = pParseException;
@@ -484,18 +767,14 @@ public class Javancss
         this( reader, DEFAULT_ENCODING );
     }
 
+    /**
+     * Measures the source read from <code>reader</code> like a
+     * JavancssSession does. Errors are available from
+     * getLastErrorMessage.
+     */
     public Javancss( Reader reader, String encoding_ )
     {
-        setEncoding( encoding_ );
-        try
-        {
-            _measureRoot( reader );
-        }
-        catch ( Throwable pThrowable )
-        {
-            log.fine( "Javancss.<init>(Reader).e: " + pThrowable );
-            pThrowable.printStackTrace(System.err);
-        }
+        JavancssSession.builder().encoding( encoding_ ).build().measure( this, reader );
     }
 
     /**
@@ -631,9 +910,25 @@ public class Javancss
         options.addOption( OptionBuilder.withDescription( "The same as '-function -object -package'." ).create( "all" ) );
         options.addOption( OptionBuilder.withDescription( "Opens a GUI to present the '-all' output in tabbed panels." ).create( "gui" ) );
         options.addOption( OptionBuilder.withDescription( "Output in XML format." ).create( "xml" ) );
-        options.addOption( OptionBuilder.withDescription( "Output file name. By default output goes to standard out." ).create( "out" ) );
+        options.addOption( OptionBuilder.withDescription( "Output in HTML format, like the XML output transformed with xslt/javancss2html.xsl." ).create( "html" ) );
+        options.addOption( OptionBuilder.withDescription( "Output file name. By default output goes to standard out." ).hasArg().create( "out" ) );
         options.addOption( OptionBuilder.withDescription( "Recurse to subdirs." ).create( "recursive" ) );
         options.addOption( OptionBuilder.withDescription( "Encoding used while reading source files (default: platform encoding)." ).hasArg().create( "encoding" ) );
+        options.addOption( OptionBuilder.withDescription( "Heap in megabytes for function and object metrics, beyond it they are kept in temporary files." ).hasArg().create( "budget" ) );
+        options.addOption( OptionBuilder.withDescription( "Saves the result in binary form to the given file." ).hasArg().create( "save" ) );
+        options.addOption( OptionBuilder.withDescription( "Writes the CCN and NCSS distribution charts of xslt/svg as SVG files into the given directory." ).hasArg().create( "svg" ) );
+        options.addOption( OptionBuilder.withDescription( "Reads a result saved with -save instead of parsing sources." ).hasArg().create( "load" ) );
+        options.addOption( OptionBuilder.withDescription( "Merges the given result files (from -save or -xml) instead of parsing sources." ).create( "merge" ) );
+        options.addOption( OptionBuilder.withDescription( "Measures only shard i of n (1 <= i <= n), chosen by a stable hash of the file path." ).hasArg().create( "shard" ) );
+        options.addOption( OptionBuilder.withDescription( "Skips files whose first 4 KB contain @Generated or DO NOT EDIT, without parsing them." ).create( "skipgenerated" ) );
+        options.addOption( OptionBuilder.withDescription( "Skips files whose first 4 KB match the regular expression, may be repeated." ).hasArg().create( "skippattern" ) );
+        options.addOption( OptionBuilder.withDescription( "Skips files larger than the given size in kilobytes." ).hasArg().create( "skiplarger" ) );
+        options.addOption( OptionBuilder.withDescription( "Balances the shards of -shard by file size." ).create( "shardbysize" ) );
+        options.addOption( OptionBuilder.withDescription( "Lists classes and functions sorted by name, within -budget if given." ).create( "sort" ) );
+        options.addOption( OptionBuilder.withDescription( "Number of threads formatting large reports (default: number of processors)." ).hasArg().create( "threads" ) );
+        options.addOption( OptionBuilder.withDescription( "Lists only the N packages, classes and functions with the highest value of the -by metric." ).hasArg().create( "top" ) );
+        options.addOption( OptionBuilder.withDescription( "Metric -top ranks by: ncss (default), ccn or javadocs." ).hasArg().create( "by" ) );
+        options.addOption( OptionBuilder.withDescription( "Compares two result files (from -save or -xml): javancss -diff old new." ).create( "diff" ) );
        
         CommandLine cl;
 
@@ -669,9 +964,122 @@ public class Javancss
 
         setEncoding( cl.getOptionValue( "encoding" ) );
         setXML( cl.hasOption( "xml" ) );
+        setHTML( cl.hasOption( "html" ) );
+
+        if ( cl.hasOption( "budget" ) )
+        {
+            try
+            {
+                setMemoryBudget( Long.parseLong( cl.getOptionValue( "budget" ) ) * 1024 * 1024 );
+            }
+            catch ( NumberFormatException e )
+            {
+                System.err.println( "javancss: invalid memory budget '" + cl.getOptionValue( "budget" ) + "'" );
+                return;
+            }
+        }
+
+        if ( cl.hasOption( "threads" ) )
+        {
+            try
+            {
+                setThreads( Integer.parseInt( cl.getOptionValue( "threads" ) ) );
+            }
+            catch ( NumberFormatException e )
+            {
+                System.err.println( "javancss: invalid number of threads '" + cl.getOptionValue( "threads" ) + "'" );
+                return;
+            }
+        }
+
+        GeneratedSourceFilter sourceFilter = new GeneratedSourceFilter();
+        if ( cl.hasOption( "skipgenerated" ) )
+        {
+            sourceFilter.addDefaultMarkers();
+        }
+        if ( cl.hasOption( "skippattern" ) )
+        {
+            for ( String sRegex : cl.getOptionValues( "skippattern" ) )
+            {
+                try
+                {
+                    sourceFilter.addPattern( sRegex );
+                }
+                catch ( PatternSyntaxException e )
+                {
+                    System.err.println( "javancss: invalid pattern '" + sRegex + "': " + e.getDescription() );
+                    return;
+                }
+            }
+        }
+        if ( cl.hasOption( "skiplarger" ) )
+        {
+            try
+            {
+                sourceFilter.setMaxBytes( Long.parseLong( cl.getOptionValue( "skiplarger" ) ) * 1024 );
+            }
+            catch ( NumberFormatException e )
+            {
+                System.err.println( "javancss: invalid size '" + cl.getOptionValue( "skiplarger" ) + "'" );
+                return;
+            }
+        }
+        if ( !sourceFilter.isEmpty() )
+        {
+            setSourceFilter( sourceFilter );
+        }
+
+        if ( cl.hasOption( "top" ) )
+        {
+            try
+            {
+                setTop( Integer.parseInt( cl.getOptionValue( "top" ) )
+                        , cl.hasOption( "by" ) ? cl.getOptionValue( "by" ) : TopN.NCSS );
+            }
+            catch ( NumberFormatException e )
+            {
+                System.err.println( "javancss: invalid number of entries '" + cl.getOptionValue( "top" ) + "'" );
+                return;
+            }
+            catch ( IllegalArgumentException e )
+            {
+                System.err.println( "javancss: " + e.getMessage() );
+                return;
+            }
+        }
+
+        if ( cl.hasOption( "diff" ) )
+        {
+            diff( cl );
+            return;
+        }
 
         // the arguments (the files) to be processed
-        _vJavaSourceFiles = findFiles( cl.getArgList(), cl.hasOption( "recursive" ) );
+        if ( !cl.hasOption( "merge" ) )
+        {
+            _vJavaSourceFiles = findFiles( cl.getArgList(), cl.hasOption( "recursive" ) );
+        }
+
+        if ( cl.hasOption( "shard" ) )
+        {
+            Shard shard;
+            try
+            {
+                shard = Shard.parse( cl.getOptionValue( "shard" ) );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                System.err.println( "javancss: " + e.getMessage() );
+                return;
+            }
+            if ( _vJavaSourceFiles == null )
+            {
+                System.err.println( "javancss: -shard needs source files, it can not split standard input" );
+                return;
+            }
+            shard.setBalanceBySize( cl.hasOption( "shardbysize" ) );
+            _vJavaSourceFiles = shard.select( _vJavaSourceFiles );
+        }
 
         if ( cl.hasOption( "gui" ) )
         {
@@ -695,38 +1103,124 @@ public class Javancss
             } );
             pJavancssFrame.setVisible( true );
 
+            // the frame measures in the background and shows files as they are done
             try
             {
-                _measureRoot( newReader( System.in ) );
+                pJavancssFrame.measure( this ).get();
             }
-            catch ( Throwable pThrowable )
+            catch ( Exception e )
             {
-                // shouldn't we print something here?
                 // error details have been written into lastError
             }
 
-            pJavancssFrame.showJavancss( this );
-            pJavancssFrame.setSelectedTab( JavancssFrame.S_PACKAGES );
-
             return;
         }
 
-        // this initiates the measurement
-        try
+        if ( cl.hasOption( "load" ) )
         {
-            _measureRoot( newReader( System.in ) );
+            String sResultFile = cl.getOptionValue( "load" );
+            try
+            {
+                ResultFile.read( new File( normalizeFileName( sResultFile ) ), this );
+            }
+            catch ( IOException e )
+            {
+                System.err.println( "javancss: could not load result file '" + sResultFile + "': " + e.getMessage() );
+                return;
+            }
+            if ( _top > 0 )
+            {
+                _selectTop();
+            }
         }
-        catch ( Throwable pThrowable )
+        else if ( cl.hasOption( "merge" ) )
         {
-            log.fine( "Javancss.<init>(String[]).e: " + pThrowable );
-            pThrowable.printStackTrace(System.err);
+            // the inputs share the memory budget
+            long memoryBudget = ( _objectTable.getMemoryBudget() + _functionTable.getMemoryBudget() )
+                                / Math.max( 1, cl.getArgList().size() );
+            List<Javancss> vResults = new ArrayList<Javancss>();
+            try
+            {
+                for ( String sResultFile : cl.getArgList() )
+                {
+                    Javancss result = new Javancss();
+                    result.setMemoryBudget( memoryBudget );
+                    vResults.add( result );
+                    try
+                    {
+                        ResultMerger.read( new File( normalizeFileName( sResultFile ) ), result );
+                    }
+                    catch ( IOException e )
+                    {
+                        System.err.println( "javancss: could not read result file '" + sResultFile + "': " + e.getMessage() );
+                        return;
+                    }
+                }
+                ResultMerger.merge( vResults, this );
+            }
+            finally
+            {
+                for ( Javancss result : vResults )
+                {
+                    result.close();
+                }
+            }
+            if ( _top > 0 )
+            {
+                _selectTop();
+            }
         }
-        if ( getLastErrorMessage() != null )
+        else
         {
-            System.err.println( getLastErrorMessage() + "\n" );
-            if ( getNcss() <= 0 )
+            // this initiates the measurement
+            try
             {
-                return;
+                _measureRoot( _newRootReader() );
+            }
+            catch ( Throwable pThrowable )
+            {
+                log.fine( "Javancss.<init>(String[]).e: " + pThrowable );
+                pThrowable.printStackTrace(System.err);
+            }
+            _printSkippedFiles();
+            if ( getLastErrorMessage() != null )
+            {
+                System.err.println( getLastErrorMessage() + "\n" );
+                if ( getNcss() <= 0 )
+                {
+                    return;
+                }
+            }
+        }
+
+        if ( cl.hasOption( "sort" ) )
+        {
+            sortByName();
+        }
+
+        if ( cl.hasOption( "save" ) )
+        {
+            String sResultFile = cl.getOptionValue( "save" );
+            try
+            {
+                ResultFile.save( this, new File( normalizeFileName( sResultFile ) ) );
+            }
+            catch ( IOException e )
+            {
+                System.err.println( "javancss: could not save result file '" + sResultFile + "': " + e.getMessage() );
+            }
+        }
+
+        if ( cl.hasOption( "svg" ) )
+        {
+            String sChartDirectory = cl.getOptionValue( "svg" );
+            try
+            {
+                SvgChartWriter.writeCharts( this, new File( normalizeFileName( sChartDirectory ) ) );
+            }
+            catch ( IOException e )
+            {
+                System.err.println( "javancss: could not write charts to '" + sChartDirectory + "': " + e.getMessage() );
             }
         }
 
@@ -737,6 +1231,7 @@ public class Javancss
             try
             {
                 out = new FileOutputStream( normalizeFileName( sOutputFile ) );
+                setReportFile( new File( normalizeFileName( sOutputFile ) ) );
             }
             catch ( Exception exception )
             {
@@ -745,7 +1240,7 @@ public class Javancss
             }
         }
         // TODO: encoding configuration support for result output
-        final PrintWriter pw = useXML() ? new PrintWriter( new OutputStreamWriter( out, "UTF-8" ) ) : new PrintWriter( out );
+        final PrintWriter pw = useXML() || useHTML() ? new PrintWriter( new OutputStreamWriter( out, "UTF-8" ) ) : new PrintWriter( out );
         try {
 
             format( pw, cl.hasOption( "package" ), cl.hasOption( "object" ), cl.hasOption( "function" ), cl.hasOption( "all" ) );
@@ -763,6 +1258,70 @@ public class Javancss
         }
     }
 
+    private void _printSkippedFiles()
+    {
+        if ( _htSkippedFiles.isEmpty() )
+        {
+            return;
+        }
+        System.err.println( "Skipped " + _htSkippedFiles.size() + " source files without parsing them:" );
+        for ( Map.Entry<File, String> entry : _htSkippedFiles.entrySet() )
+        {
+            System.err.println( "    " + entry.getKey().getPath() + " (" + entry.getValue() + ")" );
+        }
+        System.err.println();
+    }
+
+    private void diff( CommandLine cl )
+        throws IOException
+    {
+        List<String> vArgs = cl.getArgList();
+        if ( vArgs.size() != 2 )
+        {
+            System.err.println( "javancss: -diff needs two result files, the old one and the new one" );
+            return;
+        }
+        boolean packages = cl.hasOption( "package" );
+        boolean objects = cl.hasOption( "object" );
+        boolean functions = cl.hasOption( "function" );
+        if ( cl.hasOption( "all" ) || !( packages || objects || functions ) )
+        {
+            packages = true;
+            objects = true;
+            functions = true;
+        }
+
+        PrintWriter pw = new PrintWriter( System.out );
+        ResultDiff.TextWriter writer = new ResultDiff.TextWriter( pw );
+        long memoryBudget = _objectTable.getMemoryBudget() + _functionTable.getMemoryBudget();
+        if ( memoryBudget <= 0 )
+        {
+            // snapshots may not fit into the heap, rows beyond a quarter of it go to disk
+            memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+        }
+        Javancss oldResult = new Javancss();
+        oldResult.setMemoryBudget( memoryBudget / 2 );
+        Javancss newResult = new Javancss();
+        newResult.setMemoryBudget( memoryBudget / 2 );
+        try
+        {
+            ResultDiff.diff( new File( normalizeFileName( vArgs.get( 0 ) ) ), oldResult
+                             , new File( normalizeFileName( vArgs.get( 1 ) ) ), newResult
+                             , writer, packages, objects, functions );
+            writer.printSummary( pw, oldResult.getNcss(), newResult.getNcss() );
+        }
+        catch ( IOException e )
+        {
+            System.err.println( "javancss: could not compare result files: " + e.getMessage() );
+        }
+        finally
+        {
+            oldResult.close();
+            newResult.close();
+        }
+        pw.flush();
+    }
+
     private void format( PrintWriter pw, boolean packages, boolean object, boolean function, boolean all )
         throws IOException
     {
@@ -812,7 +1371,7 @@ public class Javancss
 
     public int getJvdc()
     {
-        return _pJavaParser.getJvdc();
+        return _jvdc;
     }
 
     /**
@@ -821,27 +1380,366 @@ public class Javancss
      */
     public int getJdcl()
     {
-        return JavaParserTokenManager._iFormalComments;
+        return _jdcl;
     }
 
     public int getSl()
     {
-        return JavaParserTokenManager._iSingleComments;
+        return _sl;
     }
 
     public int getMl()
     {
-        return JavaParserTokenManager._iMultiComments;
+        return _ml;
     }
 
+    /**
+     * Returns a read only view of the function table.
+     * The FunctionMetric objects are created on access.
+     */
     public List<FunctionMetric> getFunctionMetrics()
     {
-        return _vFunctionMetrics;
+        return _functionTable.asFunctionList();
     }
 
+    /**
+     * Returns a read only view of the object table.
+     * The ObjectMetric objects are created on access.
+     */
     public List<ObjectMetric> getObjectMetrics()
     {
-        return _vObjectMetrics;
+        return _objectTable.asObjectList();
+    }
+
+    /**
+     * Sets the heap in bytes the function and object tables may
+     * use together. Rows beyond it are moved to temporary files.
+     * Must be set before any source is measured, zero or less
+     * keeps everything in memory.
+     */
+    public void setMemoryBudget( long bytes )
+    {
+        _functionTable.setMemoryBudget( bytes / 2 );
+        _objectTable.setMemoryBudget( bytes / 2 );
+    }
+
+    /**
+     * Sets the listener told about each measured source file.
+     */
+    public void setMeasurementListener( MeasurementListener listener )
+    {
+        _listener = listener;
+    }
+
+    /**
+     * Sets the filter deciding which source files are skipped without
+     * being parsed, null measures all files. Must be set before any
+     * source is measured.
+     */
+    public void setSourceFilter( GeneratedSourceFilter sourceFilter )
+    {
+        _sourceFilter = sourceFilter;
+    }
+
+    /**
+     * Takes the parsers from the given pool, shared e.g. by the
+     * Javancss objects of a build, instead of using one for this
+     * measurement only. Must be set before any source is measured.
+     */
+    public void setParserPool( ParserPool parserPool )
+    {
+        _parserPool = parserPool;
+    }
+
+    /**
+     * Returns the files the source filter skipped, in the order they
+     * came up, each with the reason.
+     */
+    public Map<File, String> getSkippedFiles()
+    {
+        return Collections.unmodifiableMap( _htSkippedFiles );
+    }
+
+    /**
+     * Returns the reader of standard input when there are no source
+     * files to measure, so it is only opened when it is read.
+     */
+    private Reader _newRootReader()
+        throws UnsupportedEncodingException
+    {
+        return _vJavaSourceFiles == null ? newReader( System.in ) : null;
+    }
+
+    /**
+     * Measures <code>vFiles</code> into this object, which has not
+     * measured anything yet, with the settings made before, like the
+     * parser pool. Errors are available from getLastErrorMessage.
+     */
+    public void measure( List<File> vFiles )
+    {
+        _vJavaSourceFiles = vFiles;
+        measure();
+    }
+
+    /**
+     * Measures the source read from <code>reader</code> into this
+     * object, which has not measured anything yet. Errors are
+     * available from getLastErrorMessage.
+     */
+    void measure( Reader reader )
+    {
+        _vJavaSourceFiles = null;
+        try
+        {
+            _measureRoot( reader );
+        }
+        catch ( Throwable pThrowable )
+        {
+            // error details have been written into lastError
+        }
+    }
+
+    /**
+     * Measures the source files (or standard input) given on the
+     * command line. Errors are available from getLastErrorMessage.
+     */
+    void measure()
+    {
+        try
+        {
+            _measureRoot( _newRootReader() );
+        }
+        catch ( Throwable pThrowable )
+        {
+            // error details have been written into lastError
+        }
+    }
+
+    /**
+     * Sorts the object and function tables by name. With a memory
+     * budget, sorted runs are spilled to temporary files and merged,
+     * so the sort does not need the whole tables in memory.
+     */
+    public void sortByName()
+    {
+        MetricTable objectTable = MetricTableSorter.sort( _objectTable );
+        _objectTable.clear();
+        _objectTable = objectTable;
+        MetricTable functionTable = MetricTableSorter.sort( _functionTable );
+        _functionTable.clear();
+        _functionTable = functionTable;
+    }
+
+    /**
+     * Sets the number of threads the formatters may use to render
+     * the object and function lists, one renders them sequentially.
+     * The output does not depend on it.
+     */
+    public void setThreads( int threads )
+    {
+        _threads = Math.max( 1, threads );
+    }
+
+    public int getThreads()
+    {
+        return _threads;
+    }
+
+    /**
+     * Keeps only the <code>n</code> packages, objects and functions
+     * with the highest value of metric <code>sBy</code> ("ncss",
+     * "ccn" or "javadocs"), ordered from the highest value down.
+     * Must be set before any source is measured; metrics are then
+     * ranked as they are produced and the others are dropped.
+     */
+    public void setTop( int n, String sBy )
+    {
+        if ( n < 1 )
+        {
+            throw new IllegalArgumentException( "Invalid number of entries: " + n );
+        }
+        TopN.checkBy( sBy );
+        _top = n;
+        _sTopBy = sBy;
+    }
+
+    /**
+     * Replaces the current measurement with a result read from
+     * elsewhere, for example a result file.
+     */
+    void setResult( int ncss, int loc, List<PackageMetric> vPackageMetrics
+                    , MetricTable objectTable, MetricTable functionTable )
+    {
+        _ncss = ncss;
+        _loc = loc;
+        _jvdc = 0;
+        _jdcl = 0;
+        _sl = 0;
+        _ml = 0;
+        _vPackageMetrics = vPackageMetrics;
+        _htPackages = new HashMap<String, PackageMetric>();
+        for ( PackageMetric pkm : vPackageMetrics )
+        {
+            _htPackages.put( pkm.name, pkm );
+        }
+        objectTable.setMemoryBudget( _objectTable.getMemoryBudget() );
+        functionTable.setMemoryBudget( _functionTable.getMemoryBudget() );
+        if ( objectTable != _objectTable )
+        {
+            _objectTable.clear();
+        }
+        if ( functionTable != _functionTable )
+        {
+            _functionTable.clear();
+        }
+        _objectTable = objectTable;
+        _functionTable = functionTable;
+        _distributions = null;
+        _totals = null;
+    }
+
+    /**
+     * Sets the comment counts of a result set with setResult, which
+     * leaves them at zero.
+     */
+    void setComments( int jvdc, int jdcl, int sl, int ml )
+    {
+        _jvdc = jvdc;
+        _jdcl = jdcl;
+        _sl = sl;
+        _ml = ml;
+    }
+
+    /**
+     * Sets the project distributions of a result set with setResult,
+     * the package distributions are part of its PackageMetrics.
+     */
+    void setDistributions( Distributions distributions )
+    {
+        _distributions = distributions;
+    }
+
+    /**
+     * The distributions of function NCSS, function CCN and object
+     * NCSS of the whole project. They are collected while measuring
+     * and cover all functions and objects even when only the top
+     * entries are kept. For a result read from an XML report they
+     * are computed from its tables, together with the distributions
+     * of its packages.
+     */
+    public Distributions getDistributions()
+    {
+        if ( _distributions == null )
+        {
+            _distributions = new Distributions();
+            _rebuildDistributions();
+        }
+
+        return _distributions;
+    }
+
+    /**
+     * The numbers and sums of the functions, objects and packages the
+     * averages and totals of the reports are computed from. They
+     * cover all of them even when only the top entries are kept.
+     */
+    public Totals getTotals()
+    {
+        if ( _totals == null )
+        {
+            _totals = new Totals();
+            _totals.addFunctions( _functionTable );
+            _totals.addObjects( _objectTable );
+            if ( _vPackageMetrics != null )
+            {
+                _totals.addPackages( _vPackageMetrics );
+            }
+        }
+
+        return _totals;
+    }
+
+    /**
+     * The number of top entries kept, 0 when all are kept.
+     */
+    int getTop()
+    {
+        return _top;
+    }
+
+    /**
+     * Fills the distributions from the tables, each row goes to the
+     * package with the longest name its own name starts with.
+     */
+    private void _rebuildDistributions()
+    {
+        PackageMetric defaultPackage = _htPackages.get( "." );
+        for ( PackageMetric pkm : _htPackages.values() )
+        {
+            pkm.distributions.clear();
+        }
+        for ( int row = 0; row < _functionTable.size(); row++ )
+        {
+            int ncss = _functionTable.getNcss( row );
+            int ccn = _functionTable.getCcn( row );
+            _distributions.addFunction( ncss, ccn );
+            PackageMetric pkm = _findPackage( _functionTable.getName( row ), defaultPackage );
+            if ( pkm != null )
+            {
+                pkm.distributions.addFunction( ncss, ccn );
+            }
+        }
+        for ( int row = 0; row < _objectTable.size(); row++ )
+        {
+            int ncss = _objectTable.getNcss( row );
+            _distributions.addObject( ncss );
+            PackageMetric pkm = _findPackage( _objectTable.getName( row ), defaultPackage );
+            if ( pkm != null )
+            {
+                pkm.distributions.addObject( ncss );
+            }
+        }
+    }
+
+    private PackageMetric _findPackage( String sName, PackageMetric defaultPackage )
+    {
+        int end = sName.indexOf( '(' );
+        if ( end < 0 )
+        {
+            end = sName.length();
+        }
+        for ( int dot = sName.lastIndexOf( '.', end - 1 ); dot > 0; dot = sName.lastIndexOf( '.', dot - 1 ) )
+        {
+            PackageMetric pkm = _htPackages.get( sName.substring( 0, dot ) );
+            if ( pkm != null )
+            {
+                return pkm;
+            }
+        }
+
+        return defaultPackage;
+    }
+
+    /**
+     * Empties the function and object tables and deletes the
+     * temporary files they keep the rows beyond the memory budget
+     * in. Totals and packages stay. Programs which measure with a
+     * memory budget call it once they are done with the result.
+     */
+    public void close()
+    {
+        _functionTable.clear();
+        _objectTable.clear();
+    }
+
+    public MetricTable getFunctionTable()
+    {
+        return _functionTable;
+    }
+
+    public MetricTable getObjectTable()
+    {
+        return _objectTable;
     }
 
     /**
@@ -863,9 +1761,40 @@ public class Javancss
         return _thrwError;
     }
 
+    /**
+     * Same as cancel().
+     */
     public void setExit()
     {
-        exit = true;
+        cancel();
+    }
+
+    /**
+     * Cancels the measurement, may be called from any thread. The
+     * file being parsed is abandoned within a few hundred tokens,
+     * the partial result is dropped and isCancelled() returns true.
+     */
+    public void cancel()
+    {
+        _cancelToken.cancel();
+    }
+
+    /**
+     * Sets the token which cancels the measurement, e.g. one shared
+     * with other measurements. Must be set before measuring starts.
+     */
+    public void setCancelToken( CancelToken cancelToken )
+    {
+        _cancelToken = cancelToken;
+    }
+
+    /**
+     * Returns true if the last measurement was cancelled; its result
+     * is then empty and no error is reported.
+     */
+    public boolean isCancelled()
+    {
+        return _bCancelled;
     }
 
     private boolean _bXML = false;
@@ -880,8 +1809,41 @@ public class Javancss
         return _bXML;
     }
 
+    private boolean _bHTML = false;
+
+    /**
+     * Selects the HTML output, which takes precedence over XML.
+     */
+    public void setHTML( boolean bHTML )
+    {
+        _bHTML = bHTML;
+    }
+
+    public boolean useHTML()
+    {
+        return _bHTML;
+    }
+
+    private File _fReport = null;
+
+    /**
+     * The file the output is written to, null for none. The HTML
+     * output then writes the pages of long lists to files next to it.
+     */
+    public void setReportFile( File fReport )
+    {
+        _fReport = fReport;
+    }
+
     public Formatter getFormatter()
     {
+        if ( useHTML() )
+        {
+            HtmlFormatter formatter = new HtmlFormatter( this );
+            formatter.setReportFile( _fReport );
+
+            return formatter;
+        }
         if ( useXML() )
         {
             return new XmlFormatter( this );
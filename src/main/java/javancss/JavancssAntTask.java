@@ -82,9 +82,13 @@ public class JavancssAntTask extends MatchingTask {
      */
     private File outputfile;
     /**
-     * The format of the output file. Allowable values are 'plain' or 'xml'.
+     * The format of the output file. Allowable values are 'plain', 'xml' or 'html'.
      */
     private String format = "plain";
+    /**
+     * The directory the SVG charts are written to, none if null.
+     */
+    private File svgdir;
     /**
      * Indicates the failure of the JavaNCSS process.
      */
@@ -189,6 +193,19 @@ public class JavancssAntTask extends MatchingTask {
      * Whether to generate a report.
      */
     private boolean generateReport = false;
+    /**
+     * Whether to reuse the results of unchanged files from the last run.
+     */
+    private boolean incremental = false;
+    /**
+     * The directory the results of the single files are cached in, by
+     * default next to the output file.
+     */
+    private File cachedir;
+    /**
+     * The merged result the report is written from in incremental mode.
+     */
+    private File resultFile;
     /**
      * The JavaNCSS object containing details of the code whose metrics are
      * to be checked.
@@ -204,8 +221,8 @@ public class JavancssAntTask extends MatchingTask {
 
     /**
      * Sets the format of the output file.
-     * @param format the format of the output file. Allowable values are 'plain'
-     * or 'xml'.
+     * @param format the format of the output file. Allowable values are 'plain',
+     * 'xml' or 'html'.
      */
     public void setFormat(String format) {
         this.format = format;
@@ -243,6 +260,26 @@ public class JavancssAntTask extends MatchingTask {
         this.generateReport = generateReport;
     }
 
+    /**
+     * Whether only files changed since the last run should be parsed.
+     * The run is skipped when neither the files nor the settings changed.
+     * Default is false.
+     * @param incremental true if it should; false otherwise.
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Sets the directory the results of the single files are cached in
+     * for incremental runs. Defaults to the output file name with
+     * ".cache" appended.
+     * @param cachedir the cache directory.
+     */
+    public void setCachedir(File cachedir) {
+        this.cachedir = cachedir;
+    }
+
     /**
      * Sets the directory to be scanned by the tool. This should be the
      * directory containing the source files whose metrics are to be
@@ -261,6 +298,15 @@ public class JavancssAntTask extends MatchingTask {
         this.outputfile = outputfile;
     }
 
+    /**
+     * Sets the directory the SVG distribution charts are written to
+     * along with the report.
+     * @param svgdir the directory for the charts.
+     */
+    public void setSvgdir(File svgdir) {
+        this.svgdir = svgdir;
+    }
+
     /**
      * Set the classpath to be used.
      * @param classpath the classpath to be used.
@@ -300,13 +346,50 @@ public class JavancssAntTask extends MatchingTask {
 
         List<File> fileList = findFilesToAnalyse();
 
-        // First check thresholds
-        if (thresholdsExceeded(fileList) && abortOnFail) {
-            throw new BuildException("Metric threshold value(s) surpassed");
+        IncrementalCache cache = null;
+        if (incremental) {
+            cache = new IncrementalCache(getCacheDir(), null);
+            cache.load();
+            if (cache.isUpToDate(fileList, getSettings()) && reportExists()) {
+                log("Metrics of " + fileList.size() + " files are up to date");
+                return;
+            }
+            measureIncrementally(cache, fileList);
+        }
+
+        try {
+            // First check thresholds
+            boolean exceeded = thresholdsExceeded(fileList);
+            if (exceeded && abortOnFail) {
+                saveCache(cache, false);
+                throw new BuildException("Metric threshold value(s) surpassed");
+            }
+
+            // Then generate report
+            int exitValue = generateReport(fileList);
+            if (cache != null && !cache.getFailedFiles().isEmpty()) {
+                exitValue = FAILURE;
+            }
+            saveCache(cache, !exceeded && exitValue == SUCCESS);
+            handleExitValue(exitValue);
+        } finally {
+            if (resultFile != null) {
+                resultFile.delete();
+                resultFile = null;
+            }
+            if (javancss != null) {
+                javancss.close();
+                javancss = null;
+            }
         }
+    }
 
-        // Then generate report
-        int exitValue = generateReport(fileList);
+    /**
+     * Fails the build or logs an error when the report could not be
+     * generated.
+     * @param exitValue {@link #SUCCESS} or {@link #FAILURE}.
+     */
+    private void handleExitValue(int exitValue) {
         if (exitValue == FAILURE) {
             if (abortOnFail) {
                 throw new BuildException("JavaNcss failed", getLocation());
@@ -316,6 +399,99 @@ public class JavancssAntTask extends MatchingTask {
         }
     }
 
+    /**
+     * Gets the directory the results of the single files are cached in.
+     * @return the cache directory.
+     * @throws BuildException if neither cachedir nor outputfile is set.
+     */
+    private File getCacheDir() {
+        if (cachedir != null) {
+            return cachedir;
+        }
+        if (outputfile == null) {
+            throw new BuildException("cachedir or outputfile attribute must be set for incremental runs!");
+        }
+        return new File(outputfile.getPath() + ".cache");
+    }
+
+    /**
+     * Gets the settings which change the report or the outcome of the
+     * threshold checks. An incremental run is skipped only if they are
+     * the same as in the last successful run.
+     * @return the settings as one line.
+     */
+    private String getSettings() {
+        StringBuilder settings = new StringBuilder();
+        settings.append("report=").append(generateReport)
+                .append(" format=").append(format)
+                .append(" metrics=").append(packageMetrics).append(',').append(classMetrics).append(',').append(functionMetrics)
+                .append(" out=").append(outputfile == null ? "" : outputfile.getAbsolutePath())
+                .append(" svg=").append(svgdir == null ? "" : svgdir.getAbsolutePath())
+                .append(" thresholds=");
+        int[] thresholds = { classPerPkgMax, classPerPkgMin, funcPerPkgMax, funcPerPkgMin, ncssPerPkgMax, ncssPerPkgMin,
+                             classPerClassMax, classPerClassMin, funcPerClassMax, funcPerClassMin, ncssPerClassMax, ncssPerClassMin,
+                             jvdcPerClassMax, jvdcPerClassMin, jvdcPerFuncMax, jvdcPerFuncMin, ccnPerFuncMax, ccnPerFuncMin,
+                             ncssPerFuncMax, ncssPerFuncMin };
+        for (int threshold = 0; threshold < thresholds.length; threshold++) {
+            settings.append(threshold == 0 ? "" : ",").append(thresholds[threshold]);
+        }
+        return settings.toString();
+    }
+
+    /**
+     * Whether the report and charts of the last run are still there.
+     * A report to standard output is always written again.
+     * @return true if nothing has to be written; false otherwise.
+     */
+    private boolean reportExists() {
+        if (!generateReport) {
+            return true;
+        }
+        return outputfile != null && outputfile.isFile() && (svgdir == null || svgdir.isDirectory());
+    }
+
+    /**
+     * Measures the specified files, parsing only those changed since the
+     * last run, and keeps the merged result for the threshold checks and
+     * the report.
+     * @param cache the results of the last run.
+     * @param fileList the files to be analysed.
+     * @throws BuildException if the cache cannot be written.
+     */
+    private void measureIncrementally(IncrementalCache cache, List<File> fileList) {
+        try {
+            javancss = cache.measure(fileList);
+            log("Parsed " + cache.getParsedFiles() + " of " + fileList.size() + " files");
+            for (File file : cache.getFailedFiles()) {
+                log("Could not parse " + file, Project.MSG_ERR);
+            }
+            if (generateReport) {
+                resultFile = File.createTempFile("javancss", ".jncs");
+                resultFile.deleteOnExit();
+                ResultFile.save(javancss, resultFile, false);
+            }
+        } catch (IOException e) {
+            throw new BuildException(e, getLocation());
+        }
+    }
+
+    /**
+     * Writes the manifest of an incremental run.
+     * @param cache the cache of the run, null if the run is not incremental.
+     * @param success whether the run succeeded, only then the next run
+     * with the same files and settings is skipped.
+     */
+    private void saveCache(IncrementalCache cache, boolean success) {
+        if (cache == null) {
+            return;
+        }
+        try {
+            cache.save(success ? getSettings() : null);
+        } catch (IOException e) {
+            log("Could not write the cache manifest: " + e.getMessage(), Project.MSG_WARN);
+        }
+    }
+
     /**
      * Generates a report on the specified files.
      * @param fileList the files to be analyzed.
@@ -341,6 +517,7 @@ public class JavancssAntTask extends MatchingTask {
 
         try {
             Javancss javancss = new Javancss(javancssArguments);
+            javancss.close();
 
             if (javancss.getLastError() == null) {
                 return SUCCESS;
@@ -427,6 +604,8 @@ public class JavancssAntTask extends MatchingTask {
         // Set format of report
         if (format.equals("xml")) {
             arguments.add("-xml");
+        } else if (format.equals("html")) {
+            arguments.add("-html");
         }
 
         // Set location of report
@@ -435,8 +614,19 @@ public class JavancssAntTask extends MatchingTask {
             arguments.add(outputfile.getPath());
         }
 
-        // Set source code to be processed
-        arguments.add("@" + createSourceListFile(fileList).getPath());
+        // Set location of charts
+        if (svgdir != null) {
+            arguments.add("-svg");
+            arguments.add(svgdir.getPath());
+        }
+
+        // Set source code to be processed, or the merged result of an incremental run
+        if (resultFile != null) {
+            arguments.add("-load");
+            arguments.add(resultFile.getPath());
+        } else {
+            arguments.add("@" + createSourceListFile(fileList).getPath());
+        }
 
         String[] javancssArguments = new String[arguments.size()];
         for (int argument = 0; argument < arguments.size(); argument++) {
@@ -22,18 +22,31 @@ package javancss;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
 import java.text.*;
 import java.io.*;
 import java.util.List;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableRowSorter;
 
 /**
  * Main class used to start JavaNCSS in GUI mode from other
  * java applications. To start JavaNCSS from the command line,
- * gui mode or not, class 'Main' is used.
+ * gui mode or not, class 'Main' is used.<p>
+ *
+ * Packages, classes and methods are shown in sortable tables
+ * which read the metrics directly, so even a very large result
+ * costs only the rows on screen. The filter field above the tables
+ * keeps the rows whose name contains the given text.
  *
  * @author  <a href="http://www.kclee.de/clemens/">Chr. Clemens Lee</a> (<a href="mailto:clemens@kclee.com"><i>clemens@kclee.com</i></a>)
  * @version $Id$
@@ -43,9 +56,13 @@ public class JavancssFrame extends JFrame {
     public static final String S_CLASSES = "Classes";
     public static final String S_METHODS = "Methods";
 
-    private JTextArea _txtPackage;
-    private JTextArea _txtObject;
-    private JTextArea _txtFunction;
+    private final PackageTableModel _packageModel = new PackageTableModel();
+    private final MetricTableModel _objectModel = new MetricTableModel( false );
+    private final MetricTableModel _functionModel = new MetricTableModel( true );
+    private final List<TableRowSorter<AbstractTableModel>> _vSorters = new ArrayList<TableRowSorter<AbstractTableModel>>();
+
+    private JTextField _txtFilter;
+    private JProgressBar _pProgressBar;
     private JTextArea _txtError;
 
     private JTabbedPane _pTabbedPane = null;
@@ -54,30 +71,47 @@ public class JavancssFrame extends JFrame {
 
     private boolean _bNoError = true;
 
+    /**
+     * The result shown, null while it is still measured.
+     */
+    private Javancss _pJavancss = null;
+
     public void save() {
+        if ( _pJavancss == null ) {
+            JOptionPane.showMessageDialog( this, "The measurement has not finished yet.", "Message", JOptionPane.INFORMATION_MESSAGE );
+            return;
+        }
+
         File targetDirectory = new File(".");
         File packagesFile = new File( targetDirectory, "javancss-packages.txt" );
         File classesFile  = new File( targetDirectory, "javancss-classes.txt" );
         File methodsFile  = new File( targetDirectory, "javancss-methods.txt" );
 
         String sSuccessMessage = "Data appended successfully to the following files:";
+        String sDate = getCurrentDate();
 
         try {
-            appendFile( packagesFile, _txtPackage.getText() );
+            StringWriter sw = new StringWriter();
+            _pJavancss.printPackageNcss( sw );
+            appendFile( packagesFile, sDate + "\n\n" + sw.toString() );
             sSuccessMessage += "\n" + packagesFile;
         } catch(Exception e) {
-            JOptionPane.showMessageDialog( this, "Could not append to file '" + classesFile + "'.\n" + e, "Error", JOptionPane.ERROR_MESSAGE );
+            JOptionPane.showMessageDialog( this, "Could not append to file '" + packagesFile + "'.\n" + e, "Error", JOptionPane.ERROR_MESSAGE );
         }
 
         try {
-            appendFile( classesFile, _txtObject.getText() );
+            StringWriter sw = new StringWriter();
+            _pJavancss.printObjectNcss( sw );
+            appendFile( classesFile, sDate + "\n\n" + sw.toString() );
             sSuccessMessage += "\n" + classesFile;
         } catch(Exception e) {
             JOptionPane.showMessageDialog( this, "Could not append to file '" + classesFile + "'.\n" + e, "Error", JOptionPane.ERROR_MESSAGE );
         }
 
         try {
-            appendFile( methodsFile, _txtFunction.getText() );
+            StringWriter sw = new StringWriter();
+            _pJavancss.printFunctionNcss( sw );
+            appendFile( methodsFile, sDate + "\n\n" + sw.toString() );
             sSuccessMessage += "\n" + methodsFile;
         } catch(Exception e) {
             JOptionPane.showMessageDialog( this, "Could not append to file '" + methodsFile + "'.\n" + e, "Error", JOptionPane.ERROR_MESSAGE );
@@ -101,16 +135,7 @@ public class JavancssFrame extends JFrame {
         setIconImage( new ImageIcon( getClass().getClassLoader().getResource( "javancss/javancssframe.gif" ) ).getImage() );
 
         createMenuBar();
-
-        GridBagLayout layout = new GridBagLayout();
-
-        getContentPane().setLayout(layout);
-        
-        JPanel busyPanel = new JPanel();
-        busyPanel.setLayout( new BorderLayout() );
-        busyPanel.add( new JLabel( new ImageIcon( getClass().getResource("/javancss/busy-squares.gif") ) ) );
-        
-        getContentPane().add(busyPanel);
+        createContent();
 
         pack();
         setSize(800, 600);
@@ -120,6 +145,228 @@ public class JavancssFrame extends JFrame {
         setLocation( ( screenSize.width - getWidth() ) / 2, ( screenSize.height - getHeight() ) / 2 );
     }
 
+    private void createContent()
+    {
+        getContentPane().removeAll();
+        getContentPane().setLayout( new BorderLayout() );
+        _vSorters.clear();
+
+        _txtFilter = new JTextField();
+        _txtFilter.getDocument().addDocumentListener( new DocumentListener()
+        {
+            public void insertUpdate( DocumentEvent e )
+            {
+                applyFilter();
+            }
+
+            public void removeUpdate( DocumentEvent e )
+            {
+                applyFilter();
+            }
+
+            public void changedUpdate( DocumentEvent e )
+            {
+                applyFilter();
+            }
+        } );
+        JPanel filterPanel = new JPanel( new BorderLayout( 5, 0 ) );
+        filterPanel.setBorder( BorderFactory.createEmptyBorder( 5, 5, 0, 5 ) );
+        filterPanel.add( new JLabel( "Filter:" ), BorderLayout.WEST );
+        filterPanel.add( _txtFilter, BorderLayout.CENTER );
+
+        _pTabbedPane = new JTabbedPane();
+        _pTabbedPane.setDoubleBuffered(true);
+        _pTabbedPane.addTab( S_PACKAGES, null, createTable( _packageModel ) );
+        _pTabbedPane.addTab( S_CLASSES, null, createTable( _objectModel ) );
+        _pTabbedPane.addTab( S_METHODS, null, createTable( _functionModel ) );
+
+        _pProgressBar = new JProgressBar( 0, 100 );
+        _pProgressBar.setStringPainted( true );
+        _pProgressBar.setString( "" );
+
+        getContentPane().add( filterPanel, BorderLayout.NORTH );
+        getContentPane().add( _pTabbedPane, BorderLayout.CENTER );
+        getContentPane().add( _pProgressBar, BorderLayout.SOUTH );
+    }
+
+    private JScrollPane createTable( AbstractTableModel model )
+    {
+        JTable table = new JTable( model );
+        TableRowSorter<AbstractTableModel> sorter = new TableRowSorter<AbstractTableModel>( model );
+        table.setRowSorter( sorter );
+        table.setAutoResizeMode( JTable.AUTO_RESIZE_LAST_COLUMN );
+        table.getColumnModel().getColumn( 0 ).setPreferredWidth( 500 );
+        _vSorters.add( sorter );
+
+        JScrollPane jspTable = new JScrollPane( table );
+        int inset = 5;
+        jspTable.setBorder( BorderFactory.createEmptyBorder( inset, inset, inset, inset ) );
+
+        return jspTable;
+    }
+
+    /**
+     * Keeps the rows of all tables whose name contains the text of
+     * the filter field, ignoring case.
+     */
+    private void applyFilter()
+    {
+        String sFilter = _txtFilter.getText();
+        RowFilter<AbstractTableModel, Integer> filter = null;
+        if ( sFilter.length() > 0 )
+        {
+            filter = RowFilter.regexFilter( "(?i)" + Pattern.quote( sFilter ), 0 );
+        }
+        for ( TableRowSorter<AbstractTableModel> sorter : _vSorters )
+        {
+            sorter.setRowFilter( filter );
+        }
+    }
+
+    /**
+     * Measures in the background what the given Javancss was told
+     * to measure. The tables are filled as the files are done and
+     * show the complete result at the end, like showJavancss.
+     *
+     * @return  the running worker, get() waits for the measurement
+     */
+    public SwingWorker<Void, ?> measure( final Javancss pJavancss_ )
+    {
+        _pJavancss = null;
+        _pProgressBar.setIndeterminate( true );
+        _pProgressBar.setString( "Measuring..." );
+
+        SwingWorker<Void, FileResult> worker = new SwingWorker<Void, FileResult>()
+        {
+            @Override
+            protected Void doInBackground()
+            {
+                pJavancss_.setMeasurementListener( new MeasurementListener()
+                {
+                    public void fileMeasured( File file, int measured, int total
+                                              , List<FunctionMetric> vFunctions, List<ObjectMetric> vObjects
+                                              , List<PackageMetric> vPackages )
+                    {
+                        publish( new FileResult( measured, total, vFunctions, vObjects, vPackages ) );
+                        setProgress( total > 0 ? (int) ( 100L * measured / total ) : 100 );
+                    }
+                } );
+                try
+                {
+                    pJavancss_.measure();
+                }
+                finally
+                {
+                    pJavancss_.setMeasurementListener( null );
+                }
+
+                return null;
+            }
+
+            @Override
+            protected void process( List<FileResult> vResults )
+            {
+                // one insert per model and batch, a sorted table re-sorts on every insert
+                List<PackageMetric> vPackages = new ArrayList<PackageMetric>();
+                List<ObjectMetric> vObjects = new ArrayList<ObjectMetric>();
+                List<FunctionMetric> vFunctions = new ArrayList<FunctionMetric>();
+                FileResult last = null;
+                for ( FileResult result : vResults )
+                {
+                    vPackages.addAll( result.vPackages );
+                    vObjects.addAll( result.vObjects );
+                    vFunctions.addAll( result.vFunctions );
+                    last = result;
+                }
+                _packageModel.update( vPackages );
+                _objectModel.addAll( vObjects );
+                _functionModel.addAll( vFunctions );
+                _pProgressBar.setIndeterminate( false );
+                _pProgressBar.setString( last.measured + " of " + last.total + " files" );
+            }
+
+            @Override
+            protected void done()
+            {
+                if ( pJavancss_.isCancelled() || isCancelled() )
+                {
+                    // the frame has been closed
+                    return;
+                }
+                try
+                {
+                    get();
+                    showJavancss( pJavancss_ );
+                    setSelectedTab( S_PACKAGES );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                catch ( ExecutionException e )
+                {
+                    showError( "Error in Javancss: " + e.getCause() );
+                }
+                catch ( IOException e )
+                {
+                    showError( "Error in Javancss: " + e );
+                }
+            }
+        };
+        worker.addPropertyChangeListener( new PropertyChangeListener()
+        {
+            public void propertyChange( PropertyChangeEvent event )
+            {
+                if ( "progress".equals( event.getPropertyName() ) )
+                {
+                    _pProgressBar.setValue( ( (Integer) event.getNewValue() ).intValue() );
+                }
+            }
+        } );
+        worker.execute();
+
+        return worker;
+    }
+
+    /**
+     * Metrics of one measured file, handed from the measuring thread
+     * to the event dispatch thread.
+     */
+    private static class FileResult
+    {
+        final int measured;
+        final int total;
+        final List<FunctionMetric> vFunctions;
+        final List<ObjectMetric> vObjects;
+        final List<PackageMetric> vPackages;
+
+        FileResult( int measured_, int total_, List<FunctionMetric> vFunctions_, List<ObjectMetric> vObjects_
+                    , List<PackageMetric> vPackages_ )
+        {
+            measured = measured_;
+            total = total_;
+            vFunctions = vFunctions_;
+            vObjects = vObjects_;
+            vPackages = vPackages_;
+        }
+    }
+
+    private static String getCurrentDate()
+    {
+        // date and time
+        String sTimeZoneID = System.getProperty("user.timezone");
+        if (sTimeZoneID.equals("CET")) {
+            sTimeZoneID = "ECT";
+        }
+        TimeZone pTimeZone = TimeZone.getTimeZone(sTimeZoneID);
+
+        SimpleDateFormat pSimpleDateFormat
+               = new SimpleDateFormat("EEE, MMM dd, yyyy  HH:mm:ss");//"yyyy.mm.dd e 'at' hh:mm:ss a z");
+        pSimpleDateFormat.setTimeZone(pTimeZone);
+
+        return pSimpleDateFormat.format(new Date()) + " " + pTimeZone.getID();
+    }
+
     private void createMenuBar()
     {
         JMenuBar menubar = new JMenuBar();
@@ -197,95 +444,63 @@ public class JavancssFrame extends JFrame {
     }
 
     public void showJavancss(Javancss pJavancss_) throws IOException {
-        getContentPane().removeAll();
-        getContentPane().setLayout(new BorderLayout());
+        _pJavancss = pJavancss_;
         _bNoError = true;
         if (pJavancss_.getLastErrorMessage() != null && pJavancss_.getNcss() <= 0) {
-            _bNoError = false;
-            JTextArea txtError = new JTextArea();
-            String sError = "Error in Javancss: " +
-                   pJavancss_.getLastErrorMessage();
-            txtError.setText(sError);
-            JScrollPane jspError = new JScrollPane(txtError);
-            getContentPane().add(jspError, BorderLayout.CENTER);
+            showError("Error in Javancss: " +
+                      pJavancss_.getLastErrorMessage());
+            return;
         } else {
-            JPanel pPanel = new JPanel(true);
-            pPanel.setLayout(new BorderLayout());
-            _pTabbedPane = new JTabbedPane();
-            _pTabbedPane.setDoubleBuffered(true);
-
-            _txtPackage = new JTextArea();
-            _txtPackage.setFont(pFont);
-            JScrollPane jspPackage = new JScrollPane(_txtPackage);
-            int inset = 5;
-            jspPackage.setBorder( BorderFactory.
-                                  createEmptyBorder
-                                  ( inset, inset, inset, inset ) );
-            _pTabbedPane.addTab("Packages", null, jspPackage);
-
-            _txtObject = new JTextArea();
-            _txtObject.setFont(pFont);
-            JScrollPane jspObject = new JScrollPane(_txtObject);
-            jspObject.setBorder( BorderFactory.
-                                  createEmptyBorder
-                                  ( inset, inset, inset, inset ) );
-            _pTabbedPane.addTab("Classes", null, jspObject);
-
-            _txtFunction = new JTextArea();
-            _txtFunction.setFont(pFont);
-            JScrollPane jspFunction = new JScrollPane(_txtFunction);
-            jspFunction.setBorder( BorderFactory.
-                                  createEmptyBorder
-                                  ( inset, inset, inset, inset ) );
-            _pTabbedPane.addTab("Methods", null, jspFunction);
-
-            // date and time
-            String sTimeZoneID = System.getProperty("user.timezone");
-            if (sTimeZoneID.equals("CET")) {
-                sTimeZoneID = "ECT";
+            if (_pTabbedPane.getParent() == null) {
+                createContent();
             }
-            TimeZone pTimeZone = TimeZone.getTimeZone(sTimeZoneID);
-
-            SimpleDateFormat pSimpleDateFormat
-                   = new SimpleDateFormat("EEE, MMM dd, yyyy  HH:mm:ss");//"yyyy.mm.dd e 'at' hh:mm:ss a z");
-            pSimpleDateFormat.setTimeZone(pTimeZone);
-            String sDate = pSimpleDateFormat.format(new Date()) + " " + pTimeZone.getID();
-
-            StringWriter sw=new StringWriter();
-            pJavancss_.printPackageNcss(sw);
-
-            _txtPackage.setText(sDate + "\n\n" + sw.toString());
-            
-            sw=new StringWriter();
-            pJavancss_.printObjectNcss(sw);
-            
-            _txtObject.setText(sDate + "\n\n" + sw.toString());
-
-            sw=new StringWriter();
-            pJavancss_.printFunctionNcss(sw);
-            _txtFunction.setText(sDate + "\n\n" + sw.toString());
+            _packageModel.setPackages( pJavancss_.getPackageMetrics() );
+            _objectModel.setTable( pJavancss_.getObjectTable() );
+            _functionModel.setTable( pJavancss_.getFunctionTable() );
 
+            if (_txtError != null) {
+                _pTabbedPane.remove(_txtError.getParent().getParent());
+                _txtError = null;
+            }
             if (pJavancss_.getLastErrorMessage() != null) {
                 _txtError = new JTextArea();
+                _txtError.setFont(pFont);
                 String sError = "Errors in Javancss:\n\n" +
                        pJavancss_.getLastErrorMessage();
                 _txtError.setText(sError);
                 JScrollPane jspError = new JScrollPane(_txtError);
+                int inset = 5;
                 jspError.setBorder( BorderFactory.
                                   createEmptyBorder
                                   ( inset, inset, inset, inset ) );
-                getContentPane().add(jspError, BorderLayout.CENTER);
                 _pTabbedPane.addTab("Errors", null, jspError);
             }
 
-            pPanel.add(_pTabbedPane, BorderLayout.CENTER);
-            getContentPane().add(pPanel, BorderLayout.CENTER);
+            _pProgressBar.setIndeterminate( false );
+            _pProgressBar.setValue( 100 );
+            _pProgressBar.setString( "NCSS: " + pJavancss_.getNcss() );
         }
 
         validate();
         repaint();
     }
 
+    /**
+     * Shows the given error message instead of the tables.
+     */
+    private void showError(String sError_) {
+        _bNoError = false;
+        getContentPane().removeAll();
+        JTextArea txtError = new JTextArea();
+        txtError.setFont(pFont);
+        txtError.setText(sError_);
+        JScrollPane jspError = new JScrollPane(txtError);
+        getContentPane().add(jspError, BorderLayout.CENTER);
+
+        validate();
+        repaint();
+    }
+
     public void setSelectedTab(String sTab_) {
         if (sTab_ == null || sTab_.trim().length() == 0) {
             throw new IllegalArgumentException();
@@ -295,13 +510,10 @@ public class JavancssFrame extends JFrame {
             return;
         }
         if (sTab_.equals(S_METHODS)) {
-            /*_pTabbedPane.setSelectedComponent(_txtFunction);*/
             _pTabbedPane.setSelectedIndex(2);
         } else if (sTab_.equals(S_CLASSES)) {
-            /*_pTabbedPane.setSelectedComponent(_txtObject);*/
             _pTabbedPane.setSelectedIndex(1);
         } else {
-            /*_pTabbedPane.setSelectedComponent(_txtPackage);*/
             _pTabbedPane.setSelectedIndex(0);
         }
     }
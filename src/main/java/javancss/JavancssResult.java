@@ -0,0 +1,179 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of one measurement of a JavancssSession. It does not
+ * change after the measurement; the metric objects handed out are
+ * copies, so changing them does not change the result either.<p>
+ *
+ * A result measured with a memory budget may keep rows in temporary
+ * files, close() deletes them once the result is not needed anymore.
+ *
+ * @version $Id$
+ */
+public final class JavancssResult
+    implements Closeable
+{
+    private final Javancss _javancss;
+
+    JavancssResult( Javancss javancss )
+    {
+        _javancss = javancss;
+        // collected now, so reading the result changes nothing
+        _javancss.getDistributions();
+    }
+
+    /**
+     * Returns true if the measurement was cancelled by its
+     * CancelToken; the result is empty then.
+     */
+    public boolean isCancelled()
+    {
+        return _javancss.isCancelled();
+    }
+
+    public int getNcss()
+    {
+        return _javancss.getNcss();
+    }
+
+    public int getLOC()
+    {
+        return _javancss.getLOC();
+    }
+
+    public List<FunctionMetric> getFunctionMetrics()
+    {
+        return _javancss.getFunctionMetrics();
+    }
+
+    public List<ObjectMetric> getObjectMetrics()
+    {
+        return _javancss.getObjectMetrics();
+    }
+
+    public List<PackageMetric> getPackageMetrics()
+    {
+        List<PackageMetric> vPackageMetrics = _javancss.getPackageMetrics();
+        if ( vPackageMetrics == null )
+        {
+            return Collections.emptyList();
+        }
+        List<PackageMetric> vCopies = new ArrayList<PackageMetric>( vPackageMetrics.size() );
+        for ( PackageMetric pkm : vPackageMetrics )
+        {
+            PackageMetric copy = new PackageMetric();
+            copy.name = pkm.name;
+            copy.add( pkm );
+            vCopies.add( copy );
+        }
+
+        return Collections.unmodifiableList( vCopies );
+    }
+
+    /**
+     * The files the source filter of the session skipped, each with
+     * the reason.
+     */
+    public Map<File, String> getSkippedFiles()
+    {
+        return _javancss.getSkippedFiles();
+    }
+
+    /**
+     * The messages of all parse errors, null if there were none.
+     */
+    public String getLastErrorMessage()
+    {
+        return _javancss.getLastErrorMessage();
+    }
+
+    public Throwable getLastError()
+    {
+        return _javancss.getLastError();
+    }
+
+    /**
+     * Writes the package, object and function lists like the command
+     * line option -all does.
+     *
+     * @param sFormat  "plain", "xml" or "html"
+     */
+    public void print( Writer w, String sFormat )
+        throws IOException
+    {
+        Formatter formatter;
+        if ( "html".equals( sFormat ) )
+        {
+            formatter = new HtmlFormatter( _javancss );
+        }
+        else if ( "xml".equals( sFormat ) )
+        {
+            formatter = new XmlFormatter( _javancss );
+        }
+        else if ( "plain".equals( sFormat ) )
+        {
+            formatter = new AsciiFormatter( _javancss );
+        }
+        else
+        {
+            throw new IllegalArgumentException( "Invalid format '" + sFormat + "', expected plain, xml or html" );
+        }
+
+        String sNewLine = System.getProperty( "line.separator" );
+        formatter.printStart( w );
+        formatter.printPackageNcss( w );
+        w.write( sNewLine );
+        formatter.printObjectNcss( w );
+        w.write( sNewLine );
+        formatter.printFunctionNcss( w );
+        formatter.printEnd( w );
+        w.flush();
+    }
+
+    /**
+     * Saves the result in the binary form of the -save option.
+     */
+    public void save( File file )
+        throws IOException
+    {
+        ResultFile.save( _javancss, file );
+    }
+
+    /**
+     * Deletes the temporary files of the function and object lists,
+     * which are empty afterwards. The totals and packages stay.
+     */
+    public void close()
+    {
+        _javancss.close();
+    }
+}
@@ -0,0 +1,261 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.CharArrayReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures sources with a configuration fixed when the session is
+ * built, for programs which measure many times, e.g. a service:
+ * <pre>
+ * JavancssSession session = JavancssSession.builder().encoding( "UTF-8" ).skipGenerated().build();
+ * JavancssResult result = session.measure( files );
+ * </pre>
+ * A session has no state besides its configuration and the parsers
+ * it keeps for reuse, so it may be shared by any number of threads,
+ * each call measures into a new result. Closing the session drops
+ * the parsers.<p>
+ *
+ * A measurement is cancelled by the CancelToken passed to measure;
+ * its result is empty then and isCancelled() returns true.
+ *
+ * @version $Id$
+ */
+public final class JavancssSession
+    implements Closeable
+{
+    private final String _encoding;
+    private final GeneratedSourceFilter _sourceFilter;
+    private final int _top;
+    private final String _sTopBy;
+    private final long _memoryBudget;
+    private final ParserPool _parserPool = new ParserPool();
+
+    private JavancssSession( Builder builder )
+    {
+        _encoding = builder._encoding;
+        _sourceFilter = builder._sourceFilter.isEmpty() ? null : builder._sourceFilter;
+        _top = builder._top;
+        _sTopBy = builder._sTopBy;
+        _memoryBudget = builder._memoryBudget;
+    }
+
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    private void configure( Javancss javancss )
+    {
+        javancss.setEncoding( _encoding );
+        javancss.setSourceFilter( _sourceFilter );
+        if ( _top > 0 )
+        {
+            javancss.setTop( _top, _sTopBy );
+        }
+        javancss.setMemoryBudget( _memoryBudget );
+        javancss.setParserPool( _parserPool );
+    }
+
+    /**
+     * Measures the source files into <code>javancss</code>, which has
+     * not measured anything yet, like the constructors of Javancss do.
+     */
+    void measure( Javancss javancss, List<File> vFiles )
+    {
+        configure( javancss );
+        javancss.measure( vFiles );
+    }
+
+    /**
+     * Measures the source read from <code>reader</code> into
+     * <code>javancss</code>, which has not measured anything yet.
+     */
+    void measure( Javancss javancss, Reader reader )
+    {
+        configure( javancss );
+        javancss.measure( reader );
+    }
+
+    /**
+     * Drops the parsers kept for reuse. The session may still be
+     * used, it creates new ones then.
+     */
+    public void close()
+    {
+        _parserPool.close();
+    }
+
+    /**
+     * Measures the source files, files which fail to parse are
+     * reported by the error message of the result.
+     */
+    public JavancssResult measure( List<File> vFiles )
+    {
+        return measure( vFiles, new CancelToken() );
+    }
+
+    /**
+     * Measures the source files until <code>cancelToken</code> is
+     * cancelled, see measure( List ).
+     */
+    public JavancssResult measure( List<File> vFiles, CancelToken cancelToken )
+    {
+        Javancss javancss = new Javancss();
+        javancss.setCancelToken( cancelToken );
+        measure( javancss, Collections.unmodifiableList( new ArrayList<File>( vFiles ) ) );
+
+        return new JavancssResult( javancss );
+    }
+
+    public JavancssResult measure( File file )
+    {
+        return measure( Collections.singletonList( file ) );
+    }
+
+    /**
+     * Measures the source read from <code>reader</code>, which is not
+     * closed. The encoding of the session does not apply.
+     */
+    public JavancssResult measure( Reader reader )
+    {
+        return measure( reader, new CancelToken() );
+    }
+
+    /**
+     * Measures the source read from <code>reader</code> until
+     * <code>cancelToken</code> is cancelled, see measure( Reader ).
+     */
+    public JavancssResult measure( Reader reader, CancelToken cancelToken )
+    {
+        Javancss javancss = new Javancss();
+        javancss.setCancelToken( cancelToken );
+        measure( javancss, reader );
+
+        return new JavancssResult( javancss );
+    }
+
+    public JavancssResult measure( char[] source )
+    {
+        return measure( new CharArrayReader( source ) );
+    }
+
+    /**
+     * Collects the configuration of a session. A builder is not
+     * thread-safe, the sessions it builds are.
+     */
+    public static class Builder
+    {
+        private String _encoding = null;
+        private GeneratedSourceFilter _sourceFilter = new GeneratedSourceFilter();
+        private int _top = 0;
+        private String _sTopBy = TopN.NCSS;
+        private long _memoryBudget = 0;
+
+        private Builder()
+        {
+        }
+
+        /**
+         * The encoding of the source files, the platform encoding by default.
+         */
+        public Builder encoding( String encoding )
+        {
+            _encoding = encoding;
+
+            return this;
+        }
+
+        /**
+         * Skips files marked as generated, like -skipgenerated.
+         */
+        public Builder skipGenerated()
+        {
+            _sourceFilter.addDefaultMarkers();
+
+            return this;
+        }
+
+        /**
+         * Skips files whose head matches the regular expression, like -skippattern.
+         */
+        public Builder skipPattern( String sRegex )
+        {
+            _sourceFilter.addPattern( sRegex );
+
+            return this;
+        }
+
+        /**
+         * Skips files larger than <code>bytes</code>, like -skiplarger.
+         */
+        public Builder skipLarger( long bytes )
+        {
+            _sourceFilter.setMaxBytes( bytes );
+
+            return this;
+        }
+
+        /**
+         * Keeps only the <code>n</code> entries with the highest value, see Javancss.setTop.
+         */
+        public Builder top( int n, String sBy )
+        {
+            if ( n < 1 )
+            {
+                throw new IllegalArgumentException( "Invalid number of entries: " + n );
+            }
+            TopN.checkBy( sBy );
+            _top = n;
+            _sTopBy = sBy;
+
+            return this;
+        }
+
+        /**
+         * The heap the tables of one result may use, see Javancss.setMemoryBudget.
+         */
+        public Builder memoryBudget( long bytes )
+        {
+            _memoryBudget = bytes;
+
+            return this;
+        }
+
+        /**
+         * Builds a session with the current configuration. The builder
+         * may go on to build other sessions, they do not share state.
+         */
+        public JavancssSession build()
+        {
+            JavancssSession session = new JavancssSession( this );
+            _sourceFilter = _sourceFilter.copy();
+
+            return session;
+        }
+    }
+}
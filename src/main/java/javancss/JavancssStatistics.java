@@ -0,0 +1,279 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Live counters of all measurements in the JVM, registered as the
+ * MBean "javancss:type=Statistics" for JMX clients like jconsole.<p>
+ *
+ * Nothing is counted until the MBean is registered, either with
+ * register() or by setting the system property "javancss.jmx" to
+ * "true" before the first source is measured. Counters are updated
+ * once per source file and are striped, so threads measuring at the
+ * same time hardly contend for them.<p>
+ *
+ * If another class loader, e.g. another plugin, has registered its
+ * statistics under the same name already, that MBean stays and these
+ * statistics count without being visible to JMX clients.
+ *
+ * @version $Id$
+ */
+public class JavancssStatistics
+    implements JavancssStatisticsMBean
+{
+    public static final String OBJECT_NAME = "javancss:type=Statistics";
+
+    private static volatile JavancssStatistics _instance = null;
+    private static volatile boolean _bPropertyChecked = false;
+
+    private final StripedCounter _filesQueued = new StripedCounter();
+    private final StripedCounter _filesParsed = new StripedCounter();
+    private final StripedCounter _filesFailed = new StripedCounter();
+    private final StripedCounter _bytes = new StripedCounter();
+    private final StripedCounter _tokens = new StripedCounter();
+    private final StripedCounter _cacheHits = new StripedCounter();
+    private final StripedCounter _cacheMisses = new StripedCounter();
+    private final LogHistogram[] _aParseTimes = new LogHistogram[ StripedCounter.STRIPES ];
+    private final AtomicReference<String> _sCurrentFile = new AtomicReference<String>();
+    private volatile boolean _bRegistered = false;
+
+    JavancssStatistics()
+    {
+        for ( int stripe = 0; stripe < _aParseTimes.length; stripe++ )
+        {
+            _aParseTimes[ stripe ] = new LogHistogram();
+        }
+    }
+
+    /**
+     * Registers the MBean with the platform MBean server, unless it is
+     * already registered, and returns it.
+     */
+    public static synchronized JavancssStatistics register()
+    {
+        if ( _instance == null )
+        {
+            _instance = register( ManagementFactory.getPlatformMBeanServer() );
+        }
+
+        return _instance;
+    }
+
+    /**
+     * Registers new statistics with <code>server</code>. If the name is
+     * taken, the statistics are returned without being registered.
+     */
+    static JavancssStatistics register( MBeanServer server )
+    {
+        JavancssStatistics statistics = new JavancssStatistics();
+        try
+        {
+            server.registerMBean( statistics, new ObjectName( OBJECT_NAME ) );
+            statistics._bRegistered = true;
+        }
+        catch ( InstanceAlreadyExistsException e )
+        {
+            // registered by another class loader, whose clients keep their MBean
+        }
+        catch ( JMException e )
+        {
+            throw new IllegalStateException( "Could not register " + OBJECT_NAME + ": " + e );
+        }
+
+        return statistics;
+    }
+
+    /**
+     * Returns false if another MBean had the name already.
+     */
+    boolean isRegistered()
+    {
+        return _bRegistered;
+    }
+
+    /**
+     * The registered statistics, null if counting is off.
+     */
+    static JavancssStatistics getInstance()
+    {
+        JavancssStatistics statistics = _instance;
+        if ( statistics == null && !_bPropertyChecked )
+        {
+            _bPropertyChecked = true;
+            if ( Boolean.getBoolean( "javancss.jmx" ) )
+            {
+                statistics = register();
+            }
+        }
+
+        return statistics;
+    }
+
+    void filesQueued( int files )
+    {
+        _filesQueued.add( files );
+    }
+
+    void fileStarted( File file )
+    {
+        _sCurrentFile.set( file.getPath() );
+    }
+
+    /**
+     * Clears the current file, unless another one has been started
+     * since.
+     */
+    void fileFinished( File file )
+    {
+        _sCurrentFile.compareAndSet( file.getPath(), null );
+    }
+
+    void sourceParsed( long nanos, int tokens )
+    {
+        _filesParsed.increment();
+        _tokens.add( tokens );
+        long micros = nanos / 1000;
+        LogHistogram parseTimes = _aParseTimes[ StripedCounter.stripe() ];
+        synchronized ( parseTimes )
+        {
+            parseTimes.add( (int) Math.min( Integer.MAX_VALUE, micros ) );
+        }
+    }
+
+    void sourceFailed( int tokens )
+    {
+        _filesFailed.increment();
+        _tokens.add( tokens );
+    }
+
+    void bytesProcessed( long bytes )
+    {
+        _bytes.add( bytes );
+    }
+
+    void cacheHit()
+    {
+        _cacheHits.increment();
+    }
+
+    void cacheMiss()
+    {
+        _cacheMisses.increment();
+    }
+
+    public long getFilesQueued()
+    {
+        return _filesQueued.get();
+    }
+
+    public long getFilesParsed()
+    {
+        return _filesParsed.get();
+    }
+
+    public long getFilesFailed()
+    {
+        return _filesFailed.get();
+    }
+
+    public long getBytesProcessed()
+    {
+        return _bytes.get();
+    }
+
+    public long getTokensProcessed()
+    {
+        return _tokens.get();
+    }
+
+    public String getCurrentFile()
+    {
+        return _sCurrentFile.get();
+    }
+
+    /**
+     * The parse times of all threads added up.
+     */
+    LogHistogram getParseTimes()
+    {
+        LogHistogram parseTimes = new LogHistogram();
+        for ( LogHistogram stripe : _aParseTimes )
+        {
+            synchronized ( stripe )
+            {
+                parseTimes.add( stripe );
+            }
+        }
+
+        return parseTimes;
+    }
+
+    public String getParseTimeMicros()
+    {
+        return getParseTimes().toString();
+    }
+
+    public long getCacheHits()
+    {
+        return _cacheHits.get();
+    }
+
+    public long getCacheMisses()
+    {
+        return _cacheMisses.get();
+    }
+
+    public double getCacheHitRatio()
+    {
+        long hits = getCacheHits();
+        long lookups = hits + getCacheMisses();
+
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public void reset()
+    {
+        _filesQueued.reset();
+        _filesParsed.reset();
+        _filesFailed.reset();
+        _bytes.reset();
+        _tokens.reset();
+        _cacheHits.reset();
+        _cacheMisses.reset();
+        for ( LogHistogram stripe : _aParseTimes )
+        {
+            synchronized ( stripe )
+            {
+                stripe.clear();
+            }
+        }
+        _sCurrentFile.set( null );
+    }
+}
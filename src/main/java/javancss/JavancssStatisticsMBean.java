@@ -0,0 +1,73 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+/**
+ * Management interface of JavancssStatistics, shown by JMX clients
+ * like jconsole.
+ *
+ * @version $Id$
+ */
+public interface JavancssStatisticsMBean
+{
+    /**
+     * Source files handed to JavaNCSS to measure.
+     */
+    long getFilesQueued();
+
+    long getFilesParsed();
+
+    long getFilesFailed();
+
+    /**
+     * Size of the source files parsed or failed to parse.
+     */
+    long getBytesProcessed();
+
+    long getTokensProcessed();
+
+    /**
+     * The source file being measured, the one started last if several
+     * are, null while none is.
+     */
+    String getCurrentFile();
+
+    /**
+     * Parse time per source in microseconds: p50, p90, p99 and max
+     * separated by slashes.
+     */
+    String getParseTimeMicros();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    /**
+     * Fraction of the files an incremental run read from its cache,
+     * 0 if none was looked up.
+     */
+    double getCacheHitRatio();
+
+    /**
+     * Sets all counters back to zero.
+     */
+    void reset();
+}
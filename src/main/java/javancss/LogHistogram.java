@@ -0,0 +1,203 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+
+package javancss;
+
+/**
+ * Mergeable histogram of non-negative int values with a bounded
+ * relative error, used to report percentiles of a metric without
+ * keeping the single values.<p>
+ *
+ * Values below 64 are counted exactly. Larger values fall into one
+ * of 32 buckets per power of two, so a percentile is reported at
+ * most about 3% too high. The bucket array only grows up to the
+ * largest value seen and never beyond 864 entries, whatever the
+ * number of values. The maximum is kept exactly. Adding up two
+ * histograms gives the histogram of all their values, so the
+ * results of sharded runs can be merged.
+ *
+ * @version $Id$
+ */
+public class LogHistogram
+{
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int EXACT = 2 * SUB_BUCKETS;
+
+    /**
+     * Number of buckets needed for Integer.MAX_VALUE.
+     */
+    static final int MAX_BUCKETS = bucket( Integer.MAX_VALUE ) + 1;
+
+    private long[] _counts = new long[ 0 ];
+    private long _count = 0;
+    private int _max = 0;
+
+    static int bucket( int value )
+    {
+        if ( value < EXACT )
+        {
+            return Math.max( value, 0 );
+        }
+        int shift = 31 - Integer.numberOfLeadingZeros( value ) - SUB_BITS;
+
+        return EXACT + ( shift - 1 ) * SUB_BUCKETS + ( value >>> shift ) - SUB_BUCKETS;
+    }
+
+    /**
+     * Largest value counted in <code>bucket</code>.
+     */
+    static int upperBound( int bucket )
+    {
+        if ( bucket < EXACT )
+        {
+            return bucket;
+        }
+        int shift = ( bucket - EXACT ) / SUB_BUCKETS + 1;
+        long mantissa = ( bucket - EXACT ) % SUB_BUCKETS + SUB_BUCKETS;
+
+        return (int) Math.min( Integer.MAX_VALUE, ( ( mantissa + 1 ) << shift ) - 1 );
+    }
+
+    /**
+     * Counts <code>value</code>, negative values count as 0.
+     */
+    public void add( int value )
+    {
+        add( bucket( value ), 1 );
+        _max = Math.max( _max, value );
+    }
+
+    /**
+     * Adds all values counted by <code>histogram_</code>.
+     */
+    public void add( LogHistogram histogram_ )
+    {
+        if ( histogram_ == null )
+        {
+            return;
+        }
+        long[] counts = histogram_._counts;
+        for ( int bucket = counts.length - 1; bucket >= 0; bucket-- )
+        {
+            if ( counts[ bucket ] != 0 )
+            {
+                add( bucket, counts[ bucket ] );
+            }
+        }
+        _max = Math.max( _max, histogram_._max );
+    }
+
+    /**
+     * Adds <code>count</code> values to a bucket, for reading a
+     * stored histogram. The maximum is not updated.
+     */
+    void add( int bucket, long count )
+    {
+        if ( bucket >= _counts.length )
+        {
+            long[] counts = new long[ Math.min( MAX_BUCKETS, Math.max( bucket + 1, _counts.length * 2 ) ) ];
+            System.arraycopy( _counts, 0, counts, 0, _counts.length );
+            _counts = counts;
+        }
+        _counts[ bucket ] += count;
+        _count += count;
+    }
+
+    void setMax( int max )
+    {
+        _max = max;
+    }
+
+    public void clear()
+    {
+        _counts = new long[ 0 ];
+        _count = 0;
+        _max = 0;
+    }
+
+    /**
+     * Number of values counted.
+     */
+    public long getCount()
+    {
+        return _count;
+    }
+
+    /**
+     * Largest value counted, 0 if there is none.
+     */
+    public int getMax()
+    {
+        return _max;
+    }
+
+    /**
+     * The smallest value at least a fraction <code>q</code> of all
+     * values is less than or equal to (nearest rank), rounded up to
+     * its bucket's bound but never above the maximum. 0 if no value
+     * was counted.
+     *
+     * @param q  between 0 and 1, e.g. 0.9 for the 90th percentile
+     */
+    public int getPercentile( double q )
+    {
+        if ( _count == 0 )
+        {
+            return 0;
+        }
+        long rank = Math.max( 1, (long) Math.ceil( q * _count ) );
+        long seen = 0;
+        for ( int bucket = 0; bucket < _counts.length; bucket++ )
+        {
+            seen += _counts[ bucket ];
+            if ( seen >= rank )
+            {
+                return Math.min( upperBound( bucket ), _max );
+            }
+        }
+
+        return _max;
+    }
+
+    /**
+     * Number of buckets in use, buckets above are empty.
+     */
+    int getBuckets()
+    {
+        return _counts.length;
+    }
+
+    long getBucketCount( int bucket )
+    {
+        return _counts[ bucket ];
+    }
+
+    /**
+     * p50, p90, p99 and max separated by slashes, as the reports
+     * print them.
+     */
+    @Override
+    public String toString()
+    {
+        return getPercentile( 0.5 ) + "/" + getPercentile( 0.9 ) + "/" + getPercentile( 0.99 ) + "/" + _max;
+    }
+}
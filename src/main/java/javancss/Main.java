@@ -38,6 +38,7 @@ public class Main
         Locale.setDefault( Locale.US );
 
         Javancss javancss = new Javancss( args );
+        javancss.close();
 
         if ( javancss.getLastErrorMessage() != null )
         {
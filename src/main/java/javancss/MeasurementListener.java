@@ -0,0 +1,45 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Gets told about each source file as soon as it has been measured,
+ * e.g. to show results while a large source tree is still parsed.
+ * Called on the measuring thread.
+ *
+ * @version $Id$
+ */
+public interface MeasurementListener
+{
+    /**
+     * @param file        the measured file, null for standard input
+     * @param measured    number of files measured so far, including this one
+     * @param total       number of files to measure
+     * @param vFunctions  functions of the file, empty if it could not be parsed
+     * @param vObjects    classes of the file, empty if it could not be parsed
+     * @param vPackages   the totals so far of the packages the file contributed to
+     */
+    void fileMeasured( File file, int measured, int total
+                       , List<FunctionMetric> vFunctions, List<ObjectMetric> vObjects, List<PackageMetric> vPackages );
+}
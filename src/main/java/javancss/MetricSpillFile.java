@@ -0,0 +1,254 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Temporary file storage for the rows a MetricTable does not
+ * keep in memory. Each row is a fixed width record with all
+ * int columns plus offset and length of its UTF-8 encoded name,
+ * the names go to a second file. Both files are read back
+ * through memory mapped segments, so reading rows in order only
+ * ever maps one record segment and one name window at a time.
+ * Reads are synchronized; as they share the mapped segment and the
+ * name window, the formatters read spilled tables on one thread.<p>
+ *
+ * The files are deleted by close(), which the table calls when it
+ * is cleared. Only a file which cannot be deleted then, e.g. on
+ * Windows while a mapped segment has not been collected yet, is
+ * registered with deleteOnExit, whose registry would otherwise grow
+ * for as long as a long-running process lives.
+ *
+ * @version $Id$
+ */
+class MetricSpillFile
+{
+    static final int RECORD_SIZE = MetricTable.COLUMNS * 4 + 8 + 4;
+
+    private static final int SEGMENT_ROWS = 1 << 16;
+    private static final int NAME_WINDOW = 1 << 22;
+    private static final int WRITE_BUFFER = 1 << 16;
+
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    private static volatile File _directory = null;
+
+    private final File _recordFile;
+    private final File _nameFile;
+    private final FileChannel _records;
+    private final FileChannel _names;
+
+    private final ByteBuffer _recordBuffer = ByteBuffer.allocate( WRITE_BUFFER - WRITE_BUFFER % RECORD_SIZE );
+    private final ByteBuffer _nameBuffer = ByteBuffer.allocate( WRITE_BUFFER );
+
+    private int _rows = 0;
+    private long _nameBytes = 0;
+
+    private MappedByteBuffer _segment = null;
+    private int _segmentStart = 0;
+    private int _segmentRows = 0;
+
+    private MappedByteBuffer _nameWindow = null;
+    private long _nameWindowStart = 0;
+
+    /**
+     * Sets the directory new spill files are created in, null for
+     * the default temporary-file directory.
+     */
+    static void setDirectory( File directory )
+    {
+        _directory = directory;
+    }
+
+    static File getDirectory()
+    {
+        return _directory;
+    }
+
+    MetricSpillFile()
+        throws IOException
+    {
+        File directory = _directory;
+        _recordFile = File.createTempFile( "javancss", ".rows", directory );
+        _nameFile = File.createTempFile( "javancss", ".names", directory );
+        try
+        {
+            _records = new RandomAccessFile( _recordFile, "rw" ).getChannel();
+            _names = new RandomAccessFile( _nameFile, "rw" ).getChannel();
+        }
+        catch ( IOException e )
+        {
+            close();
+            throw e;
+        }
+    }
+
+    int size()
+    {
+        return _rows;
+    }
+
+    /**
+     * Appends the first <code>size</code> rows of the given columns.
+     */
+    void append( String[] names, int[][] columns, int size )
+        throws IOException
+    {
+        ByteBuffer records = _recordBuffer;
+        ByteBuffer nameBuffer = _nameBuffer;
+        for ( int row = 0; row < size; row++ )
+        {
+            ByteBuffer name = UTF8.encode( names[ row ] );
+            int length = name.remaining();
+
+            if ( !records.hasRemaining() )
+            {
+                flush( records, _records );
+            }
+            for ( int column = 0; column < MetricTable.COLUMNS; column++ )
+            {
+                records.putInt( columns[ column ][ row ] );
+            }
+            records.putLong( _nameBytes );
+            records.putInt( length );
+
+            if ( nameBuffer.remaining() < length )
+            {
+                flush( nameBuffer, _names );
+            }
+            if ( length > nameBuffer.capacity() )
+            {
+                while ( name.hasRemaining() )
+                {
+                    _names.write( name );
+                }
+            }
+            else
+            {
+                nameBuffer.put( name );
+            }
+            _nameBytes += length;
+        }
+        flush( records, _records );
+        flush( nameBuffer, _names );
+        _rows += size;
+    }
+
+    private static void flush( ByteBuffer buffer, FileChannel channel )
+        throws IOException
+    {
+        buffer.flip();
+        while ( buffer.hasRemaining() )
+        {
+            channel.write( buffer );
+        }
+        buffer.clear();
+    }
+
+    private int recordOffset( int row )
+        throws IOException
+    {
+        if ( _segment == null || row < _segmentStart || row >= _segmentStart + _segmentRows )
+        {
+            _segmentStart = row - row % SEGMENT_ROWS;
+            _segmentRows = Math.min( SEGMENT_ROWS, _rows - _segmentStart );
+            _segment = _records.map( FileChannel.MapMode.READ_ONLY
+                                     , (long) _segmentStart * RECORD_SIZE
+                                     , (long) _segmentRows * RECORD_SIZE );
+        }
+
+        return ( row - _segmentStart ) * RECORD_SIZE;
+    }
+
+    synchronized int getInt( int row, int column )
+        throws IOException
+    {
+        int record = recordOffset( row );
+
+        return _segment.getInt( record + column * 4 );
+    }
+
+    synchronized String getName( int row )
+        throws IOException
+    {
+        int record = recordOffset( row );
+        long offset = _segment.getLong( record + MetricTable.COLUMNS * 4 );
+        int length = _segment.getInt( record + MetricTable.COLUMNS * 4 + 8 );
+
+        if ( _nameWindow == null
+             || offset < _nameWindowStart
+             || offset + length > _nameWindowStart + _nameWindow.capacity() )
+        {
+            long windowLength = Math.max( length, Math.min( NAME_WINDOW, _nameBytes - offset ) );
+            _nameWindow = _names.map( FileChannel.MapMode.READ_ONLY, offset, windowLength );
+            _nameWindowStart = offset;
+        }
+
+        ByteBuffer name = _nameWindow.duplicate();
+        name.position( (int) ( offset - _nameWindowStart ) );
+        name.limit( name.position() + length );
+
+        return UTF8.decode( name ).toString();
+    }
+
+    /**
+     * Closes and deletes both temporary files.
+     */
+    void close()
+    {
+        _segment = null;
+        _nameWindow = null;
+        close( _records );
+        close( _names );
+        delete( _recordFile );
+        delete( _nameFile );
+    }
+
+    private static void delete( File file )
+    {
+        if ( !file.delete() && file.exists() )
+        {
+            file.deleteOnExit();
+        }
+    }
+
+    private static void close( FileChannel channel )
+    {
+        if ( channel == null )
+        {
+            return;
+        }
+        try
+        {
+            channel.close();
+        }
+        catch ( IOException e )
+        {
+        }
+    }
+}
@@ -0,0 +1,670 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column oriented storage for function and object metrics.
+ * Instead of one Metric object per row each metric is kept
+ * in its own growable int array, next to the columns holding
+ * the fully qualified names.<p>
+ *
+ * A name is split at the last dot before any parameter list into
+ * its owner, the class of a function or the package of a class,
+ * and the rest. Each owner is kept once in a name index and the
+ * rows refer to it by number, so the functions of a class share
+ * one copy of the class name.<p>
+ *
+ * FunctionMetric and ObjectMetric objects handed out by this
+ * table are views created on request, changing them does not
+ * change the table.<p>
+ *
+ * With a memory budget set, rows are moved to a temporary
+ * MetricSpillFile whenever the rows held in memory exceed the
+ * budget. Reading the rows in order then needs bounded heap
+ * however many rows have been added.
+ *
+ * @version $Id$
+ */
+public class MetricTable
+{
+    public static final int NCSS        = 0;
+    public static final int CCN         = 1;
+    public static final int FUNCTIONS   = 2;
+    public static final int CLASSES     = 3;
+    public static final int JAVADOCS    = 4;
+    public static final int JAVADOCS_LN = 5;
+    public static final int SINGLE_LN   = 6;
+    public static final int MULTI_LN    = 7;
+    public static final int FIRST_LINE  = 8;
+
+    static final int COLUMNS = 9;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Rough heap cost of one row without its name characters.
+     */
+    static final int ROW_BYTES = COLUMNS * 4 + 48;
+
+    /**
+     * Rough heap cost of one name index entry without its characters.
+     */
+    private static final int OWNER_BYTES = 96;
+
+    private String[] _members = new String[ INITIAL_CAPACITY ];
+    private int[]    _owners  = new int[ INITIAL_CAPACITY ];
+    private int[][]  _columns = new int[ COLUMNS ][ INITIAL_CAPACITY ];
+    private int      _size    = 0;
+
+    /**
+     * The owner names of the rows in memory by number, and the
+     * number of each.
+     */
+    private List<String> _vOwnerNames = new ArrayList<String>();
+    private Map<String, Integer> _htOwners = new HashMap<String, Integer>();
+
+    private long _memoryBudget = 0;
+    private long _memoryUsed = 0;
+    private MetricSpillFile _spillFile = null;
+    private int _spilled = 0;
+
+    /**
+     * Rows ordered by name as stored with the table, e.g. the index of
+     * a result file, null if unknown. Dropped when rows are added.
+     */
+    private int[] _nameOrder = null;
+
+    public int size()
+    {
+        return _size;
+    }
+
+    public void clear()
+    {
+        _members = new String[ INITIAL_CAPACITY ];
+        _owners = new int[ INITIAL_CAPACITY ];
+        _columns = new int[ COLUMNS ][ INITIAL_CAPACITY ];
+        _vOwnerNames = new ArrayList<String>();
+        _htOwners = new HashMap<String, Integer>();
+        _size = 0;
+        _memoryUsed = 0;
+        if ( _spillFile != null )
+        {
+            _spillFile.close();
+            _spillFile = null;
+        }
+        _spilled = 0;
+        _nameOrder = null;
+    }
+
+    /**
+     * Sets the number of bytes the rows in memory may use
+     * before they are moved to a temporary file. Zero or
+     * less keeps everything in memory, which is the default.
+     */
+    public void setMemoryBudget( long bytes )
+    {
+        _memoryBudget = bytes;
+    }
+
+    public long getMemoryBudget()
+    {
+        return _memoryBudget;
+    }
+
+    /**
+     * Number of rows which have been moved to disk.
+     */
+    public int getSpilledRows()
+    {
+        return _spilled;
+    }
+
+    private void spill()
+    {
+        try
+        {
+            if ( _spillFile == null )
+            {
+                _spillFile = new MetricSpillFile();
+            }
+            int rows = _size - _spilled;
+            String[] names = new String[ rows ];
+            for ( int row = 0; row < rows; row++ )
+            {
+                names[ row ] = memoryName( row );
+            }
+            _spillFile.append( names, _columns, rows );
+        }
+        catch ( IOException e )
+        {
+            throw new IllegalStateException( "Could not write metrics to temporary file: " + e.getMessage(), e );
+        }
+        _spilled = _size;
+        _members = new String[ INITIAL_CAPACITY ];
+        _owners = new int[ INITIAL_CAPACITY ];
+        _columns = new int[ COLUMNS ][ INITIAL_CAPACITY ];
+        _vOwnerNames = new ArrayList<String>();
+        _htOwners = new HashMap<String, Integer>();
+        _memoryUsed = 0;
+    }
+
+    /**
+     * Moves the rows still kept in memory to the temporary file.
+     */
+    void spillAll()
+    {
+        if ( _size > _spilled )
+        {
+            spill();
+        }
+    }
+
+    private IllegalStateException readError( IOException e )
+    {
+        return new IllegalStateException( "Could not read metrics from temporary file: " + e.getMessage(), e );
+    }
+
+    private void ensureCapacity( int capacity )
+    {
+        if ( capacity <= _members.length )
+        {
+            return;
+        }
+        int newCapacity = Math.max( capacity, _members.length + ( _members.length >> 1 ) );
+        int rows = _size - _spilled;
+
+        String[] members = new String[ newCapacity ];
+        System.arraycopy( _members, 0, members, 0, rows );
+        _members = members;
+        int[] owners = new int[ newCapacity ];
+        System.arraycopy( _owners, 0, owners, 0, rows );
+        _owners = owners;
+
+        for ( int column = 0; column < COLUMNS; column++ )
+        {
+            int[] values = new int[ newCapacity ];
+            System.arraycopy( _columns[ column ], 0, values, 0, rows );
+            _columns[ column ] = values;
+        }
+    }
+
+    /**
+     * Stores the name of a row held in memory, the owner in the name
+     * index. Returns the bytes of heap this takes.
+     */
+    private int setName( int row, String sName )
+    {
+        int end = sName.indexOf( '(' );
+        int dot = sName.lastIndexOf( '.', end < 0 ? sName.length() - 1 : end );
+        if ( dot < 0 )
+        {
+            _owners[ row ] = -1;
+            _members[ row ] = sName;
+
+            return 2 * sName.length();
+        }
+
+        int bytes = 0;
+        String sOwner = sName.substring( 0, dot );
+        Integer owner = _htOwners.get( sOwner );
+        if ( owner == null )
+        {
+            owner = Integer.valueOf( _vOwnerNames.size() );
+            _htOwners.put( sOwner, owner );
+            _vOwnerNames.add( sOwner );
+            bytes += OWNER_BYTES + 2 * sOwner.length();
+        }
+        _owners[ row ] = owner.intValue();
+        _members[ row ] = sName.substring( dot + 1 );
+
+        return bytes + 2 * _members[ row ].length();
+    }
+
+    /**
+     * The name of a row held in memory.
+     */
+    private String memoryName( int row )
+    {
+        int owner = _owners[ row ];
+        if ( owner < 0 )
+        {
+            return _members[ row ];
+        }
+
+        return _vOwnerNames.get( owner ) + '.' + _members[ row ];
+    }
+
+    /**
+     * Appends one row. Functions fill the CCN column, objects
+     * the FUNCTIONS and CLASSES columns, the other columns are
+     * shared by both.
+     */
+    public void add( Metric metric )
+    {
+        ensureCapacity( _size - _spilled + 1 );
+        _nameOrder = null;
+
+        int row = _size - _spilled;
+        int bytes = setName( row, metric.name );
+        _columns[ NCSS ][ row ] = metric.ncss;
+        _columns[ JAVADOCS ][ row ] = metric.javadocs;
+        _columns[ JAVADOCS_LN ][ row ] = metric.javadocsLn;
+        _columns[ SINGLE_LN ][ row ] = metric.singleLn;
+        _columns[ MULTI_LN ][ row ] = metric.multiLn;
+        _columns[ FIRST_LINE ][ row ] = metric.firstLine;
+        if ( metric instanceof FunctionMetric )
+        {
+            _columns[ CCN ][ row ] = ( (FunctionMetric) metric ).ccn;
+        }
+        else if ( metric instanceof ObjectMetric )
+        {
+            ObjectMetric objectMetric = (ObjectMetric) metric;
+            _columns[ CCN ][ row ] = objectMetric.ccn;
+            _columns[ FUNCTIONS ][ row ] = objectMetric.functions;
+            _columns[ CLASSES ][ row ] = objectMetric.classes;
+        }
+        _size++;
+
+        if ( _memoryBudget > 0 )
+        {
+            _memoryUsed += ROW_BYTES + bytes;
+            if ( _memoryUsed > _memoryBudget )
+            {
+                spill();
+            }
+        }
+    }
+
+    public void addAll( List<? extends Metric> metrics )
+    {
+        for ( Metric metric : metrics )
+        {
+            add( metric );
+        }
+    }
+
+    /**
+     * Appends <code>rows</code> rows given column by column, in the
+     * layout used by the column constants.
+     */
+    void addRows( String[] names, int[][] columns, int rows )
+    {
+        ensureCapacity( _size - _spilled + rows );
+        _nameOrder = null;
+
+        int start = _size - _spilled;
+        long bytes = 0;
+        for ( int row = 0; row < rows; row++ )
+        {
+            bytes += ROW_BYTES + setName( start + row, names[ row ] );
+        }
+        for ( int column = 0; column < COLUMNS; column++ )
+        {
+            System.arraycopy( columns[ column ], 0, _columns[ column ], start, rows );
+        }
+        _size += rows;
+
+        if ( _memoryBudget > 0 )
+        {
+            _memoryUsed += bytes;
+            if ( _memoryUsed > _memoryBudget )
+            {
+                spill();
+            }
+        }
+    }
+
+    /**
+     * Appends a copy of one row of another table.
+     */
+    void addRow( MetricTable source, int row )
+    {
+        ensureCapacity( _size - _spilled + 1 );
+        _nameOrder = null;
+
+        int target = _size - _spilled;
+        int bytes = setName( target, source.getName( row ) );
+        for ( int column = 0; column < COLUMNS; column++ )
+        {
+            _columns[ column ][ target ] = source.get( column, row );
+        }
+        _size++;
+
+        if ( _memoryBudget > 0 )
+        {
+            _memoryUsed += ROW_BYTES + bytes;
+            if ( _memoryUsed > _memoryBudget )
+            {
+                spill();
+            }
+        }
+    }
+
+    /**
+     * Compares a row of this table with a row of another table,
+     * by name first and then column by column.
+     */
+    int compareRows( int row, MetricTable other, int otherRow )
+    {
+        int result = compareNames( row, other, otherRow );
+        for ( int column = 0; result == 0 && column < COLUMNS; column++ )
+        {
+            int value = get( column, row );
+            int otherValue = other.get( column, otherRow );
+            result = value < otherValue ? -1 : ( value == otherValue ? 0 : 1 );
+        }
+
+        return result;
+    }
+
+    private int compareNames( int row, MetricTable other, int otherRow )
+    {
+        if ( other == this && row >= _spilled && otherRow >= _spilled )
+        {
+            int owner = _owners[ row - _spilled ];
+            if ( owner >= 0 && owner == _owners[ otherRow - _spilled ] )
+            {
+                // same owner, the rest of the names decides
+                return _members[ row - _spilled ].compareTo( _members[ otherRow - _spilled ] );
+            }
+        }
+
+        return getName( row ).compareTo( other.getName( otherRow ) );
+    }
+
+    /**
+     * Returns the row numbers ordered by name. Rows with equal
+     * names, e.g. the same class in two source trees, are ordered
+     * by their metrics, so the order does not depend on the order
+     * the rows were added in. A name order stored with the table is
+     * returned as it is, tables with rows on disk are sorted in runs
+     * within the memory budget by MetricTableSorter.
+     */
+    public int[] getNameOrder()
+    {
+        if ( _nameOrder != null )
+        {
+            return _nameOrder.clone();
+        }
+        if ( _spilled > 0 )
+        {
+            return MetricTableSorter.getNameOrder( this );
+        }
+
+        return sortRows();
+    }
+
+    /**
+     * Whether getNameOrder returns a stored order without sorting.
+     */
+    boolean hasNameOrder()
+    {
+        return _nameOrder != null;
+    }
+
+    /**
+     * Stores the name order of the rows, e.g. read from the index of
+     * a result file, so getNameOrder does not need to sort. It is kept
+     * until rows are added.
+     */
+    void setNameOrder( int[] order )
+    {
+        if ( order.length != _size )
+        {
+            throw new IllegalArgumentException( "Name order of " + order.length + " rows for " + _size + " rows" );
+        }
+        for ( int row : order )
+        {
+            checkRow( row );
+        }
+        _nameOrder = order.clone();
+    }
+
+    /**
+     * Sorts the row numbers by name in memory, with a merge sort on
+     * an int array. Each comparison reads two names, which is only
+     * cheap while the rows are in memory.
+     */
+    int[] sortRows()
+    {
+        int[] rows = new int[ _size ];
+        for ( int row = 0; row < _size; row++ )
+        {
+            rows[ row ] = row;
+        }
+        mergeSort( rows, new int[ _size ], 0, _size );
+
+        return rows;
+    }
+
+    private void mergeSort( int[] rows, int[] buffer, int from, int to )
+    {
+        if ( to - from < 2 )
+        {
+            return;
+        }
+        int middle = ( from + to ) >>> 1;
+        mergeSort( rows, buffer, from, middle );
+        mergeSort( rows, buffer, middle, to );
+        if ( compareRows( rows[ middle - 1 ], this, rows[ middle ] ) <= 0 )
+        {
+            return;
+        }
+        System.arraycopy( rows, from, buffer, from, to - from );
+        int left = from;
+        int right = middle;
+        for ( int i = from; i < to; i++ )
+        {
+            if ( right >= to || ( left < middle && compareRows( buffer[ left ], this, buffer[ right ] ) <= 0 ) )
+            {
+                rows[ i ] = buffer[ left++ ];
+            }
+            else
+            {
+                rows[ i ] = buffer[ right++ ];
+            }
+        }
+    }
+
+    public String getName( int row )
+    {
+        checkRow( row );
+        if ( row < _spilled )
+        {
+            try
+            {
+                return _spillFile.getName( row );
+            }
+            catch ( IOException e )
+            {
+                throw readError( e );
+            }
+        }
+
+        return memoryName( row - _spilled );
+    }
+
+    public int get( int column, int row )
+    {
+        checkRow( row );
+        if ( row < _spilled )
+        {
+            try
+            {
+                return _spillFile.getInt( row, column );
+            }
+            catch ( IOException e )
+            {
+                throw readError( e );
+            }
+        }
+
+        return _columns[ column ][ row - _spilled ];
+    }
+
+    public int getNcss( int row )
+    {
+        return get( NCSS, row );
+    }
+
+    public int getCcn( int row )
+    {
+        return get( CCN, row );
+    }
+
+    public int getFunctions( int row )
+    {
+        return get( FUNCTIONS, row );
+    }
+
+    public int getClasses( int row )
+    {
+        return get( CLASSES, row );
+    }
+
+    public int getJavadocs( int row )
+    {
+        return get( JAVADOCS, row );
+    }
+
+    public int getJavadocsLn( int row )
+    {
+        return get( JAVADOCS_LN, row );
+    }
+
+    public int getSingleLn( int row )
+    {
+        return get( SINGLE_LN, row );
+    }
+
+    public int getMultiLn( int row )
+    {
+        return get( MULTI_LN, row );
+    }
+
+    /**
+     * Sum of one column over all rows.
+     */
+    public long sum( int column )
+    {
+        long sum = 0;
+        for ( int row = 0; row < _spilled; row++ )
+        {
+            sum += get( column, row );
+        }
+        int[] values = _columns[ column ];
+        for ( int row = 0; row < _size - _spilled; row++ )
+        {
+            sum += values[ row ];
+        }
+
+        return sum;
+    }
+
+    private void checkRow( int row )
+    {
+        if ( row < 0 || row >= _size )
+        {
+            throw new IndexOutOfBoundsException( "Row: " + row + ", Size: " + _size );
+        }
+    }
+
+    private void fill( Metric metric, int row )
+    {
+        metric.name = getName( row );
+        metric.ncss = get( NCSS, row );
+        metric.javadocs = get( JAVADOCS, row );
+        metric.javadocsLn = get( JAVADOCS_LN, row );
+        metric.singleLn = get( SINGLE_LN, row );
+        metric.multiLn = get( MULTI_LN, row );
+        metric.firstLine = get( FIRST_LINE, row );
+    }
+
+    public FunctionMetric getFunctionMetric( int row )
+    {
+        FunctionMetric metric = new FunctionMetric();
+        fill( metric, row );
+        metric.ccn = get( CCN, row );
+
+        return metric;
+    }
+
+    public ObjectMetric getObjectMetric( int row )
+    {
+        ObjectMetric metric = new ObjectMetric();
+        fill( metric, row );
+        metric.ccn = get( CCN, row );
+        metric.functions = get( FUNCTIONS, row );
+        metric.classes = get( CLASSES, row );
+
+        return metric;
+    }
+
+    /**
+     * Read only list view of the rows as FunctionMetric objects.
+     */
+    public List<FunctionMetric> asFunctionList()
+    {
+        return new AbstractList<FunctionMetric>()
+        {
+            @Override
+            public FunctionMetric get( int row )
+            {
+                return getFunctionMetric( row );
+            }
+
+            @Override
+            public int size()
+            {
+                return _size;
+            }
+        };
+    }
+
+    /**
+     * Read only list view of the rows as ObjectMetric objects.
+     */
+    public List<ObjectMetric> asObjectList()
+    {
+        return new AbstractList<ObjectMetric>()
+        {
+            @Override
+            public ObjectMetric get( int row )
+            {
+                return getObjectMetric( row );
+            }
+
+            @Override
+            public int size()
+            {
+                return _size;
+            }
+        };
+    }
+}
@@ -0,0 +1,97 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+/**
+ * Reads the rows of a MetricTable in name order, like
+ * MetricTable.getNameOrder orders them.<p>
+ *
+ * A table in memory is read through its stored name order, e.g. the
+ * index of a result file, or an int array sorted in memory. A table
+ * with rows on disk is first sorted into a copy by MetricTableSorter,
+ * within its memory budget, which is then read in row order; looking
+ * its rows up in name order would read the temporary files at random.
+ * close() deletes that copy.
+ *
+ * @version $Id$
+ */
+class MetricTableCursor
+{
+    private final MetricTable _table;
+    private final int[] _order;
+    private final boolean _bSorted;
+    private int _position = 0;
+
+    MetricTableCursor( MetricTable table )
+    {
+        if ( table.getSpilledRows() > 0 )
+        {
+            _table = MetricTableSorter.sort( table );
+            _order = null;
+            _bSorted = true;
+        }
+        else
+        {
+            _table = table;
+            _order = table.getNameOrder();
+            _bSorted = false;
+        }
+    }
+
+    /**
+     * The table getRow refers to, the sorted copy if there is one.
+     */
+    MetricTable getTable()
+    {
+        return _table;
+    }
+
+    boolean hasRow()
+    {
+        return _position < _table.size();
+    }
+
+    /**
+     * The current row of getTable.
+     */
+    int getRow()
+    {
+        return _order == null ? _position : _order[ _position ];
+    }
+
+    String getName()
+    {
+        return _table.getName( getRow() );
+    }
+
+    void next()
+    {
+        _position++;
+    }
+
+    void close()
+    {
+        if ( _bSorted )
+        {
+            _table.clear();
+        }
+    }
+}
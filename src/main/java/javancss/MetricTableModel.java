@@ -0,0 +1,112 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.util.List;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table model for the classes or methods tab of JavancssFrame,
+ * reading the cells straight from a MetricTable, so a JTable only
+ * touches the rows it shows. Must only be used on the event
+ * dispatch thread.
+ *
+ * @version $Id$
+ */
+class MetricTableModel
+    extends AbstractTableModel
+{
+    private static final String[] FUNCTION_TITLES = { "Function", "NCSS", "CCN", "Javadocs" };
+    private static final int[] FUNCTION_COLUMNS = { -1, MetricTable.NCSS, MetricTable.CCN, MetricTable.JAVADOCS };
+
+    private static final String[] OBJECT_TITLES = { "Class", "NCSS", "Functions", "Classes", "Javadocs" };
+    private static final int[] OBJECT_COLUMNS = { -1, MetricTable.NCSS, MetricTable.FUNCTIONS
+                                                  , MetricTable.CLASSES, MetricTable.JAVADOCS };
+
+    private final String[] _asTitles;
+    private final int[] _aColumns;
+    private MetricTable _table = new MetricTable();
+
+    /**
+     * @param functions  true for a function table, false for an object table
+     */
+    MetricTableModel( boolean functions )
+    {
+        _asTitles = functions ? FUNCTION_TITLES : OBJECT_TITLES;
+        _aColumns = functions ? FUNCTION_COLUMNS : OBJECT_COLUMNS;
+    }
+
+    /**
+     * Appends the metrics of a file which has just been measured.
+     */
+    void addAll( List<? extends Metric> vMetrics )
+    {
+        if ( vMetrics.isEmpty() )
+        {
+            return;
+        }
+        int first = _table.size();
+        _table.addAll( vMetrics );
+        fireTableRowsInserted( first, _table.size() - 1 );
+    }
+
+    /**
+     * Shows the given table instead, e.g. the final result.
+     */
+    void setTable( MetricTable table )
+    {
+        _table = table;
+        fireTableDataChanged();
+    }
+
+    public int getRowCount()
+    {
+        return _table.size();
+    }
+
+    public int getColumnCount()
+    {
+        return _asTitles.length;
+    }
+
+    @Override
+    public String getColumnName( int column )
+    {
+        return _asTitles[ column ];
+    }
+
+    @Override
+    public Class<?> getColumnClass( int column )
+    {
+        return _aColumns[ column ] < 0 ? String.class : Integer.class;
+    }
+
+    public Object getValueAt( int row, int column )
+    {
+        if ( _aColumns[ column ] < 0 )
+        {
+            return _table.getName( row );
+        }
+
+        return Integer.valueOf( _table.get( _aColumns[ column ], row ) );
+    }
+}
@@ -0,0 +1,277 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts a MetricTable by name within the table's memory budget
+ * (external merge sort).<p>
+ *
+ * The rows are cut into runs which fit into half of the budget,
+ * each run is sorted in memory and moved to a temporary file. The
+ * runs are then merged k-way, in several passes if there are more
+ * than MAX_FAN_IN of them, into a new table, which spills to
+ * disk as it grows like any table with a budget. Rows are ordered
+ * like MetricTable.getNameOrder orders them. Without a budget the
+ * table is sorted in memory.<p>
+ *
+ * The same runs give the name order of a table as row numbers,
+ * which getNameOrder uses for tables with rows on disk: each row is
+ * read once in row order, and the names are compared in memory or
+ * read in order from the runs, never looked up at random on disk.
+ *
+ * @version $Id$
+ */
+class MetricTableSorter
+{
+    private static final int MIN_RUN_ROWS = 1024;
+
+    /**
+     * Most runs merged at once, each one keeps two files open.
+     */
+    static final int MAX_FAN_IN = 64;
+
+    /**
+     * Assumed heap cost of the characters of a name.
+     */
+    private static final int NAME_BYTES = 2 * 64;
+
+    private MetricTableSorter()
+    {
+    }
+
+    private static int getRunRows( MetricTable table )
+    {
+        long budget = table.getMemoryBudget();
+        if ( budget <= 0 )
+        {
+            return Integer.MAX_VALUE;
+        }
+        // a run is held twice while it is sorted
+        long rows = budget / ( 2 * ( MetricTable.ROW_BYTES + NAME_BYTES ) );
+
+        return (int) Math.max( MIN_RUN_ROWS, Math.min( Integer.MAX_VALUE, rows ) );
+    }
+
+    static MetricTable sort( MetricTable table )
+    {
+        return sort( table, getRunRows( table ) );
+    }
+
+    static MetricTable sort( MetricTable table, int runRows )
+    {
+        MetricTable sorted = new MetricTable();
+        sorted.setMemoryBudget( table.getMemoryBudget() );
+        sort( table, runRows, sorted, null );
+
+        return sorted;
+    }
+
+    /**
+     * Returns the row numbers of <code>table</code> ordered by name,
+     * like MetricTable.getNameOrder.
+     */
+    static int[] getNameOrder( MetricTable table )
+    {
+        return getNameOrder( table, getRunRows( table ) );
+    }
+
+    static int[] getNameOrder( MetricTable table, int runRows )
+    {
+        int[] order = new int[ table.size() ];
+        sort( table, runRows, null, order );
+
+        return order;
+    }
+
+    /**
+     * Sorts the rows into <code>target</code> and/or their row numbers
+     * into <code>order</code>, either may be null.
+     */
+    private static void sort( MetricTable table, int runRows, MetricTable target, int[] order )
+    {
+        if ( table.getSpilledRows() == 0 && table.size() <= runRows )
+        {
+            int[] rows = table.sortRows();
+            for ( int i = 0; i < rows.length; i++ )
+            {
+                if ( target != null )
+                {
+                    target.addRow( table, rows[ i ] );
+                }
+                if ( order != null )
+                {
+                    order[ i ] = rows[ i ];
+                }
+            }
+
+            return;
+        }
+
+        List<Run> vRuns = new ArrayList<Run>();
+        try
+        {
+            for ( int start = 0; start < table.size(); start += runRows )
+            {
+                int end = (int) Math.min( table.size(), (long) start + runRows );
+                MetricTable run = new MetricTable();
+                for ( int row = start; row < end; row++ )
+                {
+                    run.addRow( table, row );
+                }
+                int[] runOrder = run.sortRows();
+                MetricTable sortedRun = new MetricTable();
+                for ( int row : runOrder )
+                {
+                    sortedRun.addRow( run, row );
+                }
+                run.clear();
+                sortedRun.spillAll();
+                int[] rows = null;
+                if ( order != null )
+                {
+                    rows = new int[ runOrder.length ];
+                    for ( int i = 0; i < runOrder.length; i++ )
+                    {
+                        rows[ i ] = start + runOrder[ i ];
+                    }
+                }
+                vRuns.add( new Run( sortedRun, rows ) );
+            }
+
+            while ( vRuns.size() > MAX_FAN_IN )
+            {
+                List<Run> vMerged = new ArrayList<Run>();
+                for ( int start = 0; start < vRuns.size(); start += MAX_FAN_IN )
+                {
+                    List<Run> vGroup = vRuns.subList( start, Math.min( vRuns.size(), start + MAX_FAN_IN ) );
+                    MetricTable merged = new MetricTable();
+                    merged.setMemoryBudget( Math.max( 1, table.getMemoryBudget() / 2 ) );
+                    int[] rows = null;
+                    if ( order != null )
+                    {
+                        int size = 0;
+                        for ( Run run : vGroup )
+                        {
+                            size += run.table.size();
+                        }
+                        rows = new int[ size ];
+                    }
+                    merge( vGroup, merged, rows );
+                    merged.spillAll();
+                    for ( Run run : vGroup )
+                    {
+                        run.table.clear();
+                    }
+                    vMerged.add( new Run( merged, rows ) );
+                }
+                vRuns = vMerged;
+            }
+            merge( vRuns, target, order );
+        }
+        finally
+        {
+            for ( Run run : vRuns )
+            {
+                run.table.clear();
+            }
+        }
+    }
+
+    /**
+     * K-way merge of sorted runs. Equal rows are taken in run order,
+     * which keeps the sort stable.
+     */
+    private static void merge( List<Run> vRuns, MetricTable target, int[] order )
+    {
+        PriorityQueue<Cursor> queue = new PriorityQueue<Cursor>( vRuns.size() );
+        for ( int index = 0; index < vRuns.size(); index++ )
+        {
+            if ( vRuns.get( index ).table.size() > 0 )
+            {
+                queue.add( new Cursor( vRuns.get( index ), index ) );
+            }
+        }
+
+        int position = 0;
+        while ( !queue.isEmpty() )
+        {
+            Cursor cursor = queue.poll();
+            if ( target != null )
+            {
+                target.addRow( cursor.run.table, cursor.row );
+            }
+            if ( order != null )
+            {
+                order[ position++ ] = cursor.run.rows[ cursor.row ];
+            }
+            cursor.row++;
+            if ( cursor.row < cursor.run.table.size() )
+            {
+                queue.add( cursor );
+            }
+        }
+    }
+
+    /**
+     * A sorted run and, when row numbers are wanted, the row of
+     * the input table each of its rows came from.
+     */
+    private static class Run
+    {
+        final MetricTable table;
+        final int[] rows;
+
+        Run( MetricTable table_, int[] rows_ )
+        {
+            table = table_;
+            rows = rows_;
+        }
+    }
+
+    private static class Cursor
+        implements Comparable<Cursor>
+    {
+        final Run run;
+        final int index;
+        int row = 0;
+
+        Cursor( Run run_, int index_ )
+        {
+            run = run_;
+            index = index_;
+        }
+
+        public int compareTo( Cursor other )
+        {
+            int result = run.table.compareRows( row, other.run.table, other.row );
+            if ( result == 0 )
+            {
+                result = index < other.index ? -1 : ( index == other.index ? 0 : 1 );
+            }
+
+            return result;
+        }
+    }
+}
@@ -32,12 +32,18 @@ public class PackageMetric
     public int classes = 0;
     public int functions = 0;
 
+    /**
+     * Distributions of the functions and objects of this package.
+     */
+    public final Distributions distributions = new Distributions();
+
     @Override
     public void clear()
     {
         super.clear();
         classes = 0;
         functions = 0;
+        distributions.clear();
     }
 
     public void add( PackageMetric pPackageMetric_ )
@@ -54,5 +60,6 @@ public class PackageMetric
         javadocsLn += pPackageMetric_.javadocsLn;
         singleLn += pPackageMetric_.singleLn;
         multiLn += pPackageMetric_.multiLn;
+        distributions.add( pPackageMetric_.distributions );
     }
 }
@@ -0,0 +1,136 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table model for the packages tab of JavancssFrame. Packages are
+ * updated in place as further files add to them. Must only be used
+ * on the event dispatch thread.
+ *
+ * @version $Id$
+ */
+class PackageTableModel
+    extends AbstractTableModel
+{
+    private static final String[] TITLES = { "Package", "Classes", "Functions", "NCSS", "Javadocs" };
+
+    private final List<PackageMetric> _vPackages = new ArrayList<PackageMetric>();
+    private final Map<String, Integer> _htRows = new HashMap<String, Integer>();
+
+    /**
+     * Adds new packages and replaces the totals of known ones,
+     * firing at most one insert and one update event.
+     */
+    void update( List<PackageMetric> vPackages )
+    {
+        int first = _vPackages.size();
+        int firstUpdated = Integer.MAX_VALUE;
+        int lastUpdated = -1;
+        for ( PackageMetric pkm : vPackages )
+        {
+            Integer row = _htRows.get( pkm.name );
+            if ( row == null )
+            {
+                _htRows.put( pkm.name, Integer.valueOf( _vPackages.size() ) );
+                _vPackages.add( pkm );
+            }
+            else
+            {
+                _vPackages.set( row.intValue(), pkm );
+                if ( row.intValue() < first )
+                {
+                    firstUpdated = Math.min( firstUpdated, row.intValue() );
+                    lastUpdated = Math.max( lastUpdated, row.intValue() );
+                }
+            }
+        }
+        if ( lastUpdated >= 0 )
+        {
+            fireTableRowsUpdated( firstUpdated, lastUpdated );
+        }
+        if ( _vPackages.size() > first )
+        {
+            fireTableRowsInserted( first, _vPackages.size() - 1 );
+        }
+    }
+
+    /**
+     * Shows the given packages instead, e.g. the final result.
+     */
+    void setPackages( List<PackageMetric> vPackages )
+    {
+        _vPackages.clear();
+        _htRows.clear();
+        for ( PackageMetric pkm : vPackages )
+        {
+            _htRows.put( pkm.name, Integer.valueOf( _vPackages.size() ) );
+            _vPackages.add( pkm );
+        }
+        fireTableDataChanged();
+    }
+
+    public int getRowCount()
+    {
+        return _vPackages.size();
+    }
+
+    public int getColumnCount()
+    {
+        return TITLES.length;
+    }
+
+    @Override
+    public String getColumnName( int column )
+    {
+        return TITLES[ column ];
+    }
+
+    @Override
+    public Class<?> getColumnClass( int column )
+    {
+        return column == 0 ? String.class : Integer.class;
+    }
+
+    public Object getValueAt( int row, int column )
+    {
+        PackageMetric pkm = _vPackages.get( row );
+        switch ( column )
+        {
+            case 0:
+                return pkm.name;
+            case 1:
+                return Integer.valueOf( pkm.classes );
+            case 2:
+                return Integer.valueOf( pkm.functions );
+            case 3:
+                return Integer.valueOf( pkm.ncss );
+            default:
+                return Integer.valueOf( pkm.javadocs );
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.Closeable;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javancss.parser.CanonicalCharStream;
+import javancss.parser.JavaParser;
+
+/**
+ * Keeps parsers for reuse, so measuring many source files does not
+ * create a parser with its buffers for each one. A pool may be shared
+ * by any number of threads and Javancss objects, a parser is used by
+ * one of them at a time.<p>
+ *
+ * Without a pool of its own a Javancss object reuses one parser for
+ * the files of a measurement and drops it at the end. A program which
+ * measures many times, like a build measuring many modules, shares a
+ * pool and closes it once it is done, which drops the parsers kept.
+ * The pool may still be used after it has been closed.
+ *
+ * @version $Id$
+ */
+public class ParserPool
+    implements Closeable
+{
+    private final List<JavaParser> _vParsers = new ArrayList<JavaParser>();
+
+    /**
+     * Returns an idle parser, or a new one, prepared to parse
+     * <code>reader</code>. It must be given back with release.
+     */
+    JavaParser borrow( Reader reader )
+    {
+        JavaParser parser = null;
+        synchronized ( _vParsers )
+        {
+            if ( !_vParsers.isEmpty() )
+            {
+                parser = _vParsers.remove( _vParsers.size() - 1 );
+            }
+        }
+        if ( parser == null )
+        {
+            return new JavaParser( new CanonicalCharStream( reader ) );
+        }
+        parser.reset( reader );
+
+        return parser;
+    }
+
+    /**
+     * Gives back a parser which is done, it may not be used anymore.
+     */
+    void release( JavaParser parser )
+    {
+        synchronized ( _vParsers )
+        {
+            _vParsers.add( parser );
+        }
+    }
+
+    /**
+     * Number of idle parsers.
+     */
+    int size()
+    {
+        synchronized ( _vParsers )
+        {
+            return _vParsers.size();
+        }
+    }
+
+    /**
+     * Drops the idle parsers.
+     */
+    public void close()
+    {
+        synchronized ( _vParsers )
+        {
+            _vParsers.clear();
+        }
+    }
+}
@@ -0,0 +1,424 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compares two results, e.g. of a branch and its base, and reports
+ * added, removed and changed packages, classes and functions.<p>
+ *
+ * Both sides are walked in name order and joined in a single pass
+ * (sorted merge join). Tables in memory are read through the index
+ * they were saved with or an int array sorted in memory; tables with
+ * rows on disk are sorted through temporary files within their
+ * memory budget and then read in order, see MetricTableCursor. Read
+ * with a memory budget, the heap a comparison needs is bounded
+ * however many functions the results hold.<p>
+ *
+ * If a name occurs several times, e.g. the same class in two source
+ * trees, the occurrences of both sides are paired in the order
+ * MetricTable.getNameOrder puts them, by their metrics column by
+ * column, NCSS first, not in the order they were measured in. Old
+ * functions with NCSS 5 and 10 and new ones with NCSS 10 and 12 are
+ * reported as two changes, 5 to 10 and 10 to 12. Occurrences one
+ * side has more of are reported as added or removed.<p>
+ *
+ * A function counts as changed when NCSS, CCN or javadocs differ,
+ * a class when NCSS, functions, inner classes or javadocs differ
+ * and a package when classes, functions, NCSS or javadocs differ.
+ *
+ * @version $Id$
+ */
+public class ResultDiff
+{
+    public static final String PACKAGE = "package";
+    public static final String OBJECT = "object";
+    public static final String FUNCTION = "function";
+
+    private static final int[] OBJECT_COLUMNS = { MetricTable.NCSS, MetricTable.FUNCTIONS
+                                                  , MetricTable.CLASSES, MetricTable.JAVADOCS };
+    private static final int[] FUNCTION_COLUMNS = { MetricTable.NCSS, MetricTable.CCN, MetricTable.JAVADOCS };
+
+    /**
+     * Receives the differences, packages first, then classes, then
+     * functions, each in name order.
+     */
+    public interface Handler
+    {
+        void added( String sKind, Metric metric )
+            throws IOException;
+
+        void removed( String sKind, Metric metric )
+            throws IOException;
+
+        void changed( String sKind, Metric oldMetric, Metric newMetric )
+            throws IOException;
+    }
+
+    private ResultDiff()
+    {
+    }
+
+    public static void diff( Javancss oldResult, Javancss newResult, Handler handler )
+        throws IOException
+    {
+        diff( oldResult, newResult, handler, true, true, true );
+    }
+
+    /**
+     * Compares two result files, each one a binary result or an XML
+     * report, within <code>memoryBudget</code> bytes for the objects
+     * and functions of both; zero or less reads them into memory.
+     */
+    public static void diff( File oldFile, File newFile, Handler handler, long memoryBudget )
+        throws IOException
+    {
+        Javancss oldResult = new Javancss();
+        oldResult.setMemoryBudget( memoryBudget / 2 );
+        Javancss newResult = new Javancss();
+        newResult.setMemoryBudget( memoryBudget / 2 );
+        try
+        {
+            diff( oldFile, oldResult, newFile, newResult, handler, true, true, true );
+        }
+        finally
+        {
+            oldResult.close();
+            newResult.close();
+        }
+    }
+
+    public static void diff( File oldFile, File newFile, Handler handler )
+        throws IOException
+    {
+        diff( oldFile, newFile, handler, 0 );
+    }
+
+    /**
+     * Reads both files into the given, empty results (using their
+     * memory budgets) and compares them.
+     */
+    static void diff( File oldFile, Javancss oldResult, File newFile, Javancss newResult, Handler handler
+                      , boolean packages, boolean objects, boolean functions )
+        throws IOException
+    {
+        ResultMerger.read( oldFile, oldResult );
+        ResultMerger.read( newFile, newResult );
+
+        diff( oldResult, newResult, handler, packages, objects, functions );
+    }
+
+    private static void diff( Javancss oldResult, Javancss newResult
+                              , Handler handler, boolean packages, boolean objects, boolean functions )
+        throws IOException
+    {
+        if ( packages )
+        {
+            diffPackages( oldResult.getPackageMetrics(), newResult.getPackageMetrics(), handler );
+        }
+        if ( objects )
+        {
+            diffTables( OBJECT, OBJECT_COLUMNS, oldResult.getObjectTable(), newResult.getObjectTable(), handler );
+        }
+        if ( functions )
+        {
+            diffTables( FUNCTION, FUNCTION_COLUMNS, oldResult.getFunctionTable(), newResult.getFunctionTable(), handler );
+        }
+    }
+
+    private static void diffPackages( List<PackageMetric> vOld, List<PackageMetric> vNew, Handler handler )
+        throws IOException
+    {
+        List<PackageMetric> vOldSorted = new ArrayList<PackageMetric>();
+        List<PackageMetric> vNewSorted = new ArrayList<PackageMetric>();
+        if ( vOld != null )
+        {
+            vOldSorted.addAll( vOld );
+        }
+        if ( vNew != null )
+        {
+            vNewSorted.addAll( vNew );
+        }
+        Collections.sort( vOldSorted );
+        Collections.sort( vNewSorted );
+
+        int o = 0;
+        int n = 0;
+        while ( o < vOldSorted.size() || n < vNewSorted.size() )
+        {
+            int compare;
+            if ( o >= vOldSorted.size() )
+            {
+                compare = 1;
+            }
+            else if ( n >= vNewSorted.size() )
+            {
+                compare = -1;
+            }
+            else
+            {
+                compare = vOldSorted.get( o ).name.compareTo( vNewSorted.get( n ).name );
+            }
+
+            if ( compare < 0 )
+            {
+                handler.removed( PACKAGE, vOldSorted.get( o++ ) );
+            }
+            else if ( compare > 0 )
+            {
+                handler.added( PACKAGE, vNewSorted.get( n++ ) );
+            }
+            else
+            {
+                PackageMetric oldMetric = vOldSorted.get( o++ );
+                PackageMetric newMetric = vNewSorted.get( n++ );
+                if ( oldMetric.classes != newMetric.classes
+                     || oldMetric.functions != newMetric.functions
+                     || oldMetric.ncss != newMetric.ncss
+                     || oldMetric.javadocs != newMetric.javadocs )
+                {
+                    handler.changed( PACKAGE, oldMetric, newMetric );
+                }
+            }
+        }
+    }
+
+    private static void diffTables( String sKind, int[] columns, MetricTable oldTable, MetricTable newTable
+                                    , Handler handler )
+        throws IOException
+    {
+        MetricTableCursor oldRows = new MetricTableCursor( oldTable );
+        try
+        {
+            MetricTableCursor newRows = new MetricTableCursor( newTable );
+            try
+            {
+                diffRows( sKind, columns, oldRows, newRows, handler );
+            }
+            finally
+            {
+                newRows.close();
+            }
+        }
+        finally
+        {
+            oldRows.close();
+        }
+    }
+
+    private static void diffRows( String sKind, int[] columns, MetricTableCursor oldRows, MetricTableCursor newRows
+                                  , Handler handler )
+        throws IOException
+    {
+        while ( oldRows.hasRow() || newRows.hasRow() )
+        {
+            int compare;
+            if ( !oldRows.hasRow() )
+            {
+                compare = 1;
+            }
+            else if ( !newRows.hasRow() )
+            {
+                compare = -1;
+            }
+            else
+            {
+                compare = oldRows.getName().compareTo( newRows.getName() );
+            }
+
+            if ( compare < 0 )
+            {
+                handler.removed( sKind, metric( sKind, oldRows.getTable(), oldRows.getRow() ) );
+                oldRows.next();
+            }
+            else if ( compare > 0 )
+            {
+                handler.added( sKind, metric( sKind, newRows.getTable(), newRows.getRow() ) );
+                newRows.next();
+            }
+            else
+            {
+                MetricTable oldTable = oldRows.getTable();
+                MetricTable newTable = newRows.getTable();
+                int oldRow = oldRows.getRow();
+                int newRow = newRows.getRow();
+                for ( int column : columns )
+                {
+                    if ( oldTable.get( column, oldRow ) != newTable.get( column, newRow ) )
+                    {
+                        handler.changed( sKind, metric( sKind, oldTable, oldRow ), metric( sKind, newTable, newRow ) );
+                        break;
+                    }
+                }
+                oldRows.next();
+                newRows.next();
+            }
+        }
+    }
+
+    private static Metric metric( String sKind, MetricTable table, int row )
+    {
+        return FUNCTION.equals( sKind ) ? table.getFunctionMetric( row ) : table.getObjectMetric( row );
+    }
+
+    /**
+     * Writes one line per difference and counts them. Changed
+     * lines only show the metrics which differ.
+     */
+    public static class TextWriter
+        implements Handler
+    {
+        private static final String NL = System.getProperty( "line.separator" );
+
+        private final Writer _w;
+        private final int[] _added = new int[ 3 ];
+        private final int[] _removed = new int[ 3 ];
+        private final int[] _changed = new int[ 3 ];
+
+        public TextWriter( Writer w )
+        {
+            _w = w;
+        }
+
+        private static int kind( String sKind )
+        {
+            return sKind.equals( PACKAGE ) ? 0 : ( sKind.equals( OBJECT ) ? 1 : 2 );
+        }
+
+        public void added( String sKind, Metric metric )
+            throws IOException
+        {
+            _added[ kind( sKind ) ]++;
+            writeLine( '+', sKind, metric, null );
+        }
+
+        public void removed( String sKind, Metric metric )
+            throws IOException
+        {
+            _removed[ kind( sKind ) ]++;
+            writeLine( '-', sKind, metric, null );
+        }
+
+        public void changed( String sKind, Metric oldMetric, Metric newMetric )
+            throws IOException
+        {
+            _changed[ kind( sKind ) ]++;
+            writeLine( '~', sKind, oldMetric, newMetric );
+        }
+
+        private void writeLine( char type, String sKind, Metric metric, Metric newMetric )
+            throws IOException
+        {
+            StringBuilder sbLine = new StringBuilder();
+            sbLine.append( type ).append( ' ' ).append( sKind );
+            for ( int i = sKind.length(); i < 9; i++ )
+            {
+                sbLine.append( ' ' );
+            }
+            sbLine.append( metric.name );
+
+            String[] asNames;
+            int[] aOld;
+            int[] aNew = null;
+            if ( metric instanceof PackageMetric )
+            {
+                asNames = new String[] { "classes", "functions", "ncss", "javadocs" };
+                aOld = values( (PackageMetric) metric );
+                if ( newMetric != null )
+                {
+                    aNew = values( (PackageMetric) newMetric );
+                }
+            }
+            else if ( metric instanceof ObjectMetric )
+            {
+                asNames = new String[] { "ncss", "functions", "classes", "javadocs" };
+                aOld = values( (ObjectMetric) metric );
+                if ( newMetric != null )
+                {
+                    aNew = values( (ObjectMetric) newMetric );
+                }
+            }
+            else
+            {
+                asNames = new String[] { "ncss", "ccn", "javadocs" };
+                aOld = values( (FunctionMetric) metric );
+                if ( newMetric != null )
+                {
+                    aNew = values( (FunctionMetric) newMetric );
+                }
+            }
+
+            for ( int i = 0; i < asNames.length; i++ )
+            {
+                if ( aNew == null )
+                {
+                    sbLine.append( "  " ).append( asNames[ i ] ).append( ' ' ).append( aOld[ i ] );
+                }
+                else if ( aOld[ i ] != aNew[ i ] )
+                {
+                    int delta = aNew[ i ] - aOld[ i ];
+                    sbLine.append( "  " ).append( asNames[ i ] ).append( ' ' )
+                          .append( aOld[ i ] ).append( " -> " ).append( aNew[ i ] )
+                          .append( delta > 0 ? " (+" : " (" ).append( delta ).append( ')' );
+                }
+            }
+            sbLine.append( NL );
+            _w.write( sbLine.toString() );
+        }
+
+        private static int[] values( PackageMetric metric )
+        {
+            return new int[] { metric.classes, metric.functions, metric.ncss, metric.javadocs };
+        }
+
+        private static int[] values( ObjectMetric metric )
+        {
+            return new int[] { metric.ncss, metric.functions, metric.classes, metric.javadocs };
+        }
+
+        private static int[] values( FunctionMetric metric )
+        {
+            return new int[] { metric.ncss, metric.ccn, metric.javadocs };
+        }
+
+        /**
+         * Writes the counts of differences and the program NCSS of both sides.
+         */
+        public void printSummary( Writer w, int oldNcss, int newNcss )
+            throws IOException
+        {
+            String[] asKinds = { "Packages", "Classes", "Functions" };
+            for ( int i = 0; i < asKinds.length; i++ )
+            {
+                w.write( asKinds[ i ] + ": " + _added[ i ] + " added, " + _removed[ i ] + " removed, "
+                         + _changed[ i ] + " changed" + NL );
+            }
+            int delta = newNcss - oldNcss;
+            w.write( "Program NCSS: " + oldNcss + " -> " + newNcss + ( delta >= 0 ? " (+" : " (" ) + delta + ")" + NL );
+        }
+    }
+}
@@ -0,0 +1,633 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Saves and loads a complete JavaNCSS result in a compact binary
+ * format, so it can be formatted, diffed or merged later without
+ * parsing the sources again.<p>
+ *
+ * The file starts with a fixed size header, all numbers big endian:
+ * <pre>
+ *  0  magic "JNCS"
+ *  4  u16 version
+ *  6  u16 flags, bit 0 set when an index section is present,
+ *     bit 1 set when a distribution section is present
+ *  8  i32 program NCSS
+ * 12  i32 lines of code
+ * 16  i32 javadoc comments of the last measured file
+ * 20  i32 javadoc comment lines
+ * 24  i32 single line comment lines
+ * 28  i32 multi line comment lines
+ * 32  i64 offset of the package section
+ * 40  i64 offset of the object section
+ * 48  i64 offset of the function section
+ * 56  i64 offset of the index section, or 0
+ * </pre>
+ * Names are stored where they are used, front coded against the
+ * name before them in the same section: varint shared prefix length
+ * in chars, varint suffix length in bytes, UTF-8 suffix. Rows of a
+ * class or package follow each other, so most of a name is shared
+ * with the previous one, and neither writing nor reading needs all
+ * names in memory at once. Package records are a name followed by
+ * the seven package metrics. The object and function sections store
+ * the row count and then one column after the other, first the
+ * names, then the metrics as zigzag varints in MetricTable column
+ * order.<p>
+ *
+ * The distribution section directly follows the function section.
+ * It holds the function NCSS, function CCN and object NCSS
+ * histograms of the project and then of each package in the order
+ * of the package section. A histogram is stored as its maximum, the
+ * number of non empty buckets and for each of them the distance to
+ * the previous one and its count, all varints. Files without it are
+ * read by computing the distributions from the tables.<p>
+ *
+ * The optional index lists the object rows and then the function
+ * rows ordered by name as fixed width i32 values, so it can be
+ * searched in place in the mapped file. It is built with
+ * MetricTable.getNameOrder, within the memory budget of the tables.
+ *
+ * @version $Id$
+ */
+public class ResultFile
+{
+    public static final int VERSION = 1;
+
+    static final int FLAG_INDEX = 1;
+    static final int FLAG_DISTRIBUTIONS = 2;
+
+    private static final byte[] MAGIC = { 'J', 'N', 'C', 'S' };
+    private static final int HEADER_SIZE = 64;
+    private static final int TABLE_CHUNK = 4096;
+
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    private final Javancss _javancss;
+    private final int[] _objectIndex;
+    private final int[] _functionIndex;
+
+    private ResultFile( Javancss javancss, int[] objectIndex, int[] functionIndex )
+    {
+        _javancss = javancss;
+        _objectIndex = objectIndex;
+        _functionIndex = functionIndex;
+    }
+
+    /**
+     * The loaded result, ready to be handed to any Formatter.
+     */
+    public Javancss getJavancss()
+    {
+        return _javancss;
+    }
+
+    /**
+     * Object rows ordered by name, or null if the file has no index.
+     */
+    public int[] getObjectIndex()
+    {
+        return _objectIndex;
+    }
+
+    /**
+     * Function rows ordered by name, or null if the file has no index.
+     */
+    public int[] getFunctionIndex()
+    {
+        return _functionIndex;
+    }
+
+    /**
+     * Loads a result file and returns the Javancss object holding it.
+     */
+    public static Javancss load( File file )
+        throws IOException
+    {
+        return read( file, new Javancss() ).getJavancss();
+    }
+
+    public static ResultFile read( File file )
+        throws IOException
+    {
+        return read( file, new Javancss() );
+    }
+
+    /**
+     * Fills <code>javancss</code> with the result stored in <code>file</code>.
+     */
+    static ResultFile read( File file, Javancss javancss )
+        throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            if ( channel.size() > Integer.MAX_VALUE )
+            {
+                throw new IOException( "Result file too large: " + file );
+            }
+            ByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+
+            return read( buffer, javancss, file.getPath() );
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    private static ResultFile read( ByteBuffer buffer, Javancss javancss, String source )
+        throws IOException
+    {
+        if ( buffer.remaining() < HEADER_SIZE )
+        {
+            throw new IOException( "Not a JavaNCSS result file: " + source );
+        }
+        for ( int i = 0; i < MAGIC.length; i++ )
+        {
+            if ( buffer.get( i ) != MAGIC[ i ] )
+            {
+                throw new IOException( "Not a JavaNCSS result file: " + source );
+            }
+        }
+        int version = buffer.getShort( 4 ) & 0xFFFF;
+        if ( version != VERSION )
+        {
+            throw new IOException( "Unsupported result file version " + version + ": " + source );
+        }
+        int flags = buffer.getShort( 6 ) & 0xFFFF;
+        int ncss = buffer.getInt( 8 );
+        int loc = buffer.getInt( 12 );
+        int jvdc = buffer.getInt( 16 );
+        int jdcl = buffer.getInt( 20 );
+        int sl = buffer.getInt( 24 );
+        int ml = buffer.getInt( 28 );
+
+        try
+        {
+            buffer.position( (int) buffer.getLong( 32 ) );
+            int packages = readVarint( buffer );
+            List<PackageMetric> vPackageMetrics = new ArrayList<PackageMetric>( packages );
+            String previous = "";
+            for ( int i = 0; i < packages; i++ )
+            {
+                PackageMetric metric = new PackageMetric();
+                metric.name = readName( buffer, previous );
+                previous = metric.name;
+                metric.classes = readSigned( buffer );
+                metric.functions = readSigned( buffer );
+                metric.ncss = readSigned( buffer );
+                metric.javadocs = readSigned( buffer );
+                metric.javadocsLn = readSigned( buffer );
+                metric.singleLn = readSigned( buffer );
+                metric.multiLn = readSigned( buffer );
+                vPackageMetrics.add( metric );
+            }
+
+            buffer.position( (int) buffer.getLong( 40 ) );
+            MetricTable objectTable = readTable( buffer, javancss.getObjectTable().getMemoryBudget() );
+            buffer.position( (int) buffer.getLong( 48 ) );
+            MetricTable functionTable = readTable( buffer, javancss.getFunctionTable().getMemoryBudget() );
+            Distributions distributions = null;
+            if ( ( flags & FLAG_DISTRIBUTIONS ) != 0 )
+            {
+                distributions = readDistributions( buffer );
+                for ( PackageMetric metric : vPackageMetrics )
+                {
+                    metric.distributions.add( readDistributions( buffer ) );
+                }
+            }
+
+            int[] objectIndex = null;
+            int[] functionIndex = null;
+            if ( ( flags & FLAG_INDEX ) != 0 )
+            {
+                buffer.position( (int) buffer.getLong( 56 ) );
+                objectIndex = readIndex( buffer );
+                functionIndex = readIndex( buffer );
+                objectTable.setNameOrder( objectIndex );
+                functionTable.setNameOrder( functionIndex );
+            }
+
+            javancss.setResult( ncss, loc, vPackageMetrics, objectTable, functionTable );
+            javancss.setComments( jvdc, jdcl, sl, ml );
+            if ( distributions != null )
+            {
+                javancss.setDistributions( distributions );
+            }
+
+            return new ResultFile( javancss, objectIndex, functionIndex );
+        }
+        catch ( RuntimeException e )
+        {
+            // buffer underflow, bad name prefix or index
+            IOException ioe = new IOException( "Corrupt JavaNCSS result file: " + source );
+            ioe.initCause( e );
+            throw ioe;
+        }
+    }
+
+    /**
+     * Reads a table section in chunks of rows, so a memory budget
+     * of the table is respected while it fills up.
+     */
+    private static MetricTable readTable( ByteBuffer buffer, long memoryBudget )
+    {
+        int rows = readVarint( buffer );
+
+        // find where each column starts, the name column comes first
+        int[] positions = new int[ MetricTable.COLUMNS + 1 ];
+        positions[ 0 ] = buffer.position();
+        for ( int row = 0; row < rows; row++ )
+        {
+            readVarint( buffer );
+            int length = readVarint( buffer );
+            buffer.position( buffer.position() + length );
+        }
+        for ( int column = 1; column < positions.length; column++ )
+        {
+            positions[ column ] = buffer.position();
+            for ( int row = 0; row < rows; row++ )
+            {
+                readVarint( buffer );
+            }
+        }
+        int end = buffer.position();
+
+        MetricTable table = new MetricTable();
+        table.setMemoryBudget( memoryBudget );
+        int chunk = Math.min( rows, TABLE_CHUNK );
+        String[] names = new String[ chunk ];
+        int[][] columns = new int[ MetricTable.COLUMNS ][ chunk ];
+        String previous = "";
+        for ( int first = 0; first < rows; first += chunk )
+        {
+            int count = Math.min( chunk, rows - first );
+            buffer.position( positions[ 0 ] );
+            for ( int row = 0; row < count; row++ )
+            {
+                names[ row ] = readName( buffer, previous );
+                previous = names[ row ];
+            }
+            positions[ 0 ] = buffer.position();
+            for ( int column = 0; column < MetricTable.COLUMNS; column++ )
+            {
+                buffer.position( positions[ column + 1 ] );
+                for ( int row = 0; row < count; row++ )
+                {
+                    columns[ column ][ row ] = readSigned( buffer );
+                }
+                positions[ column + 1 ] = buffer.position();
+            }
+            table.addRows( names, columns, count );
+        }
+        buffer.position( end );
+
+        return table;
+    }
+
+    /**
+     * Reads a name front coded against <code>previous</code>.
+     */
+    private static String readName( ByteBuffer buffer, String previous )
+    {
+        int shared = readVarint( buffer );
+        int length = readVarint( buffer );
+        ByteBuffer suffix = buffer.slice();
+        suffix.limit( length );
+        buffer.position( buffer.position() + length );
+
+        return previous.substring( 0, shared ) + UTF8.decode( suffix ).toString();
+    }
+
+    private static Distributions readDistributions( ByteBuffer buffer )
+    {
+        Distributions distributions = new Distributions();
+        readHistogram( buffer, distributions.functionNcss );
+        readHistogram( buffer, distributions.functionCcn );
+        readHistogram( buffer, distributions.objectNcss );
+
+        return distributions;
+    }
+
+    private static void readHistogram( ByteBuffer buffer, LogHistogram histogram )
+    {
+        int max = readVarint( buffer );
+        int buckets = readVarint( buffer );
+        int bucket = -1;
+        for ( int i = 0; i < buckets; i++ )
+        {
+            bucket += readVarint( buffer );
+            if ( bucket < 0 || bucket >= LogHistogram.MAX_BUCKETS )
+            {
+                throw new IllegalArgumentException( "Bad histogram bucket " + bucket );
+            }
+            histogram.add( bucket, readVarint( buffer ) );
+        }
+        histogram.setMax( max );
+    }
+
+    private static int[] readIndex( ByteBuffer buffer )
+    {
+        int[] index = new int[ buffer.getInt() ];
+        buffer.asIntBuffer().get( index );
+        buffer.position( buffer.position() + index.length * 4 );
+
+        return index;
+    }
+
+    /**
+     * Saves the result of <code>javancss</code> including the name index.
+     */
+    public static void save( Javancss javancss, File file )
+        throws IOException
+    {
+        save( javancss, file, true );
+    }
+
+    public static void save( Javancss javancss, File file, boolean withIndex )
+        throws IOException
+    {
+        List<PackageMetric> vPackageMetrics = javancss.getPackageMetrics();
+        if ( vPackageMetrics == null )
+        {
+            vPackageMetrics = new ArrayList<PackageMetric>();
+        }
+        MetricTable objectTable = javancss.getObjectTable();
+        MetricTable functionTable = javancss.getFunctionTable();
+
+        RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+        try
+        {
+            raf.setLength( 0 );
+            FileChannel channel = raf.getChannel();
+            channel.position( HEADER_SIZE );
+            CountingOutputStream out = new CountingOutputStream( new BufferedOutputStream( Channels.newOutputStream( channel ), 1 << 16 ), HEADER_SIZE );
+
+            long[] offsets = new long[ 4 ];
+
+            offsets[ 0 ] = out.getCount();
+            writeVarint( out, vPackageMetrics.size() );
+            String previous = "";
+            for ( PackageMetric metric : vPackageMetrics )
+            {
+                writeName( out, metric.name, previous );
+                previous = metric.name;
+                writeSigned( out, metric.classes );
+                writeSigned( out, metric.functions );
+                writeSigned( out, metric.ncss );
+                writeSigned( out, metric.javadocs );
+                writeSigned( out, metric.javadocsLn );
+                writeSigned( out, metric.singleLn );
+                writeSigned( out, metric.multiLn );
+            }
+
+            offsets[ 1 ] = out.getCount();
+            writeTable( out, objectTable );
+            offsets[ 2 ] = out.getCount();
+            writeTable( out, functionTable );
+            writeDistributions( out, javancss.getDistributions() );
+            for ( PackageMetric metric : vPackageMetrics )
+            {
+                writeDistributions( out, metric.distributions );
+            }
+
+            if ( withIndex )
+            {
+                offsets[ 3 ] = out.getCount();
+                writeIndex( out, objectTable );
+                writeIndex( out, functionTable );
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+            header.put( MAGIC );
+            header.putShort( (short) VERSION );
+            header.putShort( (short) ( FLAG_DISTRIBUTIONS | ( withIndex ? FLAG_INDEX : 0 ) ) );
+            header.putInt( javancss.getNcss() );
+            header.putInt( javancss.getLOC() );
+            header.putInt( javancss.getJvdc() );
+            header.putInt( javancss.getJdcl() );
+            header.putInt( javancss.getSl() );
+            header.putInt( javancss.getMl() );
+            for ( long offset : offsets )
+            {
+                header.putLong( offset );
+            }
+            header.flip();
+            channel.position( 0 );
+            while ( header.hasRemaining() )
+            {
+                channel.write( header );
+            }
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    /**
+     * Writes <code>sName</code> front coded against <code>previous</code>.
+     */
+    private static void writeName( OutputStream out, String sName, String previous )
+        throws IOException
+    {
+        int shared = 0;
+        int max = Math.min( previous.length(), sName.length() );
+        while ( shared < max && previous.charAt( shared ) == sName.charAt( shared ) )
+        {
+            shared++;
+        }
+        if ( shared > 0 && Character.isHighSurrogate( sName.charAt( shared - 1 ) ) )
+        {
+            // never split a surrogate pair
+            shared--;
+        }
+        ByteBuffer suffix = UTF8.encode( sName.substring( shared ) );
+        writeVarint( out, shared );
+        writeVarint( out, suffix.remaining() );
+        out.write( suffix.array(), suffix.arrayOffset() + suffix.position(), suffix.remaining() );
+    }
+
+    private static void writeTable( OutputStream out, MetricTable table )
+        throws IOException
+    {
+        writeVarint( out, table.size() );
+        String previous = "";
+        for ( int row = 0; row < table.size(); row++ )
+        {
+            String sName = table.getName( row );
+            writeName( out, sName, previous );
+            previous = sName;
+        }
+        for ( int column = 0; column < MetricTable.COLUMNS; column++ )
+        {
+            for ( int row = 0; row < table.size(); row++ )
+            {
+                writeSigned( out, table.get( column, row ) );
+            }
+        }
+    }
+
+    private static void writeDistributions( OutputStream out, Distributions distributions )
+        throws IOException
+    {
+        writeHistogram( out, distributions.functionNcss );
+        writeHistogram( out, distributions.functionCcn );
+        writeHistogram( out, distributions.objectNcss );
+    }
+
+    private static void writeHistogram( OutputStream out, LogHistogram histogram )
+        throws IOException
+    {
+        int buckets = 0;
+        for ( int bucket = 0; bucket < histogram.getBuckets(); bucket++ )
+        {
+            if ( histogram.getBucketCount( bucket ) != 0 )
+            {
+                buckets++;
+            }
+        }
+        writeVarint( out, histogram.getMax() );
+        writeVarint( out, buckets );
+        int previous = -1;
+        for ( int bucket = 0; bucket < histogram.getBuckets(); bucket++ )
+        {
+            long count = histogram.getBucketCount( bucket );
+            if ( count != 0 )
+            {
+                writeVarint( out, bucket - previous );
+                writeVarint( out, (int) Math.min( count, Integer.MAX_VALUE ) );
+                previous = bucket;
+            }
+        }
+    }
+
+    private static void writeIndex( OutputStream out, MetricTable table )
+        throws IOException
+    {
+        int[] rows = table.getNameOrder();
+        writeInt( out, rows.length );
+        for ( int row : rows )
+        {
+            writeInt( out, row );
+        }
+    }
+
+    private static void writeInt( OutputStream out, int value )
+        throws IOException
+    {
+        out.write( value >>> 24 );
+        out.write( value >>> 16 );
+        out.write( value >>> 8 );
+        out.write( value );
+    }
+
+    static void writeVarint( OutputStream out, int value )
+        throws IOException
+    {
+        while ( ( value & ~0x7F ) != 0 )
+        {
+            out.write( ( value & 0x7F ) | 0x80 );
+            value >>>= 7;
+        }
+        out.write( value );
+    }
+
+    static void writeSigned( OutputStream out, int value )
+        throws IOException
+    {
+        writeVarint( out, ( value << 1 ) ^ ( value >> 31 ) );
+    }
+
+    static int readVarint( ByteBuffer buffer )
+    {
+        int value = 0;
+        for ( int shift = 0; shift < 35; shift += 7 )
+        {
+            int b = buffer.get();
+            value |= ( b & 0x7F ) << shift;
+            if ( ( b & 0x80 ) == 0 )
+            {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException( "Malformed varint" );
+    }
+
+    static int readSigned( ByteBuffer buffer )
+    {
+        int value = readVarint( buffer );
+
+        return ( value >>> 1 ) ^ -( value & 1 );
+    }
+
+    /**
+     * Keeps track of the file position while writing through a buffer.
+     */
+    private static class CountingOutputStream
+        extends FilterOutputStream
+    {
+        private long _count;
+
+        CountingOutputStream( OutputStream out, long start )
+        {
+            super( out );
+            _count = start;
+        }
+
+        long getCount()
+        {
+            return _count;
+        }
+
+        @Override
+        public void write( int b )
+            throws IOException
+        {
+            out.write( b );
+            _count++;
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len )
+            throws IOException
+        {
+            out.write( b, off, len );
+            _count += len;
+        }
+    }
+}
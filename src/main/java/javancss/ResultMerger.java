@@ -0,0 +1,265 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Combines partial results, e.g. from runs over disjoint sets of
+ * source files on several machines, into one result.<p>
+ *
+ * Packages with the same name are added up with PackageMetric.add,
+ * the object and function lists of all inputs are merged into one
+ * list ordered by name (rows with equal names, e.g. the same class
+ * in two source trees, are ordered by their metrics) and the
+ * program NCSS, LOC and comment lines are summed up. The javadoc
+ * count is that of the last input, as a measurement keeps that of
+ * its last file. The distributions of the
+ * project and of each package are added up as well. Merging the shards of a
+ * source tree gives the same result as merging the single result
+ * of the whole tree.
+ *
+ * @version $Id$
+ */
+public class ResultMerger
+{
+    private ResultMerger()
+    {
+    }
+
+    /**
+     * Reads a result written with -save or an XML report written
+     * with -xml, the format is detected from the file content.
+     */
+    public static Javancss read( File file )
+        throws IOException
+    {
+        Javancss javancss = new Javancss();
+        read( file, javancss );
+
+        return javancss;
+    }
+
+    /**
+     * Reads <code>file</code> into <code>javancss</code>, using its
+     * memory budget. Returns the result file when the input was a
+     * binary result, null for an XML report.
+     */
+    static ResultFile read( File file, Javancss javancss )
+        throws IOException
+    {
+        if ( isResultFile( file ) )
+        {
+            return ResultFile.read( file, javancss );
+        }
+        XmlResultReader.read( file, javancss );
+
+        return null;
+    }
+
+    private static boolean isResultFile( File file )
+        throws IOException
+    {
+        InputStream in = new FileInputStream( file );
+        try
+        {
+            byte[] magic = new byte[ 4 ];
+            int read = 0;
+            while ( read < magic.length )
+            {
+                int n = in.read( magic, read, magic.length - read );
+                if ( n < 0 )
+                {
+                    return false;
+                }
+                read += n;
+            }
+
+            return new String( magic, "ISO-8859-1" ).equals( "JNCS" );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    public static Javancss merge( File[] files )
+        throws IOException
+    {
+        List<Javancss> vResults = new ArrayList<Javancss>();
+        try
+        {
+            for ( File file : files )
+            {
+                vResults.add( read( file ) );
+            }
+
+            return merge( vResults );
+        }
+        finally
+        {
+            for ( Javancss result : vResults )
+            {
+                result.close();
+            }
+        }
+    }
+
+    public static Javancss merge( List<Javancss> vResults )
+    {
+        Javancss merged = new Javancss();
+        merge( vResults, merged );
+
+        return merged;
+    }
+
+    /**
+     * Merges <code>vResults</code> into <code>target</code>.
+     */
+    static void merge( List<Javancss> vResults, Javancss target )
+    {
+        int ncss = 0;
+        int loc = 0;
+        int jvdc = 0;
+        int jdcl = 0;
+        int sl = 0;
+        int ml = 0;
+        Map<String, PackageMetric> htPackages = new HashMap<String, PackageMetric>();
+        List<MetricTable> vObjectTables = new ArrayList<MetricTable>();
+        List<MetricTable> vFunctionTables = new ArrayList<MetricTable>();
+        Distributions distributions = new Distributions();
+        for ( Javancss result : vResults )
+        {
+            ncss += result.getNcss();
+            loc += result.getLOC();
+            jvdc = result.getJvdc();
+            jdcl += result.getJdcl();
+            sl += result.getSl();
+            ml += result.getMl();
+            // before the packages, which get theirs computed with it if needed
+            distributions.add( result.getDistributions() );
+            if ( result.getPackageMetrics() != null )
+            {
+                for ( PackageMetric pkm : result.getPackageMetrics() )
+                {
+                    PackageMetric sum = htPackages.get( pkm.name );
+                    if ( sum == null )
+                    {
+                        sum = new PackageMetric();
+                        sum.name = pkm.name;
+                        htPackages.put( pkm.name, sum );
+                    }
+                    sum.add( pkm );
+                }
+            }
+            vObjectTables.add( result.getObjectTable() );
+            vFunctionTables.add( result.getFunctionTable() );
+        }
+
+        List<PackageMetric> vPackageMetrics = new ArrayList<PackageMetric>( htPackages.values() );
+        Collections.sort( vPackageMetrics );
+
+        MetricTable objectTable = new MetricTable();
+        MetricTable functionTable = new MetricTable();
+        objectTable.setMemoryBudget( target.getObjectTable().getMemoryBudget() );
+        functionTable.setMemoryBudget( target.getFunctionTable().getMemoryBudget() );
+        mergeTables( vObjectTables, objectTable );
+        mergeTables( vFunctionTables, functionTable );
+
+        target.setResult( ncss, loc, vPackageMetrics, objectTable, functionTable );
+        target.setComments( jvdc, jdcl, sl, ml );
+        target.setDistributions( distributions );
+    }
+
+    /**
+     * K-way merge of the tables, each one read in name order.
+     * Rows equal in all columns are taken in input order.
+     */
+    static void mergeTables( List<MetricTable> vTables, MetricTable target )
+    {
+        PriorityQueue<Cursor> queue = new PriorityQueue<Cursor>( Math.max( 1, vTables.size() ) );
+        List<Cursor> vCursors = new ArrayList<Cursor>();
+        try
+        {
+            for ( int input = 0; input < vTables.size(); input++ )
+            {
+                MetricTable table = vTables.get( input );
+                if ( table.size() > 0 )
+                {
+                    Cursor cursor = new Cursor( new MetricTableCursor( table ), input );
+                    vCursors.add( cursor );
+                    queue.add( cursor );
+                }
+            }
+
+            while ( !queue.isEmpty() )
+            {
+                Cursor cursor = queue.poll();
+                target.addRow( cursor.rows.getTable(), cursor.rows.getRow() );
+                cursor.rows.next();
+                if ( cursor.rows.hasRow() )
+                {
+                    queue.add( cursor );
+                }
+            }
+        }
+        finally
+        {
+            for ( Cursor cursor : vCursors )
+            {
+                cursor.rows.close();
+            }
+        }
+    }
+
+    private static class Cursor
+        implements Comparable<Cursor>
+    {
+        final MetricTableCursor rows;
+        final int input;
+
+        Cursor( MetricTableCursor rows_, int input_ )
+        {
+            rows = rows_;
+            input = input_;
+        }
+
+        public int compareTo( Cursor other )
+        {
+            int result = rows.getTable().compareRows( rows.getRow(), other.rows.getTable(), other.rows.getRow() );
+            if ( result == 0 )
+            {
+                result = input < other.input ? -1 : ( input == other.input ? 0 : 1 );
+            }
+
+            return result;
+        }
+    }
+}
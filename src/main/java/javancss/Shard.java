@@ -0,0 +1,308 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Selects the part of a file list one of <code>n</code> parallel
+ * runs has to measure.<p>
+ *
+ * Every file gets a stable hash of its path relative to the working
+ * directory (with '/' as separator, so all platforms agree). Each
+ * shard scores the file with that hash (rendezvous hashing) and the
+ * file goes to the shard with the highest score. The assignment of
+ * a file depends on nothing but its path and the number of shards,
+ * adding or removing other files never moves it.<p>
+ *
+ * With size balancing, files are placed largest first and skip to
+ * the shard with the next best score while their preferred shard
+ * would get more than 25% above the average size. Adding files then
+ * moves only few others, while shards get about the same amount of
+ * source to parse.
+ *
+ * @version $Id$
+ */
+public class Shard
+{
+    private static final double MAX_OVERLOAD = 1.25;
+
+    private final int _index;
+    private final int _count;
+    private boolean _balanceBySize = false;
+
+    /**
+     * @param index  shard number from 1 to count
+     * @param count  number of shards
+     */
+    public Shard( int index, int count )
+    {
+        if ( count < 1 || index < 1 || index > count )
+        {
+            throw new IllegalArgumentException( "Invalid shard " + index + "/" + count );
+        }
+        _index = index;
+        _count = count;
+    }
+
+    /**
+     * Parses the "i/n" notation of the -shard option.
+     */
+    public static Shard parse( String sShard )
+    {
+        int slash = sShard.indexOf( '/' );
+        if ( slash < 0 )
+        {
+            throw new IllegalArgumentException( "Invalid shard '" + sShard + "', expected i/n" );
+        }
+        try
+        {
+            return new Shard( Integer.parseInt( sShard.substring( 0, slash ).trim() )
+                              , Integer.parseInt( sShard.substring( slash + 1 ).trim() ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            throw new IllegalArgumentException( "Invalid shard '" + sShard + "', expected i/n" );
+        }
+    }
+
+    public int getIndex()
+    {
+        return _index;
+    }
+
+    public int getCount()
+    {
+        return _count;
+    }
+
+    public void setBalanceBySize( boolean balanceBySize )
+    {
+        _balanceBySize = balanceBySize;
+    }
+
+    public boolean isBalanceBySize()
+    {
+        return _balanceBySize;
+    }
+
+    /**
+     * Returns the files of this shard, in their original order.
+     */
+    public List<File> select( List<File> vFiles )
+    {
+        int[] assignment = assign( vFiles );
+        List<File> vSelected = new ArrayList<File>();
+        for ( int i = 0; i < assignment.length; i++ )
+        {
+            if ( assignment[ i ] == _index - 1 )
+            {
+                vSelected.add( vFiles.get( i ) );
+            }
+        }
+
+        return vSelected;
+    }
+
+    /**
+     * Returns the zero based shard of every file.
+     */
+    int[] assign( List<File> vFiles )
+    {
+        final long[] hashes = new long[ vFiles.size() ];
+        for ( int i = 0; i < hashes.length; i++ )
+        {
+            hashes[ i ] = hash( relativePath( vFiles.get( i ) ) );
+        }
+
+        int[] assignment = new int[ hashes.length ];
+        if ( !_balanceBySize )
+        {
+            for ( int i = 0; i < hashes.length; i++ )
+            {
+                assignment[ i ] = preferredShards( hashes[ i ] )[ 0 ];
+            }
+
+            return assignment;
+        }
+
+        final long[] sizes = new long[ hashes.length ];
+        long total = 0;
+        long largest = 0;
+        Integer[] order = new Integer[ hashes.length ];
+        for ( int i = 0; i < hashes.length; i++ )
+        {
+            sizes[ i ] = vFiles.get( i ).length();
+            total += sizes[ i ];
+            largest = Math.max( largest, sizes[ i ] );
+            order[ i ] = Integer.valueOf( i );
+        }
+        // largest first, equal sizes in hash order, so the listing order does not matter
+        Arrays.sort( order, new Comparator<Integer>()
+        {
+            public int compare( Integer i1, Integer i2 )
+            {
+                long s1 = sizes[ i1.intValue() ];
+                long s2 = sizes[ i2.intValue() ];
+                if ( s1 != s2 )
+                {
+                    return s1 > s2 ? -1 : 1;
+                }
+                long h1 = hashes[ i1.intValue() ];
+                long h2 = hashes[ i2.intValue() ];
+
+                return h1 < h2 ? -1 : ( h1 == h2 ? 0 : 1 );
+            }
+        } );
+
+        double capacity = Math.max( MAX_OVERLOAD * total / _count, largest );
+        long[] loads = new long[ _count ];
+        for ( Integer file : order )
+        {
+            int i = file.intValue();
+            int[] shards = preferredShards( hashes[ i ] );
+            int chosen = -1;
+            for ( int shard : shards )
+            {
+                if ( loads[ shard ] + sizes[ i ] <= capacity )
+                {
+                    chosen = shard;
+                    break;
+                }
+            }
+            if ( chosen < 0 )
+            {
+                chosen = shards[ 0 ];
+                for ( int shard : shards )
+                {
+                    if ( loads[ shard ] < loads[ chosen ] )
+                    {
+                        chosen = shard;
+                    }
+                }
+            }
+            loads[ chosen ] += sizes[ i ];
+            assignment[ i ] = chosen;
+        }
+
+        return assignment;
+    }
+
+    /**
+     * Shards ordered by their score for the given file hash, best first.
+     */
+    private int[] preferredShards( long hash )
+    {
+        final long[] scores = new long[ _count ];
+        Integer[] shards = new Integer[ _count ];
+        for ( int shard = 0; shard < _count; shard++ )
+        {
+            scores[ shard ] = mix( hash + ( shard + 1 ) * 0x9E3779B97F4A7C15L );
+            shards[ shard ] = Integer.valueOf( shard );
+        }
+        Arrays.sort( shards, new Comparator<Integer>()
+        {
+            public int compare( Integer s1, Integer s2 )
+            {
+                long score1 = scores[ s1.intValue() ];
+                long score2 = scores[ s2.intValue() ];
+
+                return score1 > score2 ? -1 : ( score1 == score2 ? s1.compareTo( s2 ) : 1 );
+            }
+        } );
+
+        int[] result = new int[ _count ];
+        for ( int i = 0; i < _count; i++ )
+        {
+            result[ i ] = shards[ i ].intValue();
+        }
+
+        return result;
+    }
+
+    /**
+     * Path relative to the working directory with '/' separators,
+     * or the canonical path for files outside of it.
+     */
+    static String relativePath( File file )
+    {
+        String sPath;
+        String sBase;
+        try
+        {
+            sPath = file.getCanonicalPath();
+            sBase = new File( System.getProperty( "user.dir" ) ).getCanonicalPath();
+        }
+        catch ( IOException e )
+        {
+            sPath = file.getAbsolutePath();
+            sBase = new File( System.getProperty( "user.dir" ) ).getAbsolutePath();
+        }
+        if ( !sBase.endsWith( File.separator ) )
+        {
+            sBase += File.separator;
+        }
+        if ( sPath.startsWith( sBase ) )
+        {
+            sPath = sPath.substring( sBase.length() );
+        }
+
+        return sPath.replace( File.separatorChar, '/' );
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the UTF-8 bytes.
+     */
+    static long hash( String sPath )
+    {
+        byte[] bytes;
+        try
+        {
+            bytes = sPath.getBytes( "UTF-8" );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( "UTF-8 not supported" );
+        }
+        long hash = 0xcbf29ce484222325L;
+        for ( byte b : bytes )
+        {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+
+        return hash;
+    }
+
+    private static long mix( long z )
+    {
+        z = ( z ^ ( z >>> 30 ) ) * 0xBF58476D1CE4E5B9L;
+        z = ( z ^ ( z >>> 27 ) ) * 0x94D049BB133111EBL;
+
+        return z ^ ( z >>> 31 );
+    }
+}
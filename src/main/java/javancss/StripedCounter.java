@@ -0,0 +1,79 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter for values added from many threads at once. Each thread
+ * adds to one of STRIPES cells picked by its id, the cells lie on
+ * different cache lines, so threads rarely contend for a cell; the
+ * value is the sum of all cells.
+ *
+ * @version $Id$
+ */
+class StripedCounter
+{
+    static final int STRIPES = 16;
+
+    /**
+     * Longs per cache line, only the first of each line is used.
+     */
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray _cells = new AtomicLongArray( STRIPES * PADDING );
+
+    static int stripe()
+    {
+        long id = Thread.currentThread().getId();
+
+        return (int) ( id ^ ( id >>> 16 ) ) & ( STRIPES - 1 );
+    }
+
+    void add( long delta )
+    {
+        _cells.addAndGet( stripe() * PADDING, delta );
+    }
+
+    void increment()
+    {
+        add( 1 );
+    }
+
+    long get()
+    {
+        long sum = 0;
+        for ( int stripe = 0; stripe < STRIPES; stripe++ )
+        {
+            sum += _cells.get( stripe * PADDING );
+        }
+
+        return sum;
+    }
+
+    void reset()
+    {
+        for ( int stripe = 0; stripe < STRIPES; stripe++ )
+        {
+            _cells.set( stripe * PADDING, 0 );
+        }
+    }
+}
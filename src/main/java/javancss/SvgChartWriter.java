@@ -0,0 +1,275 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+
+/**
+ * Writes the bar charts of xslt/svg as SVG files, without going
+ * through the XML output.<p>
+ *
+ * The stylesheets count the units in each of eleven value ranges
+ * with one XPath query per range. Here one pass over the function
+ * table and the package list collects how often each value occurs,
+ * and the ranges are counted from these frequencies. As in the
+ * stylesheets, the ranges are <code>step</code> wide, where
+ * <code>step = floor(4 * average / 10) + 1</code>; the last range is
+ * open ended.
+ *
+ * @version $Id$
+ */
+public class SvgChartWriter
+{
+    public static final String CHART_CCN = "chart_ccn.svg";
+    public static final String CHART_NCSS = "chart_ncss.svg";
+    public static final String CHART_NCSS_PACKAGE = "chart_ncss_package.svg";
+    public static final String CHART_FUNCTION_PACKAGE = "chart_function_package.svg";
+
+    private static final int BARS = 11;
+
+    // layout of the stylesheets
+    private static final int DX = 35;
+    private static final int DY = 220;
+    private static final int X0 = 464;
+
+    /**
+     * How often each value occurs. Small values are counted in an
+     * array, the few large ones in a map.
+     */
+    static class Distribution
+    {
+        private static final int DENSE_VALUES = 4096;
+
+        private final long[] _aCounts = new long[ DENSE_VALUES ];
+        private final TreeMap<Integer, long[]> _htLarge = new TreeMap<Integer, long[]>();
+        private long _count = 0;
+        private long _sum = 0;
+
+        void add( int value )
+        {
+            value = Math.max( 0, value );
+            if ( value < DENSE_VALUES )
+            {
+                _aCounts[ value ]++;
+            }
+            else
+            {
+                long[] count = _htLarge.get( value );
+                if ( count == null )
+                {
+                    count = new long[ 1 ];
+                    _htLarge.put( value, count );
+                }
+                count[ 0 ]++;
+            }
+            _count++;
+            _sum += value;
+        }
+
+        long getCount()
+        {
+            return _count;
+        }
+
+        long getSum()
+        {
+            return _sum;
+        }
+
+        double getAverage()
+        {
+            return _count > 0 ? (double) _sum / _count : 0.0;
+        }
+
+        /**
+         * Width of the value ranges of the chart.
+         */
+        long getStep()
+        {
+            return (long) Math.floor( 4 * getAverage() / 10 ) + 1;
+        }
+
+        /**
+         * Number of values <code>&gt;= from</code> and <code>&lt; to</code>.
+         */
+        long count( long from, long to )
+        {
+            long count = 0;
+            for ( long value = Math.max( 0, from ); value < Math.min( to, DENSE_VALUES ); value++ )
+            {
+                count += _aCounts[ (int) value ];
+            }
+            if ( to > DENSE_VALUES )
+            {
+                int fromKey = (int) Math.min( Integer.MAX_VALUE, Math.max( from, DENSE_VALUES ) );
+                int toKey = (int) Math.min( Integer.MAX_VALUE, to );
+                for ( long[] large : _htLarge.subMap( fromKey, true, toKey, to > Integer.MAX_VALUE ).values() )
+                {
+                    count += large[ 0 ];
+                }
+            }
+
+            return count;
+        }
+    }
+
+    private SvgChartWriter()
+    {
+    }
+
+    /**
+     * Writes the four charts into <code>directory</code>, under the
+     * names of the stylesheets with the extension svg.
+     */
+    public static void writeCharts( Javancss javancss, File directory )
+        throws IOException
+    {
+        Distribution functionNcss = new Distribution();
+        Distribution functionCcn = new Distribution();
+        MetricTable functionTable = javancss.getFunctionTable();
+        for ( int row = 0; row < functionTable.size(); row++ )
+        {
+            functionNcss.add( functionTable.getNcss( row ) );
+            functionCcn.add( functionTable.getCcn( row ) );
+        }
+
+        Distribution packageNcss = new Distribution();
+        Distribution packageFunctions = new Distribution();
+        List<PackageMetric> vPackageMetrics = javancss.getPackageMetrics();
+        for ( PackageMetric pkm : vPackageMetrics )
+        {
+            packageNcss.add( pkm.ncss );
+            packageFunctions.add( pkm.functions );
+        }
+
+        if ( !directory.isDirectory() && !directory.mkdirs() )
+        {
+            throw new IOException( "Could not create directory " + directory );
+        }
+        // with -top only the kept entries are charted, say so in the title
+        String sTop = javancss.getTop() > 0 ? ", top " + javancss.getTop() : "";
+        writeChart( new File( directory, CHART_CCN ), functionCcn
+                    , "Distribution Cyclomatic", "Complexity per Function (CCN)" + sTop, "Functions", "Cyclomatic Complexity" );
+        writeChart( new File( directory, CHART_NCSS ), functionNcss
+                    , "Distribution Java Source Statements", "per Function (NCSS)" + sTop, "Functions", "Java NCSS" );
+        writeChart( new File( directory, CHART_NCSS_PACKAGE ), packageNcss
+                    , "Distribution Java Source Statements", "per Package (NCSS)" + sTop, "Packages", "Java NCSS" );
+        writeChart( new File( directory, CHART_FUNCTION_PACKAGE ), packageFunctions
+                    , "Distribution Functions", "per Package" + sTop, "Packages", "Functions" );
+    }
+
+    private static void writeChart( File file, Distribution distribution
+                                    , String sTitle1, String sTitle2, String sLabelX, String sLabelY )
+        throws IOException
+    {
+        Writer w = new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" );
+        try
+        {
+            writeChart( w, distribution, sTitle1, sTitle2, sLabelX, sLabelY );
+        }
+        finally
+        {
+            w.close();
+        }
+    }
+
+    static void writeChart( Writer w, Distribution distribution
+                            , String sTitle1, String sTitle2, String sLabelX, String sLabelY )
+        throws IOException
+    {
+        // format-number() of XSLT rounds half to even, like DecimalFormat
+        DecimalFormat averageFormat = new DecimalFormat( "0.00", new DecimalFormatSymbols( Locale.US ) );
+        DecimalFormat widthFormat = new DecimalFormat( "0", new DecimalFormatSymbols( Locale.US ) );
+        averageFormat.setRoundingMode( RoundingMode.HALF_EVEN );
+        widthFormat.setRoundingMode( RoundingMode.HALF_EVEN );
+
+        StringBuilder sb = new StringBuilder( 8192 );
+        sb.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" );
+        sb.append( "<!DOCTYPE svg PUBLIC \"-//W3C//DTD SVG 1.0//EN\" \"http://www.w3.org/TR/2001/REC-SVG-20010904/DTD/svg10.dtd\">\n" );
+        sb.append( "<svg width=\"436pt\" height=\"327pt\" viewBox=\"0 0 4360 3270\">\n" );
+        sb.append( "<rect x=\"40\" y=\"30\" width=\"4320\" height=\"3240\" style=\"fill:silver;\"/>\n" );
+        sb.append( "<rect x=\"3\" y=\"3\" width=\"4314\" height=\"3234\" style=\"fill:white; stroke-width:6; stroke:black\"/>\n" );
+        sb.append( "<g style=\"fill:#FFFFFF; stroke-width:15; stroke:black\"><rect x=\"40\" y=\"40\" width=\"4240\" height=\"3160\"/></g>\n" );
+        sb.append( "<g style=\"fill:#000080; font-family:Times New Roman;font-style:italic; font-size:180; text-anchor:end;\">" )
+          .append( "<text id=\"Heading\" x=\"4100\" y=\"256\">" ).append( sTitle1 ).append( "</text>" )
+          .append( "<text x=\"4100\" y=\"456\">" ).append( sTitle2 ).append( "</text></g>\n" );
+        sb.append( "<g transform=\"translate(190 640) rotate(-90)\" style=\"fill:#008080; font-family:Times New Roman;font-size:100; text-anchor:end; \">" )
+          .append( "<text>" ).append( sLabelY ).append( "</text></g>\n" );
+        sb.append( "<g style=\"fill:#008000; font-family:Arial;font-size:100;\">" )
+          .append( "<text id=\"Notes\" x=\"2535\" y=\"1080\">Average " ).append( sLabelY ).append( " = " )
+          .append( averageFormat.format( distribution.getAverage() ) ).append( "</text>" )
+          .append( "<text x=\"2535\" y=\"1200\">Total " ).append( sLabelX ).append( " = " )
+          .append( distribution.getCount() ).append( "</text>" )
+          .append( "<text x=\"2535\" y=\"1320\">Total " ).append( sLabelY ).append( " = " )
+          .append( distribution.getSum() ).append( "</text></g>\n" );
+        sb.append( "<text x=\"4100\" y=\"3110\" style=\"fill:#008080; font-family:Times New Roman;font-size:100; text-anchor:end;\">" )
+          .append( sLabelX ).append( "</text>\n" );
+
+        // percentages on the x axis
+        sb.append( "<g style=\"font-family:Times New Roman;font-size:80; text-anchor:middle;\">" );
+        for ( int percent = 0; percent <= 100; percent += 10 )
+        {
+            sb.append( "<text x=\"" ).append( X0 + percent * DX ).append( "\" y=\"2970\">" )
+              .append( percent == 0 ? " 0" : String.valueOf( percent ) ).append( "%</text>" );
+        }
+        sb.append( "</g>\n" );
+
+        // x axis with ticks, y axis without
+        sb.append( "<path style=\"stroke:#000000; stroke-width:6\" d=\"" );
+        for ( int percent = 0; percent <= 100; percent += 10 )
+        {
+            sb.append( "M " ).append( X0 + percent * DX ).append( ",2842 L " ).append( X0 + percent * DX ).append( ",2881 z " );
+        }
+        sb.append( " M " ).append( X0 + 100 * DX ).append( ",2842 L " ).append( X0 ).append( ",2842 z\"/>\n" );
+        sb.append( "<path style=\"stroke:#000000; stroke-width:6\" d=\"M " ).append( X0 ).append( ",2842 L " )
+          .append( X0 ).append( ",300 z\"/>\n" );
+
+        long step = distribution.getStep();
+        for ( int bar = 0; bar < BARS; bar++ )
+        {
+            long count = bar < BARS - 1 ? distribution.count( step * bar, step * ( bar + 1 ) )
+                                        : distribution.count( step * bar, Long.MAX_VALUE );
+            double p = distribution.getCount() > 0 ? (double) count / distribution.getCount() : 0.0;
+            int y = 2842 - bar * DY;
+
+            sb.append( "<path style=\"stroke:#000000; stroke-width:6\" d=\"M " ).append( X0 - 30 ).append( ',' ).append( y )
+              .append( " L " ).append( X0 - 1 ).append( ',' ).append( y ).append( " z\"/>\n" );
+            sb.append( "<g style=\"font-family:Times New Roman;font-size:80; text-anchor:end;\"><text x=\"" ).append( X0 - 40 )
+              .append( "\" y=\"" ).append( y ).append( "\">" ).append( step * bar ).append( "</text></g>\n" );
+            sb.append( "<g style=\"fill:#DBDBED;stroke-width:4; stroke:black\"><rect x=\"" ).append( X0 ).append( "\" y=\"" )
+              .append( y - 176 - 24 ).append( "\" width=\"" ).append( widthFormat.format( p * DX * 100 ) )
+              .append( "\" height=\"" ).append( DY - 44 ).append( "\"/></g>\n" );
+        }
+        sb.append( "</svg>\n" );
+
+        w.write( sb.toString() );
+    }
+}
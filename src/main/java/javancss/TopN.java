@@ -0,0 +1,163 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the <code>n</code> metrics with the highest value of one
+ * metric out of any number offered, using a bounded heap, so memory
+ * stays O(n) however many metrics pass through.<p>
+ *
+ * Metrics with equal values are ranked by name, then by the order
+ * they were offered in. Packages and objects carry no CCN, ranking
+ * them by CCN ranks them by NCSS.
+ *
+ * @version $Id$
+ */
+public class TopN<T extends Metric>
+{
+    public static final String NCSS = "ncss";
+    public static final String CCN = "ccn";
+    public static final String JAVADOCS = "javadocs";
+
+    private final int _n;
+    private final String _sBy;
+    private final PriorityQueue<Entry<T>> _heap;
+    private long _offered = 0;
+
+    /**
+     * @param n    number of metrics to keep
+     * @param sBy  one of "ncss", "ccn" or "javadocs"
+     */
+    public TopN( int n, String sBy )
+    {
+        if ( n < 1 )
+        {
+            throw new IllegalArgumentException( "Invalid number of entries: " + n );
+        }
+        checkBy( sBy );
+        _n = n;
+        _sBy = sBy;
+        _heap = new PriorityQueue<Entry<T>>( Math.min( n, 1024 ) + 1 );
+    }
+
+    static void checkBy( String sBy )
+    {
+        if ( !NCSS.equals( sBy ) && !CCN.equals( sBy ) && !JAVADOCS.equals( sBy ) )
+        {
+            throw new IllegalArgumentException( "Invalid metric '" + sBy + "', expected ncss, ccn or javadocs" );
+        }
+    }
+
+    private int value( Metric metric )
+    {
+        if ( JAVADOCS.equals( _sBy ) )
+        {
+            return metric.javadocs;
+        }
+        if ( CCN.equals( _sBy ) && metric instanceof FunctionMetric )
+        {
+            return ( (FunctionMetric) metric ).ccn;
+        }
+
+        return metric.ncss;
+    }
+
+    public void offer( T metric )
+    {
+        Entry<T> entry = new Entry<T>( metric, value( metric ), _offered++ );
+        if ( _heap.size() < _n )
+        {
+            _heap.add( entry );
+        }
+        else if ( entry.compareTo( _heap.peek() ) > 0 )
+        {
+            _heap.poll();
+            _heap.add( entry );
+        }
+    }
+
+    public void offerAll( List<? extends T> vMetrics )
+    {
+        for ( T metric : vMetrics )
+        {
+            offer( metric );
+        }
+    }
+
+    public int size()
+    {
+        return _heap.size();
+    }
+
+    /**
+     * Returns the kept metrics, highest value first.
+     */
+    public List<T> toList()
+    {
+        List<Entry<T>> vEntries = new ArrayList<Entry<T>>( _heap );
+        Collections.sort( vEntries, Collections.reverseOrder() );
+        List<T> vMetrics = new ArrayList<T>( vEntries.size() );
+        for ( Entry<T> entry : vEntries )
+        {
+            vMetrics.add( entry.metric );
+        }
+
+        return vMetrics;
+    }
+
+    /**
+     * Heap entry, ordered from the weakest (first evicted) to the strongest.
+     */
+    private static class Entry<T extends Metric>
+        implements Comparable<Entry<T>>
+    {
+        final T metric;
+        final int value;
+        final long sequence;
+
+        Entry( T metric_, int value_, long sequence_ )
+        {
+            metric = metric_;
+            value = value_;
+            sequence = sequence_;
+        }
+
+        public int compareTo( Entry<T> other )
+        {
+            if ( value != other.value )
+            {
+                return value < other.value ? -1 : 1;
+            }
+            int result = other.metric.name.compareTo( metric.name );
+            if ( result != 0 )
+            {
+                return result;
+            }
+
+            return sequence > other.sequence ? -1 : ( sequence == other.sequence ? 0 : 1 );
+        }
+    }
+}
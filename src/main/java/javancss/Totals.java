@@ -0,0 +1,137 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+
+package javancss;
+
+import java.util.List;
+
+/**
+ * Numbers and column sums of the functions, objects and packages of
+ * a result, the base of the averages and totals in the reports. With
+ * -top only the top entries are kept, but the totals are collected
+ * from all of them while they are offered, so the reports still show
+ * the averages and totals of the whole project.<p>
+ *
+ * The sums are indexed by the column constants of MetricTable.
+ *
+ * @version $Id$
+ */
+public class Totals
+{
+    private int _functions = 0;
+    private int _objects = 0;
+    private int _packages = 0;
+    private final long[] _functionSums = new long[ MetricTable.COLUMNS ];
+    private final long[] _objectSums = new long[ MetricTable.COLUMNS ];
+    private final long[] _packageSums = new long[ MetricTable.COLUMNS ];
+
+    public void addFunctions( List<FunctionMetric> vFunctions )
+    {
+        for ( FunctionMetric function : vFunctions )
+        {
+            add( _functionSums, function );
+            _functionSums[ MetricTable.CCN ] += function.ccn;
+        }
+        _functions += vFunctions.size();
+    }
+
+    public void addObjects( List<ObjectMetric> vObjects )
+    {
+        for ( ObjectMetric object : vObjects )
+        {
+            add( _objectSums, object );
+            _objectSums[ MetricTable.CCN ] += object.ccn;
+            _objectSums[ MetricTable.FUNCTIONS ] += object.functions;
+            _objectSums[ MetricTable.CLASSES ] += object.classes;
+        }
+        _objects += vObjects.size();
+    }
+
+    public void addPackages( List<PackageMetric> vPackages )
+    {
+        for ( PackageMetric pkm : vPackages )
+        {
+            add( _packageSums, pkm );
+            _packageSums[ MetricTable.FUNCTIONS ] += pkm.functions;
+            _packageSums[ MetricTable.CLASSES ] += pkm.classes;
+        }
+        _packages += vPackages.size();
+    }
+
+    private static void add( long[] sums, Metric metric )
+    {
+        sums[ MetricTable.NCSS ] += metric.ncss;
+        sums[ MetricTable.JAVADOCS ] += metric.javadocs;
+        sums[ MetricTable.JAVADOCS_LN ] += metric.javadocsLn;
+        sums[ MetricTable.SINGLE_LN ] += metric.singleLn;
+        sums[ MetricTable.MULTI_LN ] += metric.multiLn;
+    }
+
+    void addFunctions( MetricTable functionTable )
+    {
+        add( _functionSums, functionTable );
+        _functions += functionTable.size();
+    }
+
+    void addObjects( MetricTable objectTable )
+    {
+        add( _objectSums, objectTable );
+        _objects += objectTable.size();
+    }
+
+    private static void add( long[] sums, MetricTable table )
+    {
+        for ( int column = 0; column < MetricTable.FIRST_LINE; column++ )
+        {
+            sums[ column ] += table.sum( column );
+        }
+    }
+
+    public int getFunctions()
+    {
+        return _functions;
+    }
+
+    public long getFunctionSum( int column )
+    {
+        return _functionSums[ column ];
+    }
+
+    public int getObjects()
+    {
+        return _objects;
+    }
+
+    public long getObjectSum( int column )
+    {
+        return _objectSums[ column ];
+    }
+
+    public int getPackages()
+    {
+        return _packages;
+    }
+
+    public long getPackageSum( int column )
+    {
+        return _packageSums[ column ];
+    }
+}
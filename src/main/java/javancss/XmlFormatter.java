@@ -64,13 +64,13 @@ public class XmlFormatter
     private NumberFormat _pNumberFormat = null;
 
     private String _formatPackageMatrix( int packages
-                                         , int classesSum
-                                         , int functionsSum
-                                         , int ncssSum
-                                         , int javadocsSum                                // added by SMS
-                                         , int javadocLnSum                                // added by SMS
-                                         , int singleLnSum                                // added by SMS
-                                         , int multiLnSum                )                // added by SMS
+                                         , long classesSum
+                                         , long functionsSum
+                                         , long ncssSum
+                                         , long javadocsSum                                // added by SMS
+                                         , long javadocLnSum                                // added by SMS
+                                         , long singleLnSum                                // added by SMS
+                                         , long multiLnSum                )                // added by SMS
     {
         //NumberFormat pNumberFormat = new DecimalFormat("#,##0.00");
 
@@ -195,27 +195,8 @@ public class XmlFormatter
         w.write( "  <packages>\n" );
         List<PackageMetric> vPackageMetrics = _javancss.getPackageMetrics();
 
-        int packages = vPackageMetrics.size();
-        int classesSum = 0;
-        int functionsSum = 0;
-        int ncssSum = 0;
-        //added by SMS
-        int javadocSum = 0;
-        int javadocLnSum = 0;
-        int singleLnSum = 0;
-        int multiLnSum = 0;
-        //
         for ( PackageMetric pPackageMetric : vPackageMetrics )
         {
-            classesSum += pPackageMetric.classes;
-            functionsSum += pPackageMetric.functions;
-            ncssSum += pPackageMetric.ncss;
-            // added by SMS
-            javadocSum += pPackageMetric.javadocs;
-            javadocLnSum += pPackageMetric.javadocsLn;
-            singleLnSum += pPackageMetric.singleLn;
-            multiLnSum += pPackageMetric.multiLn;
-            //
             w.write(
                    "    <package>\n" +
                    "      <name>" + pPackageMetric.name + "</name>\n" +
@@ -226,9 +207,26 @@ public class XmlFormatter
                    "      <javadoc_lines>" + pPackageMetric.javadocsLn + "</javadoc_lines>\n" +
                    "      <single_comment_lines>" + pPackageMetric.singleLn + "</single_comment_lines>\n" +
                    "      <multi_comment_lines>" + pPackageMetric.multiLn + "</multi_comment_lines>\n" +
+                   "      <percentiles>\n" +
+                   _formatPercentile( "        ", "function_ncss", pPackageMetric.distributions.functionNcss ) +
+                   _formatPercentile( "        ", "function_ccn", pPackageMetric.distributions.functionCcn ) +
+                   _formatPercentile( "        ", "object_ncss", pPackageMetric.distributions.objectNcss ) +
+                   "      </percentiles>\n" +
                    "    </package>\n" );
         }
 
+        // of all packages, also when only the top ones are listed
+        Totals totals = _javancss.getTotals();
+        long classesSum = totals.getPackageSum( MetricTable.CLASSES );
+        long functionsSum = totals.getPackageSum( MetricTable.FUNCTIONS );
+        long ncssSum = totals.getPackageSum( MetricTable.NCSS );
+        //added by SMS
+        long javadocSum = totals.getPackageSum( MetricTable.JAVADOCS );
+        long javadocLnSum = totals.getPackageSum( MetricTable.JAVADOCS_LN );
+        long singleLnSum = totals.getPackageSum( MetricTable.SINGLE_LN );
+        long multiLnSum = totals.getPackageSum( MetricTable.MULTI_LN );
+        //
+
         w.write(
                "    <total>\n" +
                "      <classes>" + classesSum + "</classes>\n" +
@@ -240,7 +238,7 @@ public class XmlFormatter
                "      <multi_comment_lines>" + multiLnSum + "</multi_comment_lines>\n" +
                "    </total>\n" );
 
-        w.write( _formatPackageMatrix( packages
+        w.write( _formatPackageMatrix( totals.getPackages()
                                          , classesSum
                                          , functionsSum
                                          , ncssSum
@@ -252,6 +250,18 @@ public class XmlFormatter
         w.write( "  </packages>\n" );
     }
 
+    /**
+     * p50, p90, p99 and max of a distribution as attributes.
+     */
+    private static String _formatPercentile( String sIndent, String sMetric, LogHistogram histogram )
+    {
+        return sIndent + "<percentile metric=\"" + sMetric + "\""
+            + " p50=\"" + histogram.getPercentile( 0.5 ) + "\""
+            + " p90=\"" + histogram.getPercentile( 0.9 ) + "\""
+            + " p99=\"" + histogram.getPercentile( 0.99 ) + "\""
+            + " max=\"" + histogram.getMax() + "\"/>\n";
+    }
+
     private String _formatObjectResume( int objects
                                         , long lObjectSum
                                         , long lFunctionSum
@@ -281,6 +291,9 @@ public class XmlFormatter
             "      <single_comment_lines>" + _pNumberFormat.format( fAverageSL ) + "</single_comment_lines>\n" +
             "      <implementation_comment_lines>" + _pNumberFormat.format( fAverageML ) + "</implementation_comment_lines>\n" +
             "    </averages>\n" +
+            "    <percentiles>\n" +
+            _formatPercentile( "      ", "ncss", _javancss.getDistributions().objectNcss ) +
+            "    </percentiles>\n" +
             "    <ncss>" + _pNumberFormat.format( _javancss.getNcss() ) + "</ncss>\n";
 
         return sRetVal;
@@ -291,55 +304,30 @@ public class XmlFormatter
     {
         w.write( "  <objects>\n" );
 
-        List<ObjectMetric> vObjectMetrics = _javancss.getObjectMetrics();
-
-        long lFunctionSum = 0;
-        long lClassesSum  = 0;
-        long lObjectSum   = 0;
-        long lJVDCSum     = 0;
+        final MetricTable objectTable = _javancss.getObjectTable();
+        int objects = objectTable.size();
 
-        // added by REYNAUD Sebastien (LOGICA)
-        long lJVDCSL	  = 0;
-        long lSinglel	  = 0;
-        long lMultil	  = 0;
-        //
-
-        for ( ObjectMetric classMetric : vObjectMetrics )
+        ChunkedRowWriter.write( w, objects, ChunkedRowWriter.threads( objectTable, _javancss.getThreads() ), new ChunkedRowWriter.RowRenderer()
         {
-            String sClass  = classMetric.name;
-            int objectNcss = classMetric.ncss;
-            int functions  = classMetric.functions;
-            int classes    = classMetric.classes;
-            int jvdcs      = classMetric.javadocs;
-
-            // added by SMS
-            int jvdcsl     = classMetric.javadocsLn;
-            int singlel    = classMetric.singleLn;
-            int multil     = classMetric.multiLn;
-            //
-            lObjectSum   += objectNcss;
-            lFunctionSum += functions;
-            lClassesSum  += classes;
-            lJVDCSum     += jvdcs;
-
-            // added by REYNAUD Sebastien (LOGICA)
-            lJVDCSL += jvdcsl;
-            lSinglel += singlel;
-            lMultil += multil;
-            //
-
-            w.write(
-                "    <object>\n" +
-                "      <name>"      + sClass     + "</name>\n"      +
-                "      <ncss>"      + objectNcss + "</ncss>\n"      +
-                "      <functions>" + functions  + "</functions>\n" +
-                "      <classes>"   + classes    + "</classes>\n"   +
-                "      <javadocs>"  + jvdcs      + "</javadocs>\n"  +
-                "      <javadocs_lines>" + jvdcsl + "</javadocs_lines>\n" +
-                "      <single_comment_lines>" + singlel + "</single_comment_lines>\n" +
-                "      <implementation_comment_lines>" + multil + "</implementation_comment_lines>\n" +
-                "    </object>\n" );
-        }
+            public void render( Writer chunk, int fromRow, int toRow )
+                throws IOException
+            {
+                for ( int row = fromRow; row < toRow; row++ )
+                {
+                    chunk.write(
+                        "    <object>\n" +
+                        "      <name>"      + objectTable.getName( row )      + "</name>\n"      +
+                        "      <ncss>"      + objectTable.getNcss( row )      + "</ncss>\n"      +
+                        "      <functions>" + objectTable.getFunctions( row ) + "</functions>\n" +
+                        "      <classes>"   + objectTable.getClasses( row )   + "</classes>\n"   +
+                        "      <javadocs>"  + objectTable.getJavadocs( row )  + "</javadocs>\n"  +
+                        "      <javadocs_lines>" + objectTable.getJavadocsLn( row ) + "</javadocs_lines>\n" +
+                        "      <single_comment_lines>" + objectTable.getSingleLn( row ) + "</single_comment_lines>\n" +
+                        "      <implementation_comment_lines>" + objectTable.getMultiLn( row ) + "</implementation_comment_lines>\n" +
+                        "    </object>\n" );
+                }
+            }
+        } );
 
         /* Removed by REYNAUD Sebastien (LOGICA)
         sbRetVal.append( _formatObjectResume( vObjectMetrics.size()
@@ -355,14 +343,15 @@ public class XmlFormatter
 		*/
 
         // added by REYNAUD Sebastien (LOGICA)
-        w.write( _formatObjectResume( vObjectMetrics.size()
-                , lObjectSum
-                , lFunctionSum
-                , lClassesSum
-                , lJVDCSum
-                , lJVDCSL
-                , lSinglel
-                , lMultil
+        Totals totals = _javancss.getTotals();
+        w.write( _formatObjectResume( totals.getObjects()
+                , totals.getObjectSum( MetricTable.NCSS )
+                , totals.getObjectSum( MetricTable.FUNCTIONS )
+                , totals.getObjectSum( MetricTable.CLASSES )
+                , totals.getObjectSum( MetricTable.JAVADOCS )
+                , totals.getObjectSum( MetricTable.JAVADOCS_LN )
+                , totals.getObjectSum( MetricTable.SINGLE_LN )
+                , totals.getObjectSum( MetricTable.MULTI_LN )
                 ) );
         //
 
@@ -396,6 +385,10 @@ public class XmlFormatter
                        //"      <single_comment_lines>" + _pNumberFormat.format( fAverageSL ) + "</single_comment_lines>\n" +
                        //"      <implementation_comment_lines>" + _pNumberFormat.format( fAverageML ) + "</implementation_comment_lines>\n" +
                        "    </function_averages>\n" +
+                       "    <percentiles>\n" +
+                       _formatPercentile( "      ", "ncss", _javancss.getDistributions().functionNcss ) +
+                       _formatPercentile( "      ", "ccn", _javancss.getDistributions().functionCcn ) +
+                       "    </percentiles>\n" +
                        "    <ncss>" + _pNumberFormat.format( _javancss.getNcss() ) + "</ncss>\n";
 
         return sRetVal;
@@ -406,43 +399,32 @@ public class XmlFormatter
     {
         w.write( "  <functions>\n" );
 
-        List<FunctionMetric> vFunctionMetrics = _javancss.getFunctionMetrics();
+        final MetricTable functionTable = _javancss.getFunctionTable();
+        int functions = functionTable.size();
 
-        long lFunctionSum = 0;
-        long lCCNSum      = 0;
-        long lJVDCSum     = 0;
-        for ( FunctionMetric functionMetric : vFunctionMetrics )
+        ChunkedRowWriter.write( w, functions, ChunkedRowWriter.threads( functionTable, _javancss.getThreads() ), new ChunkedRowWriter.RowRenderer()
         {
-            String sFunction = functionMetric.name;
-            int functionNcss = functionMetric.ncss;
-            int functionCCN  = functionMetric.ccn;
-            int functionJVDC = functionMetric.javadocs;
-
-            // added by SMS
-            //int functionJVDCL        = ((Integer)vSingleFunctionMetrics.elementAt(FCT_JVDC_LINES)).intValue();
-            //int functionSL                = ((Integer)vSingleFunctionMetrics.elementAt(FCT_SINGLE_LINES)).intValue();
-            //int functionML                = ((Integer)vSingleFunctionMetrics.elementAt(FCT_MULTI_LINES)).intValue();
-            //
-
-            lFunctionSum += functionNcss;
-            lCCNSum      += functionCCN;
-            lJVDCSum     += functionJVDC;
-            w.write(
-                           "    <function>\n" +
-                           "      <name>" + sFunction + "</name>\n" +
-                           "      <ncss>" + functionNcss + "</ncss>\n" +
-                           "      <ccn>"  + functionCCN  + "</ccn>\n"  +
-                           "      <javadocs>" + functionJVDC + "</javadocs>\n" +
-                           //"      <javadocs_lines>" + functionJVDCL + "</javadocs_lines>\n" +
-                           //"      <single_comment_lines>" + functionSL + "</single_comment_lines>\n" +
-                           //"      <implementation_comment_lines>" + functionML + "</implementation_comment_lines>\n" +
-                           "    </function>\n" );
-        }
-
-        w.write( _formatFunctionResume( vFunctionMetrics.size()
-                                               , lFunctionSum
-                                               , lCCNSum
-                                               , lJVDCSum
+            public void render( Writer chunk, int fromRow, int toRow )
+                throws IOException
+            {
+                for ( int row = fromRow; row < toRow; row++ )
+                {
+                    chunk.write(
+                                   "    <function>\n" +
+                                   "      <name>" + functionTable.getName( row ) + "</name>\n" +
+                                   "      <ncss>" + functionTable.getNcss( row ) + "</ncss>\n" +
+                                   "      <ccn>"  + functionTable.getCcn( row )  + "</ccn>\n"  +
+                                   "      <javadocs>" + functionTable.getJavadocs( row ) + "</javadocs>\n" +
+                                   "    </function>\n" );
+                }
+            }
+        } );
+
+        Totals totals = _javancss.getTotals();
+        w.write( _formatFunctionResume( totals.getFunctions()
+                                               , totals.getFunctionSum( MetricTable.NCSS )
+                                               , totals.getFunctionSum( MetricTable.CCN )
+                                               , totals.getFunctionSum( MetricTable.JAVADOCS )
                                                , _javancss.getJdcl()
                                                , _javancss.getSl()
                                                , _javancss.getMl()
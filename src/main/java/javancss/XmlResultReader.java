@@ -0,0 +1,315 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Reads a report written by XmlFormatter back into a Javancss
+ * object. Only what the report contains comes back: objects lack
+ * CCN and first line, functions lack the comment line counts and
+ * lines of code are not part of the report at all.<p>
+ *
+ * Reports never have a document type declaration, so one is
+ * rejected, and with it any external entity.
+ *
+ * @version $Id$
+ */
+class XmlResultReader
+    extends DefaultHandler
+{
+    private final NumberFormat _pNumberFormat = NumberFormat.getInstance( Locale.US );
+
+    private final List<PackageMetric> _vPackageMetrics = new ArrayList<PackageMetric>();
+    private final MetricTable _objectTable;
+    private final MetricTable _functionTable;
+
+    private final List<String> _vPath = new ArrayList<String>();
+    private final StringBuilder _sbText = new StringBuilder();
+
+    private PackageMetric _package = null;
+    private ObjectMetric _object = null;
+    private FunctionMetric _function = null;
+
+    private int _ncss = -1;
+    private int _sectionNcss = -1;
+    private int _packageNcss = -1;
+
+    private XmlResultReader( MetricTable objectTable, MetricTable functionTable )
+    {
+        _objectTable = objectTable;
+        _functionTable = functionTable;
+    }
+
+    static void read( File file, Javancss javancss )
+        throws IOException
+    {
+        MetricTable objectTable = new MetricTable();
+        objectTable.setMemoryBudget( javancss.getObjectTable().getMemoryBudget() );
+        MetricTable functionTable = new MetricTable();
+        functionTable.setMemoryBudget( javancss.getFunctionTable().getMemoryBudget() );
+        XmlResultReader reader = new XmlResultReader( objectTable, functionTable );
+        try
+        {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setFeature( XMLConstants.FEATURE_SECURE_PROCESSING, true );
+            factory.setFeature( "http://apache.org/xml/features/disallow-doctype-decl", true );
+            factory.newSAXParser().parse( file, reader );
+        }
+        catch ( SAXException e )
+        {
+            IOException ioe = new IOException( "Not a JavaNCSS XML report: " + file + ": " + e.getMessage() );
+            ioe.initCause( e );
+            throw ioe;
+        }
+        catch ( ParserConfigurationException e )
+        {
+            IOException ioe = new IOException( e.getMessage() );
+            ioe.initCause( e );
+            throw ioe;
+        }
+
+        int ncss = reader._ncss;
+        if ( ncss < 0 )
+        {
+            ncss = reader._sectionNcss;
+        }
+        if ( ncss < 0 )
+        {
+            ncss = Math.max( reader._packageNcss, 0 );
+        }
+        javancss.setResult( ncss, 0, reader._vPackageMetrics, reader._objectTable, reader._functionTable );
+    }
+
+    private String parent()
+    {
+        return _vPath.size() < 2 ? "" : _vPath.get( _vPath.size() - 2 );
+    }
+
+    @Override
+    public void startElement( String uri, String localName, String qName, Attributes attributes )
+        throws SAXException
+    {
+        _vPath.add( qName );
+        _sbText.setLength( 0 );
+        if ( _vPath.size() == 1 && !qName.equals( "javancss" ) )
+        {
+            throw new SAXException( "unexpected root element <" + qName + ">" );
+        }
+        if ( qName.equals( "package" ) && parent().equals( "packages" ) )
+        {
+            _package = new PackageMetric();
+        }
+        else if ( qName.equals( "object" ) && parent().equals( "objects" ) )
+        {
+            _object = new ObjectMetric();
+        }
+        else if ( qName.equals( "function" ) && parent().equals( "functions" ) )
+        {
+            _function = new FunctionMetric();
+        }
+    }
+
+    @Override
+    public void characters( char[] ch, int start, int length )
+    {
+        _sbText.append( ch, start, length );
+    }
+
+    @Override
+    public void endElement( String uri, String localName, String qName )
+        throws SAXException
+    {
+        String sText = _sbText.toString().trim();
+        String sParent = parent();
+
+        if ( qName.equals( "package" ) && _package != null )
+        {
+            _vPackageMetrics.add( _package );
+            _package = null;
+        }
+        else if ( qName.equals( "object" ) && _object != null )
+        {
+            _objectTable.add( _object );
+            _object = null;
+        }
+        else if ( qName.equals( "function" ) && _function != null )
+        {
+            _functionTable.add( _function );
+            _function = null;
+        }
+        else if ( sParent.equals( "package" ) && _package != null )
+        {
+            setPackageValue( qName, sText );
+        }
+        else if ( sParent.equals( "object" ) && _object != null )
+        {
+            setObjectValue( qName, sText );
+        }
+        else if ( sParent.equals( "function" ) && _function != null )
+        {
+            setFunctionValue( qName, sText );
+        }
+        else if ( qName.equals( "ncss" ) )
+        {
+            if ( sParent.equals( "javancss" ) )
+            {
+                _ncss = parseInt( sText );
+            }
+            else if ( sParent.equals( "objects" ) || sParent.equals( "functions" ) )
+            {
+                _sectionNcss = parseInt( sText );
+            }
+            else if ( sParent.equals( "total" ) )
+            {
+                _packageNcss = parseInt( sText );
+            }
+        }
+
+        _vPath.remove( _vPath.size() - 1 );
+        _sbText.setLength( 0 );
+    }
+
+    private void setPackageValue( String qName, String sText )
+        throws SAXException
+    {
+        if ( qName.equals( "name" ) )
+        {
+            _package.name = sText;
+        }
+        else if ( qName.equals( "classes" ) )
+        {
+            _package.classes = parseInt( sText );
+        }
+        else if ( qName.equals( "functions" ) )
+        {
+            _package.functions = parseInt( sText );
+        }
+        else if ( qName.equals( "ncss" ) )
+        {
+            _package.ncss = parseInt( sText );
+        }
+        else if ( qName.equals( "javadocs" ) )
+        {
+            _package.javadocs = parseInt( sText );
+        }
+        else if ( qName.equals( "javadoc_lines" ) )
+        {
+            _package.javadocsLn = parseInt( sText );
+        }
+        else if ( qName.equals( "single_comment_lines" ) )
+        {
+            _package.singleLn = parseInt( sText );
+        }
+        else if ( qName.equals( "multi_comment_lines" ) )
+        {
+            _package.multiLn = parseInt( sText );
+        }
+    }
+
+    private void setObjectValue( String qName, String sText )
+        throws SAXException
+    {
+        if ( qName.equals( "name" ) )
+        {
+            _object.name = sText;
+        }
+        else if ( qName.equals( "ncss" ) )
+        {
+            _object.ncss = parseInt( sText );
+        }
+        else if ( qName.equals( "functions" ) )
+        {
+            _object.functions = parseInt( sText );
+        }
+        else if ( qName.equals( "classes" ) )
+        {
+            _object.classes = parseInt( sText );
+        }
+        else if ( qName.equals( "javadocs" ) )
+        {
+            _object.javadocs = parseInt( sText );
+        }
+        else if ( qName.equals( "javadocs_lines" ) )
+        {
+            _object.javadocsLn = parseInt( sText );
+        }
+        else if ( qName.equals( "single_comment_lines" ) )
+        {
+            _object.singleLn = parseInt( sText );
+        }
+        else if ( qName.equals( "implementation_comment_lines" ) )
+        {
+            _object.multiLn = parseInt( sText );
+        }
+    }
+
+    private void setFunctionValue( String qName, String sText )
+        throws SAXException
+    {
+        if ( qName.equals( "name" ) )
+        {
+            _function.name = sText;
+        }
+        else if ( qName.equals( "ncss" ) )
+        {
+            _function.ncss = parseInt( sText );
+        }
+        else if ( qName.equals( "ccn" ) )
+        {
+            _function.ccn = parseInt( sText );
+        }
+        else if ( qName.equals( "javadocs" ) )
+        {
+            _function.javadocs = parseInt( sText );
+        }
+    }
+
+    /**
+     * Accepts plain numbers as well as the "#,##0.00" totals.
+     */
+    private int parseInt( String sText )
+        throws SAXException
+    {
+        try
+        {
+            return _pNumberFormat.parse( sText ).intValue();
+        }
+        catch ( ParseException e )
+        {
+            throw new SAXException( "not a number: '" + sText + "'" );
+        }
+    }
+}
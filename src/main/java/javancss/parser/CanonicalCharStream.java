@@ -0,0 +1,158 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss.parser;
+
+import java.io.Reader;
+
+/**
+ * JavaCharStream which hands out one String per distinct token
+ * image. Identifiers repeat all over a source file, so most of their
+ * images are found in the cache and no String is allocated for
+ * them.<p>
+ *
+ * The cache is direct mapped, a miss replaces the entry of its slot,
+ * so it keeps a fixed size however many distinct images pass. Images
+ * longer than MAX_LENGTH, mostly comments and string literals, are
+ * not cached. Keywords and operators do not get here, the token
+ * manager uses its literal images for them.<p>
+ *
+ * The text of comments is not kept. The grammar only asks whether the
+ * special tokens a comment is made of start with "/**" or "/*", so
+ * each of them gets one of three shared images, "/**", "/*" or "",
+ * unless setCommentImages asks for the text.
+ *
+ * @version $Id$
+ */
+public class CanonicalCharStream
+    extends JavaCharStream
+{
+    static final int MAX_LENGTH = 48;
+
+    private static final int CACHE_SIZE = 1024;
+
+    static final String FORMAL_COMMENT = "/**";
+    static final String MULTI_LINE_COMMENT = "/*";
+    static final String COMMENT = "";
+
+    private final String[] _asImages = new String[ CACHE_SIZE ];
+
+    private boolean _bCommentImages = false;
+    private boolean _bInComment = false;
+
+    public CanonicalCharStream( Reader reader )
+    {
+        super( reader );
+    }
+
+    /**
+     * Keeps the text of comments in the images of their special
+     * tokens, for debugging.
+     */
+    public void setCommentImages( boolean bCommentImages )
+    {
+        _bCommentImages = bCommentImages;
+    }
+
+    /**
+     * Starts over with the next source, keeping the buffers and the
+     * cached images.
+     */
+    @Override
+    public void ReInit( Reader reader, int startline, int startcolumn, int buffersize )
+    {
+        super.ReInit( reader, startline, startcolumn, buffersize );
+        // a reused buffer may still be bounded by the last source
+        available = bufsize;
+        _bInComment = false;
+    }
+
+    /**
+     * Called by the token manager when it enters or leaves a comment.
+     */
+    void setInComment( boolean bInComment )
+    {
+        _bInComment = bInComment;
+    }
+
+    @Override
+    public String GetImage()
+    {
+        if ( _bInComment && !_bCommentImages )
+        {
+            return getCommentImage();
+        }
+
+        int length = bufpos - tokenBegin + 1;
+        // images wrapping around the end of the buffer are rare
+        if ( length <= 0 || length > MAX_LENGTH )
+        {
+            return super.GetImage();
+        }
+
+        int hash = 0;
+        for ( int index = tokenBegin; index <= bufpos; index++ )
+        {
+            hash = 31 * hash + buffer[ index ];
+        }
+        int slot = ( hash ^ ( hash >>> 16 ) ) & ( CACHE_SIZE - 1 );
+        String image = _asImages[ slot ];
+        if ( image == null || image.hashCode() != hash || !matches( image, length ) )
+        {
+            image = new String( buffer, tokenBegin, length );
+            _asImages[ slot ] = image;
+        }
+
+        return image;
+    }
+
+    private String getCommentImage()
+    {
+        int length = bufpos >= tokenBegin ? bufpos - tokenBegin + 1 : bufsize - tokenBegin + bufpos + 1;
+        if ( length >= 2 && charAt( 0 ) == '/' && charAt( 1 ) == '*' )
+        {
+            return length >= 3 && charAt( 2 ) == '*' ? FORMAL_COMMENT : MULTI_LINE_COMMENT;
+        }
+
+        return COMMENT;
+    }
+
+    private char charAt( int index )
+    {
+        return buffer[ ( tokenBegin + index ) % bufsize ];
+    }
+
+    private boolean matches( String image, int length )
+    {
+        if ( image.length() != length )
+        {
+            return false;
+        }
+        for ( int index = 0; index < length; index++ )
+        {
+            if ( image.charAt( index ) != buffer[ tokenBegin + index ] )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
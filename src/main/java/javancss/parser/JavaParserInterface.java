@@ -1,8 +1,10 @@
 package javancss.parser;
 
+import java.io.Reader;
 import java.util.List;
 import java.util.Map;
 
+import javancss.CancelToken;
 import javancss.FunctionMetric;
 import javancss.ObjectMetric;
 import javancss.PackageMetric;
@@ -13,6 +15,11 @@ public interface JavaParserInterface
 
     void parseImportUnit() throws Exception;
 
+    /**
+     * Prepares the parser for the next source, see JavaParser.reset.
+     */
+    void reset( Reader reader );
+
     int getNcss();
 
     int getLOC();
@@ -20,6 +27,21 @@ public interface JavaParserInterface
     // added by SMS
     int getJvdc();
 
+    /**
+     * Comment lines of the parsed file, counted by the token manager
+     * of this parser.
+     */
+    int getJdcl();
+
+    int getSl();
+
+    int getMl();
+
+    /**
+     * Tokens the parser has read so far.
+     */
+    int getTokens();
+
     /*public int getTopLevelClasses() {
       return _topLevelClasses;
       }*/
@@ -50,4 +72,9 @@ public interface JavaParserInterface
      * is not very useful.
      */
     String getLastFunction();
+
+    /**
+     * Lets the token manager abort the parse once the token is cancelled.
+     */
+    void setCancelToken( CancelToken cancelToken );
 }
@@ -23,6 +23,10 @@ package javancss;
 import junit.framework.TestCase;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -56,4 +60,79 @@ public abstract class AbstractTestCase extends TestCase
         logger.config("Start test " + testFileId);
         return new Javancss( getTestFile( testFileId ) );
     }
+
+    /**
+     * Measures the test files together in one run.
+     */
+    protected Javancss measure( int... testFileIds )
+    {
+        List<File> vFiles = new ArrayList<File>();
+        for ( int id : testFileIds )
+        {
+            vFiles.add( getTestFile( id ) );
+        }
+
+        return new Javancss( vFiles );
+    }
+
+    /**
+     * The complete ASCII report of a result.
+     */
+    protected String format( Javancss javancss )
+        throws IOException
+    {
+        StringWriter w = new StringWriter();
+        Formatter formatter = new AsciiFormatter( javancss );
+        formatter.printPackageNcss( w );
+        formatter.printObjectNcss( w );
+        formatter.printFunctionNcss( w );
+        formatter.printJavaNcss( w );
+
+        return w.toString();
+    }
+
+    /**
+     * The directory the spill files of the tests of this class go
+     * to, instead of the shared temporary-file directory.
+     */
+    protected File getSpillDir()
+    {
+        return new File( "target/spill/" + getClass().getSimpleName() );
+    }
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        File spillDir = getSpillDir();
+        if ( !spillDir.isDirectory() && !spillDir.mkdirs() )
+        {
+            throw new IOException( "Could not create directory " + spillDir );
+        }
+        MetricSpillFile.setDirectory( spillDir );
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        MetricSpillFile.setDirectory( null );
+        super.tearDown();
+    }
+
+    /**
+     * Number of spill files in the spill directory of the tests.
+     */
+    protected int countSpillFiles()
+    {
+        int count = 0;
+        for ( String sFile : getSpillDir().list() )
+        {
+            if ( sFile.startsWith( "javancss" ) && sFile.endsWith( ".rows" ) )
+            {
+                count++;
+            }
+        }
+
+        return count;
+    }
 }
@@ -0,0 +1,180 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Measures the time and heap allocation of the ascii output for a
+ * large synthetic result. Not a unit test, run it by hand:
+ * <pre>
+ * java -cp ... javancss.AsciiFormatterBenchmark [functions] [rounds] [threads]
+ * </pre>
+ * The printed checksum identifies the output, it must not change
+ * when the formatter is optimized.
+ *
+ * @version $Id$
+ */
+public class AsciiFormatterBenchmark
+{
+    /**
+     * Discards the output but keeps a checksum of it.
+     */
+    private static class ChecksumWriter
+        extends Writer
+    {
+        long checksum = 0;
+        long length = 0;
+
+        @Override
+        public void write( char[] cbuf, int off, int len )
+        {
+            for ( int i = off; i < off + len; i++ )
+            {
+                checksum = checksum * 31 + cbuf[ i ];
+            }
+            length += len;
+        }
+
+        @Override
+        public void write( String str, int off, int len )
+        {
+            for ( int i = off; i < off + len; i++ )
+            {
+                checksum = checksum * 31 + str.charAt( i );
+            }
+            length += len;
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+    static Javancss createResult( int functions )
+    {
+        Random random = new Random( 42 );
+        MetricTable functionTable = new MetricTable();
+        MetricTable objectTable = new MetricTable();
+        int objects = Math.max( 1, functions / 10 );
+        for ( int i = 0; i < objects; i++ )
+        {
+            ObjectMetric object = new ObjectMetric();
+            object.name = "org.example.pkg" + ( i % 50 ) + ".SomeClass" + i;
+            object.ncss = random.nextInt( 500 );
+            object.functions = random.nextInt( 30 );
+            object.classes = random.nextInt( 3 );
+            object.javadocs = random.nextInt( 30 );
+            objectTable.add( object );
+        }
+        for ( int i = 0; i < functions; i++ )
+        {
+            FunctionMetric function = new FunctionMetric();
+            function.name = "org.example.pkg" + ( i % 50 ) + ".SomeClass" + ( i / 10 ) + ".method" + i + "(int,String)";
+            function.ncss = random.nextInt( 200 );
+            function.ccn = 1 + random.nextInt( 40 );
+            function.javadocs = random.nextInt( 2 );
+            functionTable.add( function );
+        }
+        ArrayList<PackageMetric> vPackages = new ArrayList<PackageMetric>();
+        for ( int i = 0; i < 50; i++ )
+        {
+            PackageMetric pkm = new PackageMetric();
+            pkm.name = "org.example.pkg" + i;
+            pkm.classes = random.nextInt( 1000 );
+            pkm.functions = random.nextInt( 10000 );
+            pkm.ncss = random.nextInt( 100000 );
+            pkm.javadocs = random.nextInt( 10000 );
+            vPackages.add( pkm );
+        }
+
+        Javancss javancss = new Javancss();
+        javancss.setResult( functions * 20, functions * 40, vPackages, objectTable, functionTable );
+
+        return javancss;
+    }
+
+    static void format( Javancss javancss, Writer w )
+        throws IOException
+    {
+        Formatter formatter = new AsciiFormatter( javancss );
+        formatter.printPackageNcss( w );
+        formatter.printObjectNcss( w );
+        formatter.printFunctionNcss( w );
+        formatter.printJavaNcss( w );
+    }
+
+    /**
+     * Bytes allocated by the current thread so far, -1 when the JVM
+     * does not tell.
+     */
+    private static long allocatedBytes()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        try
+        {
+            Method method = Class.forName( "com.sun.management.ThreadMXBean" )
+                .getMethod( "getThreadAllocatedBytes", long.class );
+
+            return ( (Long) method.invoke( bean, Long.valueOf( Thread.currentThread().getId() ) ) ).longValue();
+        }
+        catch ( Exception e )
+        {
+            return -1;
+        }
+    }
+
+    public static void main( String[] args )
+        throws IOException
+    {
+        int functions = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 1000000;
+        int rounds = args.length > 1 ? Integer.parseInt( args[ 1 ] ) : 10;
+
+        Javancss javancss = createResult( functions );
+        if ( args.length > 2 )
+        {
+            javancss.setThreads( Integer.parseInt( args[ 2 ] ) );
+        }
+        for ( int round = 1; round <= rounds; round++ )
+        {
+            ChecksumWriter w = new ChecksumWriter();
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            format( javancss, w );
+            long millis = ( System.nanoTime() - start ) / 1000000;
+            allocated = allocatedBytes() - allocated;
+            System.out.println( "round " + round + ": " + millis + " ms, " + ( allocated / ( 1024 * 1024 ) ) + " MB allocated, "
+                                + w.length + " chars, checksum " + Long.toHexString( w.checksum ) );
+        }
+    }
+}
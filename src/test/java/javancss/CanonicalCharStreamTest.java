@@ -0,0 +1,115 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javancss.parser.CanonicalCharStream;
+import javancss.parser.JavaParserConstants;
+import javancss.parser.JavaParserTokenManager;
+import javancss.parser.Token;
+
+/**
+ * Tests that equal identifiers share their image and that comments
+ * are classified without keeping their text.
+ *
+ * @version $Id$
+ */
+public class CanonicalCharStreamTest extends AbstractTestCase
+{
+    private static Token[] tokens( String source, int count )
+    {
+        return tokens( new CanonicalCharStream( new StringReader( source ) ), count );
+    }
+
+    private static Token[] tokens( CanonicalCharStream stream, int count )
+    {
+        JavaParserTokenManager tokenManager = new JavaParserTokenManager( stream );
+        Token[] tokens = new Token[ count ];
+        for ( int index = 0; index < count; index++ )
+        {
+            tokens[ index ] = tokenManager.getNextToken();
+        }
+        assertEquals( JavaParserConstants.EOF, tokenManager.getNextToken().kind );
+
+        return tokens;
+    }
+
+    public void testEqualIdentifiersShareTheirImage()
+    {
+        Token[] tokens = tokens( "foo = bar + foo * \\u0062ar;", 8 );
+        assertEquals( "foo", tokens[ 0 ].image );
+        assertEquals( "bar", tokens[ 2 ].image );
+        assertSame( tokens[ 0 ].image, tokens[ 4 ].image );
+        assertSame( tokens[ 2 ].image, tokens[ 6 ].image );
+    }
+
+    public void testLongImagesAreNotShared()
+    {
+        StringBuilder name = new StringBuilder();
+        for ( int index = 0; index < 60; index++ )
+        {
+            name.append( 'x' );
+        }
+        Token[] tokens = tokens( name + " " + name, 2 );
+        assertEquals( name.toString(), tokens[ 0 ].image );
+        assertEquals( tokens[ 0 ].image, tokens[ 1 ].image );
+        assertTrue( tokens[ 0 ].image != tokens[ 1 ].image );
+    }
+
+    /**
+     * Returns the images of the special tokens before the token,
+     * in source order.
+     */
+    private static List<String> specialImages( Token token )
+    {
+        List<String> vImages = new ArrayList<String>();
+        for ( Token special = token.specialToken; special != null; special = special.specialToken )
+        {
+            vImages.add( 0, special.image );
+        }
+
+        return vImages;
+    }
+
+    public void testCommentsAreClassifiedWithoutTheirText()
+    {
+        String source = "/** Formal\n * comment. */ a /* multi\nline */ b // single\n c /**/ d";
+        Token[] tokens = tokens( source, 4 );
+        assertEquals( Arrays.asList( "/**", "" ), specialImages( tokens[ 0 ] ) );
+        assertEquals( Arrays.asList( "/*", "" ), specialImages( tokens[ 1 ] ) );
+        assertEquals( Arrays.asList( "//", "" ), specialImages( tokens[ 2 ] ) );
+        assertEquals( Arrays.asList( "/**" ), specialImages( tokens[ 3 ] ) );
+        assertEquals( "d", tokens[ 3 ].image );
+    }
+
+    public void testCommentImagesOnRequest()
+    {
+        CanonicalCharStream stream = new CanonicalCharStream( new StringReader( "/** Formal\n * comment. */ a // single\n b" ) );
+        stream.setCommentImages( true );
+        Token[] tokens = tokens( stream, 2 );
+        assertEquals( Arrays.asList( "/** Formal\n", " * comment. */" ), specialImages( tokens[ 0 ] ) );
+        assertEquals( Arrays.asList( "//", " single\n" ), specialImages( tokens[ 1 ] ) );
+    }
+}
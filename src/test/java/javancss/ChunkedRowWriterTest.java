@@ -0,0 +1,84 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * Tests that formatting on several threads gives the same output
+ * as formatting on one.
+ *
+ * @version $Id$
+ */
+public class ChunkedRowWriterTest extends AbstractTestCase
+{
+    private static String format( Formatter formatter )
+        throws IOException
+    {
+        StringWriter w = new StringWriter();
+        formatter.printPackageNcss( w );
+        formatter.printObjectNcss( w );
+        formatter.printFunctionNcss( w );
+        formatter.printJavaNcss( w );
+
+        return w.toString();
+    }
+
+    public void testSameOutput()
+        throws IOException
+    {
+        Javancss javancss = AsciiFormatterBenchmark.createResult( 10 * ChunkedRowWriter.CHUNK_ROWS + 17 );
+
+        javancss.setThreads( 1 );
+        String sAscii = format( new AsciiFormatter( javancss ) );
+        String sXml = format( new XmlFormatter( javancss ) );
+
+        javancss.setThreads( 4 );
+        assertEquals( sAscii, format( new AsciiFormatter( javancss ) ) );
+        assertEquals( sXml, format( new XmlFormatter( javancss ) ) );
+    }
+
+    public void testSpilledTable()
+        throws IOException
+    {
+        Javancss javancss = AsciiFormatterBenchmark.createResult( 3 * ChunkedRowWriter.CHUNK_ROWS );
+        javancss.setThreads( 1 );
+        String sExpected = format( new AsciiFormatter( javancss ) );
+
+        MetricTable spilled = new MetricTable();
+        spilled.setMemoryBudget( 64 * 1024 );
+        MetricTable functions = javancss.getFunctionTable();
+        for ( int row = 0; row < functions.size(); row++ )
+        {
+            spilled.add( functions.getFunctionMetric( row ) );
+        }
+        assertTrue( spilled.getSpilledRows() > 0 );
+        // spilled rows are rendered on one thread, the others on all
+        assertEquals( 1, ChunkedRowWriter.threads( spilled, 4 ) );
+        assertEquals( 4, ChunkedRowWriter.threads( functions, 4 ) );
+        javancss.setResult( javancss.getNcss(), javancss.getLOC(), javancss.getPackageMetrics()
+                            , javancss.getObjectTable(), spilled );
+
+        javancss.setThreads( 4 );
+        assertEquals( sExpected, format( new AsciiFormatter( javancss ) ) );
+    }
+}
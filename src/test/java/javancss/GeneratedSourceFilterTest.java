@@ -0,0 +1,139 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Map;
+
+/**
+ * Tests skipping generated source files with -skipgenerated,
+ * -skippattern and -skiplarger.
+ *
+ * @version $Id$
+ */
+public class GeneratedSourceFilterTest extends AbstractTestCase
+{
+    private static final String CLASS = "class A { void f() { int i = 0; } }\n";
+
+    private File writeTestFile( String filename, String content )
+        throws IOException
+    {
+        File file = getTestFile( filename );
+        FileUtils.writeStringToFile( file, content, "ISO-8859-1" );
+
+        return file;
+    }
+
+    public void testMarkers()
+        throws IOException
+    {
+        GeneratedSourceFilter filter = new GeneratedSourceFilter();
+        filter.addDefaultMarkers();
+        assertEquals( "contains '@Generated'",
+                      filter.getSkipReason( writeTestFile( "GeneratedA.java", "@Generated(\"x\")\n" + CLASS ), null ) );
+        assertEquals( "contains 'DO NOT EDIT'",
+                      filter.getSkipReason( writeTestFile( "GeneratedB.java", "// DO NOT EDIT!\n" + CLASS ), null ) );
+        assertNull( filter.getSkipReason( writeTestFile( "Handwritten.java", CLASS ), null ) );
+    }
+
+    public void testGeneratedAnnotation()
+        throws IOException
+    {
+        GeneratedSourceFilter filter = new GeneratedSourceFilter();
+        filter.addDefaultMarkers();
+        assertEquals( "contains '@Generated'",
+                      filter.getSkipReason( writeTestFile( "GeneratedC.java", "@javax.annotation.Generated(\"x\")\n" + CLASS ), null ) );
+        assertEquals( "contains '@Generated'",
+                      filter.getSkipReason( writeTestFile( "GeneratedD.java", "@javax.annotation.processing.Generated(\"x\")\n" + CLASS ), null ) );
+        assertEquals( "contains '@Generated'",
+                      filter.getSkipReason( writeTestFile( "GeneratedE.java", "@Generated\n" + CLASS ), null ) );
+
+        // a JPA entity is hand written
+        String sEntity = "@Entity class A { @Id @GeneratedValue(strategy = GenerationType.AUTO) long id; }\n";
+        assertNull( filter.getSkipReason( writeTestFile( "Entity.java", sEntity ), null ) );
+        assertNull( filter.getSkipReason( writeTestFile( "Generator.java", "@GeneratedBy(A.class)\n" + CLASS ), null ) );
+    }
+
+    public void testOnlyTheHeadIsRead()
+        throws IOException
+    {
+        StringBuilder content = new StringBuilder();
+        while ( content.length() < GeneratedSourceFilter.HEAD_BYTES )
+        {
+            content.append( CLASS );
+        }
+        content.append( "// DO NOT EDIT\n" );
+        GeneratedSourceFilter filter = new GeneratedSourceFilter();
+        filter.addDefaultMarkers();
+        assertNull( filter.getSkipReason( writeTestFile( "LateMarker.java", content.toString() ), null ) );
+    }
+
+    public void testPatternAndSize()
+        throws IOException
+    {
+        GeneratedSourceFilter filter = new GeneratedSourceFilter();
+        filter.addPattern( "Generated By:JavaCC" );
+        assertEquals( "matches 'Generated By:JavaCC'",
+                      filter.getSkipReason( writeTestFile( "Parser.java", "/* Generated By:JavaCC: Do not edit this line. */\n" + CLASS ), null ) );
+        assertNull( filter.getSkipReason( writeTestFile( "GeneratedA.java", "@Generated(\"x\")\n" + CLASS ), null ) );
+
+        filter.setMaxBytes( CLASS.length() - 1 );
+        assertEquals( "larger than " + ( CLASS.length() - 1 ) + " bytes",
+                      filter.getSkipReason( writeTestFile( "Handwritten.java", CLASS ), null ) );
+        filter.setMaxBytes( CLASS.length() );
+        assertNull( filter.getSkipReason( writeTestFile( "Handwritten.java", CLASS ), null ) );
+    }
+
+    public void testSkippedFilesAreNotMeasured()
+        throws IOException
+    {
+        File generated = writeTestFile( "GeneratedA.java", "@Generated(\"x\")\n" + CLASS );
+        File handwritten = writeTestFile( "Handwritten.java", CLASS );
+
+        PrintStream psStdout = System.out;
+        PrintStream psStderr = System.err;
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        Javancss javancss;
+        try
+        {
+            System.setOut( new PrintStream( new ByteArrayOutputStream() ) );
+            System.setErr( new PrintStream( err ) );
+            javancss = new Javancss( new String[] { "-skipgenerated", generated.getPath(), handwritten.getPath() } );
+        }
+        finally
+        {
+            System.setOut( psStdout );
+            System.setErr( psStderr );
+        }
+
+        assertEquals( 3, javancss.getNcss() );
+        assertEquals( 1, javancss.getSkippedFiles().size() );
+        Map.Entry<File, String> skipped = javancss.getSkippedFiles().entrySet().iterator().next();
+        assertEquals( generated.getName(), skipped.getKey().getName() );
+        assertEquals( "contains '@Generated'", skipped.getValue() );
+        assertTrue( err.toString(), err.toString().indexOf( generated.getName() + " (contains '@Generated')" ) >= 0 );
+    }
+}
@@ -0,0 +1,164 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+/**
+ * Checks the html output against the report the stylesheet makes
+ * of the xml output.
+ *
+ * @version $Id$
+ */
+public class HtmlFormatterTest extends AbstractTestCase
+{
+    private static final Pattern CELL = Pattern.compile( "<t[dh][^>]*>(.*?)</t[dh]>", Pattern.DOTALL );
+
+    private static String format( Formatter formatter )
+        throws IOException
+    {
+        StringWriter sw = new StringWriter();
+        formatter.printStart( sw );
+        formatter.printPackageNcss( sw );
+        formatter.printObjectNcss( sw );
+        formatter.printFunctionNcss( sw );
+        formatter.printEnd( sw );
+
+        return sw.toString();
+    }
+
+    /**
+     * The text of all table cells, without markup and blanks.
+     */
+    private static List<String> cells( String sHtml )
+    {
+        List<String> vCells = new ArrayList<String>();
+        Matcher matcher = CELL.matcher( sHtml );
+        while ( matcher.find() )
+        {
+            String sCell = matcher.group( 1 ).replaceAll( "<[^>]*>", "" );
+            sCell = sCell.replace( "&#160;", "" ).replace( "&nbsp;", "" ).replace( " ", "" );
+            vCells.add( sCell.trim() );
+        }
+
+        return vCells;
+    }
+
+    public void testSameCellsAsStylesheet()
+        throws Exception
+    {
+        Javancss javancss = measureTestFile( 57 );
+
+        StreamSource xmlSource = new StreamSource( new StringReader( format( new XmlFormatter( javancss ) ) ) );
+        StreamSource styleSource = new StreamSource( new File( getTestDir(), "../../xslt/javancss2html.xsl" ) );
+        Transformer transformer = TransformerFactory.newInstance().newTransformer( styleSource );
+        ByteArrayOutputStream output = new ByteArrayOutputStream( 1024 );
+        transformer.transform( xmlSource, new StreamResult( output ) );
+        List<String> vExpected = cells( output.toString( "UTF-8" ) );
+
+        List<String> vCells = cells( format( new HtmlFormatter( javancss ) ) );
+        assertTrue( vCells.size() > 50 );
+        assertEquals( vExpected, vCells );
+    }
+
+    /**
+     * Number of pages of two rows, a list which fits into one page has none.
+     */
+    private static int pages( int rows )
+    {
+        return rows > 2 ? ( rows + 1 ) / 2 : 0;
+    }
+
+    public void testPages()
+        throws Exception
+    {
+        Javancss javancss = measureTestFile( 57 );
+        int functions = javancss.getFunctionTable().size();
+        assertTrue( functions > 4 );
+
+        String sHtml = format( new HtmlFormatter( javancss, 2 ) );
+
+        int pages = pages( functions ) + pages( javancss.getObjectTable().size() );
+        assertEquals( pages, sHtml.split( "<details", -1 ).length - 1 );
+        assertEquals( pages, sHtml.split( "</details>", -1 ).length - 1 );
+        assertEquals( sHtml.split( "<table", -1 ).length, sHtml.split( "</table>", -1 ).length );
+        assertTrue( sHtml.contains( "<details open><summary>Functions 1 - 2 of " + functions + "</summary>" ) );
+        assertTrue( sHtml.contains( "<details><summary>Functions 3 - 4 of " + functions + "</summary>" ) );
+
+        // the rows are numbered through all pages
+        assertTrue( sHtml.contains( "<tr><td>3</td>" ) );
+        assertTrue( sHtml.contains( "<tr><td>" + functions + "</td>" ) );
+    }
+
+    public void testPageFiles()
+        throws Exception
+    {
+        Javancss javancss = measureTestFile( 57 );
+        int functions = javancss.getFunctionTable().size();
+        File dir = getTestFile( "html-pages" );
+        FileUtils.deleteDirectory( dir );
+        assertTrue( dir.mkdirs() );
+
+        HtmlFormatter formatter = new HtmlFormatter( javancss, 2 );
+        formatter.setReportFile( new File( dir, "report.html" ) );
+        String sHtml = format( formatter );
+
+        assertEquals( -1, sHtml.indexOf( "<details" ) );
+        assertEquals( sHtml.split( "<table", -1 ).length, sHtml.split( "</table>", -1 ).length );
+        assertTrue( sHtml.contains( "<a href=\"report-functions-2.html\">3 - 4</a>" ) );
+        assertFalse( sHtml.contains( "<tr><td>3</td>" ) );
+
+        // each page after the first has a file of its own
+        int objectPages = pages( javancss.getObjectTable().size() );
+        assertEquals( pages( functions ) - 1 + Math.max( 0, objectPages - 1 ), dir.list().length );
+        String sPage = FileUtils.readFileToString( new File( dir, "report-functions-2.html" ), "UTF-8" );
+        assertTrue( sPage.contains( "<h2>Functions 3 - 4 of " + functions + "</h2>" ) );
+        assertTrue( sPage.contains( "<tr><td>3</td>" ) );
+        assertTrue( sPage.contains( "<tr><td>4</td>" ) );
+        assertFalse( sPage.contains( "<tr><td>5</td>" ) );
+        String sLast = FileUtils.readFileToString( new File( dir, "report-functions-" + pages( functions ) + ".html" ), "UTF-8" );
+        assertTrue( sLast.contains( "<tr><td>" + functions + "</td>" ) );
+
+        FileUtils.deleteDirectory( dir );
+    }
+
+    public void testEscaping()
+    {
+        StringBuilder sb = new StringBuilder();
+        HtmlFormatter.appendEscaped( sb, "a.B.c(List<Map<K,V>>, \"&\")" );
+        assertEquals( "a.B.c(List&lt;Map&lt;K,V&gt;&gt;, &quot;&amp;&quot;)", sb.toString() );
+    }
+}
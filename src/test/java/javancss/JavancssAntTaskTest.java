@@ -22,11 +22,13 @@ Boston, MA 02111-1307, USA.  */
 package javancss;
 
 import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
 import org.apache.tools.ant.DefaultLogger;
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.ProjectHelper;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
 
@@ -67,4 +69,54 @@ public class JavancssAntTaskTest extends TestCase
     {
         project.executeTarget( "run" );
     }
+
+    private JavancssAntTask createIncrementalTask( File srcdir, File report )
+    {
+        JavancssAntTask task = new JavancssAntTask();
+        task.setProject( project );
+        task.setSrcdir( srcdir );
+        task.setGenerateReport( true );
+        task.setFormat( "xml" );
+        task.setOutputfile( report );
+        task.setIncremental( true );
+        task.setAbortOnFail( true );
+
+        return task;
+    }
+
+    public void testIncremental()
+        throws IOException
+    {
+        File dir = new File( "target/incremental" );
+        FileUtils.deleteDirectory( dir );
+        File srcdir = new File( dir, "src" );
+        File report = new File( dir, "javancss.xml" );
+        FileUtils.writeStringToFile( new File( srcdir, "p/A.java" ), "package p; class A { void f() { int i = 0; } }\n", "ISO-8859-1" );
+        FileUtils.writeStringToFile( new File( srcdir, "p/B.java" ), "package p; class B { void g() { } }\n", "ISO-8859-1" );
+
+        createIncrementalTask( srcdir, report ).execute();
+        String sReport = FileUtils.readFileToString( report, "UTF-8" );
+        assertTrue( sReport, sReport.contains( "<name>p.A.f()</name>" ) );
+        assertTrue( new File( report.getPath() + ".cache", IncrementalCache.MANIFEST ).isFile() );
+
+        // nothing changed, the report is not written again
+        FileUtils.writeStringToFile( report, "unchanged", "UTF-8" );
+        createIncrementalTask( srcdir, report ).execute();
+        assertEquals( "unchanged", FileUtils.readFileToString( report, "UTF-8" ) );
+
+        // other settings write the report from the cache
+        JavancssAntTask task = createIncrementalTask( srcdir, report );
+        task.setFunctionMetrics( false );
+        task.execute();
+        sReport = FileUtils.readFileToString( report, "UTF-8" );
+        assertTrue( sReport, sReport.contains( "<name>p.A</name>" ) );
+        assertFalse( sReport, sReport.contains( "<name>p.A.f()</name>" ) );
+
+        // a changed file is parsed again, the other one is read from the cache
+        FileUtils.writeStringToFile( new File( srcdir, "p/B.java" ), "package p; class B { void g() { } void h() { } }\n", "ISO-8859-1" );
+        createIncrementalTask( srcdir, report ).execute();
+        sReport = FileUtils.readFileToString( report, "UTF-8" );
+        assertTrue( sReport, sReport.contains( "<name>p.A.f()</name>" ) );
+        assertTrue( sReport, sReport.contains( "<name>p.B.h()</name>" ) );
+    }
 }
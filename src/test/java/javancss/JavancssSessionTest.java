@@ -0,0 +1,178 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests measuring with a JavancssSession.
+ *
+ * @version $Id$
+ */
+public class JavancssSessionTest extends AbstractTestCase
+{
+    private static final String CLASS = "package p; class A { void f() { int i = 0; } }\n";
+
+    private List<File> getTestFiles()
+    {
+        List<File> vFiles = new ArrayList<File>();
+        for ( int testFileId = 1; testFileId <= 20; testFileId++ )
+        {
+            vFiles.add( getTestFile( testFileId ) );
+        }
+
+        return vFiles;
+    }
+
+    public void testSameResultAsJavancss()
+    {
+        List<File> vFiles = getTestFiles();
+        Javancss javancss = new Javancss( vFiles );
+        JavancssResult result = JavancssSession.builder().build().measure( vFiles );
+        assertEquals( javancss.getNcss(), result.getNcss() );
+        assertEquals( javancss.getLOC(), result.getLOC() );
+        assertEquals( javancss.getFunctionMetrics().size(), result.getFunctionMetrics().size() );
+        assertEquals( javancss.getObjectMetrics().size(), result.getObjectMetrics().size() );
+        assertEquals( javancss.getPackageMetrics().size(), result.getPackageMetrics().size() );
+        assertEquals( javancss.getLastErrorMessage(), result.getLastErrorMessage() );
+    }
+
+    public void testSource()
+        throws IOException
+    {
+        JavancssSession session = JavancssSession.builder().build();
+        JavancssResult result = session.measure( CLASS.toCharArray() );
+        assertNull( result.getLastErrorMessage() );
+        assertEquals( 4, result.getNcss() );
+        assertEquals( "p.A.f()", result.getFunctionMetrics().get( 0 ).name );
+
+        StringWriter w = new StringWriter();
+        result.print( w, "xml" );
+        assertTrue( w.toString(), w.toString().contains( "<name>p.A.f()</name>" ) );
+
+        result = session.measure( "class {".toCharArray() );
+        assertNotNull( result.getLastErrorMessage() );
+    }
+
+    public void testResultDoesNotChange()
+    {
+        JavancssResult result = JavancssSession.builder().build().measure( CLASS.toCharArray() );
+        result.getPackageMetrics().get( 0 ).ncss = 100;
+        assertEquals( 4, result.getPackageMetrics().get( 0 ).ncss );
+        try
+        {
+            result.getPackageMetrics().clear();
+            fail( "the package list can be changed" );
+        }
+        catch ( UnsupportedOperationException e )
+        {
+            // expected
+        }
+    }
+
+    public void testBuilderDoesNotChangeBuiltSessions()
+    {
+        JavancssSession.Builder builder = JavancssSession.builder();
+        JavancssSession measuresAll = builder.build();
+        JavancssSession skipsAll = builder.skipPattern( "class" ).build();
+        List<File> vFiles = Arrays.asList( getTestFile( 1 ) );
+        assertTrue( measuresAll.measure( vFiles ).getSkippedFiles().isEmpty() );
+        assertEquals( 1, skipsAll.measure( vFiles ).getSkippedFiles().size() );
+        assertEquals( 0, skipsAll.measure( vFiles ).getNcss() );
+    }
+
+    public void testCancel()
+    {
+        JavancssSession session = JavancssSession.builder().build();
+        CancelToken token = new CancelToken();
+        token.cancel();
+        JavancssResult cancelled = session.measure( getTestFiles(), token );
+        assertTrue( cancelled.isCancelled() );
+        assertEquals( 0, cancelled.getNcss() );
+        assertTrue( cancelled.getFunctionMetrics().isEmpty() );
+        assertTrue( session.measure( CLASS.toCharArray() ).getNcss() > 0 );
+        assertTrue( session.measure( new StringReader( CLASS ), token ).isCancelled() );
+
+        // the token of one measurement does not cancel the others
+        JavancssResult result = session.measure( getTestFiles() );
+        assertFalse( result.isCancelled() );
+        assertTrue( result.getNcss() > 0 );
+    }
+
+    public void testCloseDeletesSpillFiles()
+    {
+        int before = countSpillFiles();
+        JavancssSession session = JavancssSession.builder().memoryBudget( 2 ).build();
+        JavancssResult result = session.measure( getTestFiles() );
+        assertTrue( countSpillFiles() > before );
+        int ncss = result.getNcss();
+
+        result.close();
+        session.close();
+        assertEquals( before, countSpillFiles() );
+        assertEquals( ncss, result.getNcss() );
+        assertTrue( result.getFunctionMetrics().isEmpty() );
+    }
+
+    public void testConcurrentMeasurements()
+        throws InterruptedException
+    {
+        final JavancssSession session = JavancssSession.builder().build();
+        final List<File> vFiles = getTestFiles();
+        final int ncss = session.measure( vFiles ).getNcss();
+        final int[] results = new int[ 4 ];
+        Thread[] threads = new Thread[ results.length ];
+        for ( int index = 0; index < threads.length; index++ )
+        {
+            final int slot = index;
+            threads[ index ] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for ( int round = 0; round < 5; round++ )
+                    {
+                        if ( session.measure( vFiles ).getNcss() != ncss )
+                        {
+                            return;
+                        }
+                    }
+                    results[ slot ] = ncss;
+                }
+            };
+            threads[ index ].start();
+        }
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+        for ( int result : results )
+        {
+            assertEquals( ncss, result );
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+/**
+ * Tests the counters of the JavancssStatistics MBean.
+ *
+ * @version $Id$
+ */
+public class JavancssStatisticsTest extends AbstractTestCase
+{
+    public void testCounters()
+        throws Exception
+    {
+        JavancssStatistics statistics = JavancssStatistics.register();
+        assertSame( statistics, JavancssStatistics.register() );
+        assertTrue( ManagementFactory.getPlatformMBeanServer().isRegistered( new ObjectName( JavancssStatistics.OBJECT_NAME ) ) );
+        statistics.reset();
+
+        File broken = getTestFile( "Broken.java" );
+        FileUtils.writeStringToFile( broken, "class {\n", "ISO-8859-1" );
+        List<File> vFiles = Arrays.asList( getTestFile( 1 ), getTestFile( 2 ), broken );
+        new Javancss( vFiles );
+
+        assertEquals( 3, statistics.getFilesQueued() );
+        assertEquals( 2, statistics.getFilesParsed() );
+        assertEquals( 1, statistics.getFilesFailed() );
+        assertEquals( getTestFile( 1 ).length() + getTestFile( 2 ).length() + broken.length(), statistics.getBytesProcessed() );
+        assertTrue( statistics.getTokensProcessed() > 0 );
+        // no file is being measured anymore
+        assertNull( statistics.getCurrentFile() );
+        assertEquals( 2, statistics.getParseTimes().getCount() );
+        assertEquals( 0.0, statistics.getCacheHitRatio(), 0.0 );
+
+        statistics.reset();
+        assertEquals( 0, statistics.getFilesQueued() );
+        assertEquals( 0, statistics.getTokensProcessed() );
+        assertEquals( 0, statistics.getParseTimes().getCount() );
+        assertNull( statistics.getCurrentFile() );
+    }
+
+    public void testNameTakenByAnotherClassLoader()
+        throws Exception
+    {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        ObjectName name = new ObjectName( JavancssStatistics.OBJECT_NAME );
+        JavancssStatistics other = JavancssStatistics.register( server );
+        assertTrue( other.isRegistered() );
+
+        JavancssStatistics statistics = JavancssStatistics.register( server );
+        assertFalse( statistics.isRegistered() );
+        statistics.filesQueued( 3 );
+        assertEquals( 3, statistics.getFilesQueued() );
+        // the MBean registered first stays
+        assertTrue( server.isRegistered( name ) );
+        assertEquals( Long.valueOf( 0 ), server.getAttribute( name, "FilesQueued" ) );
+    }
+
+    public void testCacheHitRatio()
+        throws IOException
+    {
+        JavancssStatistics statistics = JavancssStatistics.register();
+        File dir = getTestFile( "statistics-cache" );
+        FileUtils.deleteDirectory( dir );
+        List<File> vFiles = Arrays.asList( getTestFile( 1 ), getTestFile( 2 ) );
+        IncrementalCache cache = new IncrementalCache( dir, null );
+        cache.measure( vFiles );
+        statistics.reset();
+        cache.measure( vFiles );
+
+        assertEquals( 2, statistics.getCacheHits() );
+        assertEquals( 0, statistics.getCacheMisses() );
+        assertEquals( 1.0, statistics.getCacheHitRatio(), 0.0 );
+    }
+
+    public void testStripedCounter()
+        throws InterruptedException
+    {
+        final StripedCounter counter = new StripedCounter();
+        Thread[] threads = new Thread[ 8 ];
+        for ( int index = 0; index < threads.length; index++ )
+        {
+            threads[ index ] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for ( int i = 0; i < 10000; i++ )
+                    {
+                        counter.increment();
+                    }
+                }
+            };
+            threads[ index ].start();
+        }
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+        assertEquals( 80000, counter.get() );
+
+        counter.reset();
+        assertEquals( 0, counter.get() );
+    }
+}
@@ -26,6 +26,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.StringReader;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -89,6 +90,51 @@ public class JavancssTest extends AbstractTestCase
         assertFalse( ncss38 == javancss.getNcss() );
     }
 
+    public void testReusedParser()
+    {
+        // the parser is reused for each file, nothing of one file may show up in the next
+        Javancss single = new Javancss( getTestFile( 16 ) );
+        Javancss twice = new Javancss( Arrays.asList( getTestFile( 12 ), getTestFile( 16 ), getTestFile( 16 ) ) );
+        Javancss first = new Javancss( getTestFile( 12 ) );
+        assertEquals( first.getNcss() + 2 * single.getNcss(), twice.getNcss() );
+
+        List<FunctionMetric> vSingle = single.getFunctionMetrics();
+        List<FunctionMetric> vTwice = twice.getFunctionMetrics();
+        int offset = first.getFunctionMetrics().size();
+        assertEquals( offset + 2 * vSingle.size(), vTwice.size() );
+        for ( int index = 0; index < vSingle.size(); index++ )
+        {
+            assertEquals( vSingle.get( index ).name, vTwice.get( offset + index ).name );
+            assertEquals( vSingle.get( index ).name, vTwice.get( offset + vSingle.size() + index ).name );
+            assertEquals( vSingle.get( index ).ncss, vTwice.get( offset + vSingle.size() + index ).ncss );
+        }
+    }
+
+    public void testParserPool()
+    {
+        ParserPool pool = new ParserPool();
+        Javancss javancss = new Javancss();
+        javancss.setParserPool( pool );
+        javancss.measure( Arrays.asList( getTestFile( 12 ), getTestFile( 16 ) ) );
+        assertEquals( new Javancss( getTestFile( 12 ) ).getNcss() + new Javancss( getTestFile( 16 ) ).getNcss(), javancss.getNcss() );
+        assertEquals( 1, pool.size() );
+
+        // a parse error gives the parser back too, and the message stays with its result
+        Javancss broken = new Javancss();
+        broken.setParserPool( pool );
+        broken.measure( new StringReader( "class A { void f() { } void g( }" ) );
+        String sError = broken.getLastErrorMessage();
+        assertTrue( sError, sError.indexOf( "Last useful checkpoint: \"A.g\"" ) >= 0 );
+        assertEquals( 1, pool.size() );
+        Javancss next = new Javancss();
+        next.setParserPool( pool );
+        next.measure( Arrays.asList( getTestFile( 16 ) ) );
+        assertEquals( sError, broken.getLastErrorMessage() );
+
+        pool.close();
+        assertEquals( 0, pool.size() );
+    }
+
     public void testEncoding() throws IOException
     {
         String[] args = new String[] { "-encoding", "UTF-16", getTestFile( "TestEncoding.java" ).getAbsolutePath() };
@@ -103,6 +149,45 @@ public class JavancssTest extends AbstractTestCase
         measureWithArgs( args );
     }
 
+    public void testCancel()
+    {
+        // cancels at the first look the token manager takes, 256 tokens into Test11
+        final int[] checks = new int[ 1 ];
+        CancelToken token = new CancelToken()
+        {
+            @Override
+            public void checkCancelled()
+            {
+                checks[ 0 ]++;
+                if ( checks[ 0 ] == 2 )
+                {
+                    cancel();
+                }
+                super.checkCancelled();
+            }
+        };
+        Javancss javancss = new Javancss();
+        javancss.setSourceFile( getTestFile( 11 ) );
+        javancss.setCancelToken( token );
+        javancss.measure();
+
+        assertTrue( javancss.isCancelled() );
+        assertEquals( "parse aborted within Test11", 2, checks[ 0 ] );
+        assertEquals( 0, javancss.getNcss() );
+        assertEquals( 0, javancss.getFunctionTable().size() );
+        assertEquals( 0, javancss.getObjectTable().size() );
+        assertEquals( 0, javancss.getPackageMetrics().size() );
+        assertNull( javancss.getLastErrorMessage() );
+
+        javancss = new Javancss();
+        javancss.setSourceFile( getTestFile( 11 ) );
+        javancss.setCancelToken( new CancelToken() );
+        javancss.measure();
+
+        assertFalse( javancss.isCancelled() );
+        assertTrue( javancss.getNcss() > 0 );
+    }
+
     public void testRecursive() throws IOException
     {
         String[] args = new String[] { "-recursive", getTestFile( "../../../lib" ).getAbsolutePath() };
@@ -0,0 +1,162 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+
+package javancss;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests the percentile histograms and their way through result
+ * files and merges.
+ *
+ * @version $Id$
+ */
+public class LogHistogramTest extends AbstractTestCase
+{
+    private static int exactPercentile( int[] sorted, double q )
+    {
+        int rank = Math.max( 1, (int) Math.ceil( q * sorted.length ) );
+
+        return sorted[ rank - 1 ];
+    }
+
+    public void testSmallValuesAreExact()
+    {
+        LogHistogram histogram = new LogHistogram();
+        assertEquals( 0, histogram.getPercentile( 0.5 ) );
+        for ( int value = 1; value <= 60; value++ )
+        {
+            histogram.add( value );
+        }
+        assertEquals( 60, histogram.getCount() );
+        assertEquals( 30, histogram.getPercentile( 0.5 ) );
+        assertEquals( 54, histogram.getPercentile( 0.9 ) );
+        assertEquals( 60, histogram.getPercentile( 0.99 ) );
+        assertEquals( "30/54/60/60", histogram.toString() );
+    }
+
+    public void testRelativeError()
+    {
+        Random random = new Random( 7 );
+        int[] values = new int[ 100000 ];
+        LogHistogram histogram = new LogHistogram();
+        for ( int i = 0; i < values.length; i++ )
+        {
+            values[ i ] = (int) Math.min( Integer.MAX_VALUE, Math.exp( random.nextDouble() * 21 ) );
+            histogram.add( values[ i ] );
+        }
+        Arrays.sort( values );
+
+        for ( double q : new double[] { 0.01, 0.5, 0.9, 0.99, 0.999, 1.0 } )
+        {
+            int exact = exactPercentile( values, q );
+            int reported = histogram.getPercentile( q );
+            assertTrue( q + ": " + reported + " < " + exact, reported >= exact );
+            assertTrue( q + ": " + reported + " > " + exact, reported <= exact + exact / 32 );
+        }
+        assertEquals( values[ values.length - 1 ], histogram.getMax() );
+        assertTrue( histogram.getBuckets() <= LogHistogram.MAX_BUCKETS );
+        assertEquals( Integer.MAX_VALUE, LogHistogram.upperBound( LogHistogram.bucket( Integer.MAX_VALUE ) ) );
+    }
+
+    private static long count( LogHistogram histogram, int bucket )
+    {
+        return bucket < histogram.getBuckets() ? histogram.getBucketCount( bucket ) : 0;
+    }
+
+    public void testMergeEqualsSingleHistogram()
+    {
+        Random random = new Random( 11 );
+        LogHistogram all = new LogHistogram();
+        LogHistogram part1 = new LogHistogram();
+        LogHistogram part2 = new LogHistogram();
+        for ( int i = 0; i < 10000; i++ )
+        {
+            int value = random.nextInt( 5000 );
+            all.add( value );
+            ( i % 3 == 0 ? part1 : part2 ).add( value );
+        }
+        LogHistogram merged = new LogHistogram();
+        merged.add( part1 );
+        merged.add( part2 );
+
+        assertEquals( all.getCount(), merged.getCount() );
+        assertEquals( all.toString(), merged.toString() );
+        for ( int bucket = 0; bucket < Math.max( all.getBuckets(), merged.getBuckets() ); bucket++ )
+        {
+            assertEquals( count( all, bucket ), count( merged, bucket ) );
+        }
+    }
+
+    private static Map<String, String> packageDistributions( Javancss javancss )
+    {
+        Map<String, String> htDistributions = new HashMap<String, String>();
+        for ( PackageMetric pkm : javancss.getPackageMetrics() )
+        {
+            htDistributions.put( pkm.name, pkm.distributions.functionNcss + " "
+                                 + pkm.distributions.functionCcn + " " + pkm.distributions.objectNcss );
+        }
+
+        return htDistributions;
+    }
+
+    public void testPackageDistributionsSurviveSavingAndMerging()
+        throws IOException
+    {
+        Javancss single = measure( 11, 12, 32, 56, 152 );
+        Javancss shard1 = measure( 11, 56 );
+        Javancss shard2 = measure( 12, 32, 152 );
+
+        File file1 = getTestFile( "shard1.jncs" );
+        ResultFile.save( shard1, file1 );
+        File xml = getTestFile( "shard2.xml" );
+        Writer w = new OutputStreamWriter( new FileOutputStream( xml ), "UTF-8" );
+        Formatter formatter = new XmlFormatter( shard2 );
+        formatter.printStart( w );
+        formatter.printPackageNcss( w );
+        formatter.printObjectNcss( w );
+        formatter.printFunctionNcss( w );
+        formatter.printEnd( w );
+        w.close();
+
+        Javancss loaded = ResultFile.load( file1 );
+        assertEquals( packageDistributions( shard1 ), packageDistributions( loaded ) );
+        assertEquals( shard1.getDistributions().functionCcn.toString(), loaded.getDistributions().functionCcn.toString() );
+
+        // computed from the tables of the XML report
+        Javancss fromXml = ResultMerger.read( xml );
+        assertEquals( shard2.getDistributions().objectNcss.toString(), fromXml.getDistributions().objectNcss.toString() );
+        assertEquals( packageDistributions( shard2 ), packageDistributions( fromXml ) );
+
+        Javancss merged = ResultMerger.merge( new File[] { file1, xml } );
+        assertEquals( packageDistributions( single ), packageDistributions( merged ) );
+        assertEquals( single.getDistributions().functionNcss.getCount(), merged.getDistributions().functionNcss.getCount() );
+        assertEquals( single.getDistributions().functionNcss.toString(), merged.getDistributions().functionNcss.toString() );
+    }
+}
@@ -0,0 +1,465 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+
+package javancss;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import javancss.parser.JavaParserInterface;
+
+/**
+ * Profiles the syntactic lookaheads of the JavaCC generated parser
+ * over a corpus of source files. Not a unit test, run it by hand
+ * after a build:
+ * <pre>
+ * java -cp ... javancss.LookaheadProfiler [-parser JavaParser.java] [-top n] file-or-directory...
+ * </pre>
+ * The generated JavaParser.java (by default the one of the maven
+ * build in target/generated-sources/javacc) is copied with a counter
+ * call at the start of every jj_2_* (a LOOKAHEAD of the grammar),
+ * jj_3R_* (an expansion tried while looking ahead), jj_scan_token
+ * (a token visited while looking ahead) and jj_consume_token (a
+ * token really consumed). The copy is compiled with the system Java
+ * compiler as ProfiledJavaParser and parses the corpus.<p>
+ *
+ * For each LOOKAHEAD, named after the production it is part of, the
+ * report lists how often it was tried, the tokens and expansions it
+ * scanned and the time it took, hottest first, followed by the
+ * speculative tokens per consumed token of the whole corpus and the
+ * most frequently called jj_3R_* methods. The parser the profile runs
+ * on is the same as the one of the build, it is only slowed down by
+ * the counters.
+ *
+ * @version $Id$
+ */
+public class LookaheadProfiler
+{
+    private static final String DEFAULT_PARSER = "target/generated-sources/javacc/javancss/parser/JavaParser.java";
+    private static final String PROFILED_CLASS = "ProfiledJavaParser";
+    private static final int SYNTACTIC = Integer.MAX_VALUE;
+
+    private static final Pattern PRODUCTION = Pattern.compile( "^  final public [\\w.<>\\[\\], ]+ (\\w+)\\([^)]*\\) throws ParseException \\{" );
+    private static final Pattern CALL_SITE = Pattern.compile( "jj_2_(\\d+)\\((\\d+)\\)" );
+    private static final Pattern CLASS_NAME = Pattern.compile( "\\bJavaParser\\b" );
+    private static final Pattern CLASS_DECLARATION = Pattern.compile( "(public class " + PROFILED_CLASS + " [^{]*\\{\n)" );
+    private static final Pattern LOOKAHEAD = Pattern.compile( "(  private boolean jj_2_(\\d+)\\(int xla\\) \\{\n)" );
+    private static final Pattern LOOKAHEAD_END = Pattern.compile( "finally \\{ jj_save\\((\\d+), xla\\); \\}" );
+    private static final Pattern RULE = Pattern.compile( "(  private boolean jj_3R_(\\d+)\\(\\) \\{\n)" );
+    private static final Pattern SCAN = Pattern.compile( "(  private boolean jj_scan_token\\(int kind\\) \\{\n)" );
+    private static final Pattern CONSUME = Pattern.compile( "(  private Token jj_consume_token\\(int kind\\) throws ParseException \\{\n)" );
+
+    /**
+     * The counters the profiled parser updates.
+     */
+    public static final Profile PROFILE = new Profile();
+
+    /**
+     * Counters of one profiling run, indexed by the number of the
+     * jj_2_* or jj_3R_* method. Site 0 collects what is scanned
+     * outside of any LOOKAHEAD, e.g. while an error is reported.
+     */
+    public static class Profile
+    {
+        long[] calls = new long[ 1 ];
+        long[] tokens = new long[ 1 ];
+        long[] rules = new long[ 1 ];
+        long[] nanos = new long[ 1 ];
+        long[] ruleCalls = new long[ 1 ];
+        long consumed = 0;
+        long scanned = 0;
+        private int _site = 0;
+
+        void reset( int sites, int ruleMethods )
+        {
+            calls = new long[ sites + 1 ];
+            tokens = new long[ sites + 1 ];
+            rules = new long[ sites + 1 ];
+            nanos = new long[ sites + 1 ];
+            ruleCalls = new long[ ruleMethods + 1 ];
+            consumed = 0;
+            scanned = 0;
+            _site = 0;
+        }
+
+        public long begin( int site )
+        {
+            _site = site;
+            calls[ site ]++;
+
+            return System.nanoTime();
+        }
+
+        public void end( int site, long start )
+        {
+            nanos[ site ] += System.nanoTime() - start;
+            _site = 0;
+        }
+
+        public void rule( int rule )
+        {
+            ruleCalls[ rule ]++;
+            rules[ _site ]++;
+        }
+
+        public void scan()
+        {
+            scanned++;
+            tokens[ _site ]++;
+        }
+
+        public void consume()
+        {
+            consumed++;
+        }
+    }
+
+    /**
+     * The instrumented parser source and where its lookaheads are.
+     */
+    static class Instrumented
+    {
+        String source;
+
+        /**
+         * Production and lookahead amount of each jj_2_* method.
+         */
+        final Map<Integer, String> htSites = new HashMap<Integer, String>();
+        int sites = 0;
+        int ruleMethods = 0;
+    }
+
+    /**
+     * Adds the counter calls to the generated parser source and
+     * renames the class to ProfiledJavaParser. Fails if the source
+     * does not look like JavaCC 5 output.
+     */
+    static Instrumented instrument( String sSource )
+    {
+        Instrumented result = new Instrumented();
+        String sSourceLf = sSource.replace( "\r\n", "\n" );
+
+        String sProduction = null;
+        Map<String, Integer> htSitesPerProduction = new HashMap<String, Integer>();
+        for ( String sLine : sSourceLf.split( "\n" ) )
+        {
+            Matcher production = PRODUCTION.matcher( sLine );
+            if ( production.find() )
+            {
+                sProduction = production.group( 1 );
+                continue;
+            }
+            Matcher site = CALL_SITE.matcher( sLine );
+            while ( site.find() && sProduction != null )
+            {
+                Integer number = Integer.valueOf( site.group( 1 ) );
+                if ( result.htSites.containsKey( number ) )
+                {
+                    continue;
+                }
+                Integer ordinal = htSitesPerProduction.get( sProduction );
+                ordinal = Integer.valueOf( ordinal == null ? 1 : ordinal.intValue() + 1 );
+                htSitesPerProduction.put( sProduction, ordinal );
+                long amount = Long.parseLong( site.group( 2 ) );
+                result.htSites.put( number, sProduction + " #" + ordinal
+                                    + ( amount == SYNTACTIC ? " (syntactic)" : " (" + amount + " tokens)" ) );
+            }
+        }
+
+        String sProfiled = CLASS_NAME.matcher( sSourceLf ).replaceAll( PROFILED_CLASS );
+        sProfiled = insertAfter( sProfiled, CLASS_DECLARATION
+                                 , "  private final javancss.LookaheadProfiler.Profile jj_profile = javancss.LookaheadProfiler.PROFILE;\n", 1 );
+        sProfiled = insertAfter( sProfiled, SCAN, "    jj_profile.scan();\n", 1 );
+        sProfiled = insertAfter( sProfiled, CONSUME, "    jj_profile.consume();\n", 1 );
+
+        StringBuffer sb = new StringBuffer( sProfiled.length() + 100000 );
+        Matcher matcher = RULE.matcher( sProfiled );
+        while ( matcher.find() )
+        {
+            result.ruleMethods = Math.max( result.ruleMethods, Integer.parseInt( matcher.group( 2 ) ) );
+            matcher.appendReplacement( sb, "$1    jj_profile.rule($2);\n" );
+        }
+        matcher.appendTail( sb );
+        sProfiled = sb.toString();
+
+        sb = new StringBuffer( sProfiled.length() + 10000 );
+        matcher = LOOKAHEAD.matcher( sProfiled );
+        while ( matcher.find() )
+        {
+            result.sites = Math.max( result.sites, Integer.parseInt( matcher.group( 2 ) ) );
+            matcher.appendReplacement( sb, "$1    long jj_start = jj_profile.begin($2);\n" );
+        }
+        matcher.appendTail( sb );
+        sProfiled = sb.toString();
+
+        sb = new StringBuffer( sProfiled.length() + 10000 );
+        matcher = LOOKAHEAD_END.matcher( sProfiled );
+        int ends = 0;
+        while ( matcher.find() )
+        {
+            int site = Integer.parseInt( matcher.group( 1 ) ) + 1;
+            matcher.appendReplacement( sb, "finally { jj_profile.end(" + site + ", jj_start); jj_save($1, xla); }" );
+            ends++;
+        }
+        matcher.appendTail( sb );
+        if ( ends != result.sites || result.htSites.size() != result.sites )
+        {
+            throw new IllegalStateException( "Unexpected parser source: " + result.sites + " lookahead methods, "
+                                             + ends + " ends, " + result.htSites.size() + " call sites" );
+        }
+        result.source = sb.toString();
+
+        return result;
+    }
+
+    private static String insertAfter( String sSource, Pattern pattern, String sInsert, int expected )
+    {
+        Matcher matcher = pattern.matcher( sSource );
+        StringBuffer sb = new StringBuffer( sSource.length() + sInsert.length() * expected );
+        int count = 0;
+        while ( matcher.find() )
+        {
+            matcher.appendReplacement( sb, "$1" + Matcher.quoteReplacement( sInsert ) );
+            count++;
+        }
+        matcher.appendTail( sb );
+        if ( count != expected )
+        {
+            throw new IllegalStateException( "Unexpected parser source: " + count + " matches of " + pattern.pattern() );
+        }
+
+        return sb.toString();
+    }
+
+    private static String read( File file )
+        throws IOException
+    {
+        InputStream in = new FileInputStream( file );
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream( (int) file.length() );
+            byte[] buffer = new byte[ 65536 ];
+            for ( int n = in.read( buffer ); n >= 0; n = in.read( buffer ) )
+            {
+                bytes.write( buffer, 0, n );
+            }
+
+            return bytes.toString( "ISO-8859-1" );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Compiles the instrumented parser into a temporary directory and
+     * returns its constructor taking a Reader.
+     */
+    private static Constructor<?> compile( Instrumented instrumented )
+        throws Exception
+    {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if ( compiler == null )
+        {
+            throw new IllegalStateException( "No Java compiler available, run with a JDK" );
+        }
+        File dir = File.createTempFile( "javancss-profile", "" );
+        dir.delete();
+        File packageDir = new File( dir, "javancss/parser" );
+        packageDir.mkdirs();
+        File source = new File( packageDir, PROFILED_CLASS + ".java" );
+        Writer w = new OutputStreamWriter( new FileOutputStream( source ), "ISO-8859-1" );
+        try
+        {
+            w.write( instrumented.source );
+        }
+        finally
+        {
+            w.close();
+        }
+
+        int status = compiler.run( null, null, null, "-nowarn", "-encoding", "ISO-8859-1"
+                                   , "-cp", System.getProperty( "java.class.path" )
+                                   , "-d", dir.getPath(), source.getPath() );
+        if ( status != 0 )
+        {
+            throw new IllegalStateException( "Compiling the profiled parser failed" );
+        }
+        ClassLoader loader = new URLClassLoader( new URL[] { dir.toURI().toURL() }, LookaheadProfiler.class.getClassLoader() );
+
+        return loader.loadClass( "javancss.parser." + PROFILED_CLASS ).getConstructor( Reader.class );
+    }
+
+    private static void collect( File file, List<File> vFiles )
+    {
+        if ( file.isDirectory() )
+        {
+            File[] children = file.listFiles();
+            if ( children != null )
+            {
+                for ( File child : children )
+                {
+                    collect( child, vFiles );
+                }
+            }
+        }
+        else if ( file.getName().endsWith( ".java" ) )
+        {
+            vFiles.add( file );
+        }
+    }
+
+    private static String millis( long nanos )
+    {
+        return String.valueOf( nanos / 1000000 );
+    }
+
+    public static void main( String[] args )
+        throws Exception
+    {
+        File parser = new File( DEFAULT_PARSER );
+        int top = 20;
+        List<File> vFiles = new ArrayList<File>();
+        for ( int i = 0; i < args.length; i++ )
+        {
+            if ( args[ i ].equals( "-parser" ) )
+            {
+                parser = new File( args[ ++i ] );
+            }
+            else if ( args[ i ].equals( "-top" ) )
+            {
+                top = Integer.parseInt( args[ ++i ] );
+            }
+            else
+            {
+                collect( new File( args[ i ] ), vFiles );
+            }
+        }
+
+        final Instrumented instrumented = instrument( read( parser ) );
+        Constructor<?> constructor = compile( instrumented );
+        final Profile profile = PROFILE;
+        profile.reset( instrumented.sites, instrumented.ruleMethods );
+
+        int failed = 0;
+        long start = System.nanoTime();
+        for ( File file : vFiles )
+        {
+            Reader reader = new InputStreamReader( new FileInputStream( file ), "ISO-8859-1" );
+            try
+            {
+                ( (JavaParserInterface) constructor.newInstance( reader ) ).parse();
+            }
+            catch ( Throwable e )
+            {
+                failed++;
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        long total = System.nanoTime() - start;
+
+        List<Integer> vSites = new ArrayList<Integer>();
+        long lookaheadNanos = 0;
+        for ( int site = 1; site <= instrumented.sites; site++ )
+        {
+            vSites.add( Integer.valueOf( site ) );
+            lookaheadNanos += profile.nanos[ site ];
+        }
+        Collections.sort( vSites, new Comparator<Integer>()
+        {
+            public int compare( Integer site1, Integer site2 )
+            {
+                long nanos1 = profile.nanos[ site1.intValue() ];
+                long nanos2 = profile.nanos[ site2.intValue() ];
+
+                return nanos1 > nanos2 ? -1 : ( nanos1 == nanos2 ? site1.compareTo( site2 ) : 1 );
+            }
+        } );
+
+        System.out.println( String.format( "%3s %10s %12s %12s %8s %s", "Nr.", "Calls", "Tokens", "Rules", "Millis", "Lookahead" ) );
+        for ( int nr = 1; nr <= Math.min( top, vSites.size() ); nr++ )
+        {
+            int site = vSites.get( nr - 1 ).intValue();
+            System.out.println( String.format( "%3d %10d %12d %12d %8s %s (jj_2_%d)", nr, profile.calls[ site ], profile.tokens[ site ]
+                                               , profile.rules[ site ], millis( profile.nanos[ site ] )
+                                               , instrumented.htSites.get( Integer.valueOf( site ) ), site ) );
+        }
+
+        System.out.println();
+        System.out.println( "Files:                 " + vFiles.size() + ( failed > 0 ? " (" + failed + " failed)" : "" ) );
+        System.out.println( "Consumed tokens:       " + profile.consumed );
+        System.out.println( "Speculative tokens:    " + profile.scanned
+                            + String.format( " (%.2f per consumed token)", profile.consumed == 0 ? 0.0 : (double) profile.scanned / profile.consumed ) );
+        System.out.println( "Lookahead millis:      " + millis( lookaheadNanos ) + " of " + millis( total ) );
+
+        List<Integer> vRules = new ArrayList<Integer>();
+        for ( int rule = 1; rule < profile.ruleCalls.length; rule++ )
+        {
+            if ( profile.ruleCalls[ rule ] > 0 )
+            {
+                vRules.add( Integer.valueOf( rule ) );
+            }
+        }
+        Collections.sort( vRules, new Comparator<Integer>()
+        {
+            public int compare( Integer rule1, Integer rule2 )
+            {
+                long calls1 = profile.ruleCalls[ rule1.intValue() ];
+                long calls2 = profile.ruleCalls[ rule2.intValue() ];
+
+                return calls1 > calls2 ? -1 : ( calls1 == calls2 ? rule1.compareTo( rule2 ) : 1 );
+            }
+        } );
+        System.out.println();
+        System.out.println( String.format( "%3s %12s %s", "Nr.", "Calls", "Expansion" ) );
+        for ( int nr = 1; nr <= Math.min( top, vRules.size() ); nr++ )
+        {
+            int rule = vRules.get( nr - 1 ).intValue();
+            System.out.println( String.format( "%3d %12d jj_3R_%d", nr, profile.ruleCalls[ rule ], rule ) );
+        }
+    }
+}
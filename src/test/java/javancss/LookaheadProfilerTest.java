@@ -0,0 +1,109 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+
+package javancss;
+
+/**
+ * Tests the instrumentation of the generated parser source used by
+ * LookaheadProfiler.
+ *
+ * @version $Id$
+ */
+public class LookaheadProfilerTest extends AbstractTestCase
+{
+    private static final String PARSER =
+          "/* Generated By:JavaCC: Do not edit this line. JavaParser.java */\n"
+        + "package javancss.parser;\n"
+        + "public class JavaParser implements JavaParserInterface, JavaParserConstants {\n"
+        + "  final public void Statement() throws ParseException {\n"
+        + "    if (jj_2_1(2147483647)) {\n"
+        + "    } else if (jj_2_2(2)) {\n"
+        + "    }\n"
+        + "  }\n"
+        + "  final public String Name() throws ParseException {\n"
+        + "    if (jj_2_3(2147483647)) {\n"
+        + "    }\n"
+        + "  }\n"
+        + "  private boolean jj_2_1(int xla) {\n"
+        + "    jj_la = xla; jj_lastpos = jj_scanpos = token;\n"
+        + "    try { return !jj_3_1(); }\n"
+        + "    catch(LookaheadSuccess ls) { return true; }\n"
+        + "    finally { jj_save(0, xla); }\n"
+        + "  }\n"
+        + "  private boolean jj_2_2(int xla) {\n"
+        + "    jj_la = xla; jj_lastpos = jj_scanpos = token;\n"
+        + "    try { return !jj_3_2(); }\n"
+        + "    catch(LookaheadSuccess ls) { return true; }\n"
+        + "    finally { jj_save(1, xla); }\n"
+        + "  }\n"
+        + "  private boolean jj_2_3(int xla) {\n"
+        + "    jj_la = xla; jj_lastpos = jj_scanpos = token;\n"
+        + "    try { return !jj_3_3(); }\n"
+        + "    catch(LookaheadSuccess ls) { return true; }\n"
+        + "    finally { jj_save(2, xla); }\n"
+        + "  }\n"
+        + "  private boolean jj_3R_7() {\n"
+        + "    return false;\n"
+        + "  }\n"
+        + "  public JavaParser(java.io.Reader stream) {\n"
+        + "  }\n"
+        + "  private Token jj_consume_token(int kind) throws ParseException {\n"
+        + "    return null;\n"
+        + "  }\n"
+        + "  private boolean jj_scan_token(int kind) {\n"
+        + "    return false;\n"
+        + "  }\n"
+        + "}\n";
+
+    public void testInstrument()
+    {
+        LookaheadProfiler.Instrumented instrumented = LookaheadProfiler.instrument( PARSER.replace( "\n", "\r\n" ) );
+
+        assertEquals( 3, instrumented.sites );
+        assertEquals( 7, instrumented.ruleMethods );
+        assertEquals( "Statement #1 (syntactic)", instrumented.htSites.get( Integer.valueOf( 1 ) ) );
+        assertEquals( "Statement #2 (2 tokens)", instrumented.htSites.get( Integer.valueOf( 2 ) ) );
+        assertEquals( "Name #1 (syntactic)", instrumented.htSites.get( Integer.valueOf( 3 ) ) );
+
+        String sSource = instrumented.source;
+        assertTrue( sSource.contains( "public class ProfiledJavaParser implements JavaParserInterface, JavaParserConstants {\n"
+                                      + "  private final javancss.LookaheadProfiler.Profile jj_profile" ) );
+        assertTrue( sSource.contains( "public ProfiledJavaParser(java.io.Reader stream)" ) );
+        assertTrue( sSource.contains( "  private boolean jj_2_2(int xla) {\n    long jj_start = jj_profile.begin(2);\n" ) );
+        assertTrue( sSource.contains( "finally { jj_profile.end(3, jj_start); jj_save(2, xla); }" ) );
+        assertTrue( sSource.contains( "  private boolean jj_3R_7() {\n    jj_profile.rule(7);\n" ) );
+        assertTrue( sSource.contains( "throws ParseException {\n    jj_profile.consume();\n    return null;" ) );
+        assertTrue( sSource.contains( "(int kind) {\n    jj_profile.scan();\n    return false;" ) );
+    }
+
+    public void testUnexpectedSource()
+    {
+        try
+        {
+            LookaheadProfiler.instrument( PARSER.replace( "jj_save(1, xla);", "jj_save(1, xla); jj_other();" ) );
+            fail( "changed lookahead method not detected" );
+        }
+        catch ( IllegalStateException e )
+        {
+            assertTrue( e.getMessage().startsWith( "Unexpected parser source" ) );
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests sorting metric tables through temporary files.
+ *
+ * @version $Id$
+ */
+public class MetricTableSorterTest extends AbstractTestCase
+{
+    private static MetricTable createTable( int rows )
+    {
+        Random random = new Random( 7 );
+        MetricTable table = new MetricTable();
+        for ( int i = 0; i < rows; i++ )
+        {
+            FunctionMetric function = new FunctionMetric();
+            // few distinct names, so equal names have to be ordered by their metrics
+            function.name = "pkg.Class" + random.nextInt( rows / 4 ) + ".method()";
+            function.ncss = random.nextInt( 5 );
+            function.ccn = random.nextInt( 3 );
+            table.add( function );
+        }
+
+        return table;
+    }
+
+    private static void assertSameRows( MetricTable expected, int[] order, MetricTable actual )
+    {
+        assertEquals( expected.size(), actual.size() );
+        for ( int i = 0; i < order.length; i++ )
+        {
+            assertEquals( 0, expected.compareRows( order[ i ], actual, i ) );
+        }
+    }
+
+    public void testInMemory()
+    {
+        MetricTable table = createTable( 500 );
+        MetricTable sorted = MetricTableSorter.sort( table );
+        assertSameRows( table, table.getNameOrder(), sorted );
+    }
+
+    public void testRuns()
+    {
+        MetricTable table = createTable( 5000 );
+        MetricTable sorted = MetricTableSorter.sort( table, 300 );
+        assertSameRows( table, table.getNameOrder(), sorted );
+    }
+
+    public void testSeveralMergePasses()
+    {
+        MetricTable table = createTable( 3 * MetricTableSorter.MAX_FAN_IN * 20 );
+        MetricTable sorted = MetricTableSorter.sort( table, 20 );
+        assertSameRows( table, table.getNameOrder(), sorted );
+    }
+
+    public void testWithinBudget()
+    {
+        MetricTable table = createTable( 20000 );
+        int[] order = table.getNameOrder();
+        table.setMemoryBudget( 256 * 1024 );
+        MetricTable sorted = MetricTableSorter.sort( table );
+        assertTrue( sorted.getSpilledRows() > 0 );
+        assertSameRows( table, order, sorted );
+    }
+
+    public void testNameOrderOfSpilledTable()
+    {
+        MetricTable table = createTable( 20000 );
+        int[] expected = table.getNameOrder();
+        MetricTable spilled = new MetricTable();
+        spilled.setMemoryBudget( 256 * 1024 );
+        for ( int row = 0; row < table.size(); row++ )
+        {
+            spilled.addRow( table, row );
+        }
+        assertTrue( spilled.getSpilledRows() > 0 );
+        assertTrue( Arrays.equals( expected, spilled.getNameOrder() ) );
+        assertTrue( Arrays.equals( expected, MetricTableSorter.getNameOrder( table, 20 ) ) );
+    }
+}
@@ -0,0 +1,161 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.util.List;
+
+/**
+ * Tests for the columnar metric storage.
+ *
+ * @version $Id$
+ */
+public class MetricTableTest extends AbstractTestCase
+{
+    public void testGrowAndView()
+    {
+        MetricTable table = new MetricTable();
+        for ( int i = 0; i < 1000; i++ )
+        {
+            FunctionMetric metric = new FunctionMetric();
+            metric.name = "A.f" + i + "()";
+            metric.ncss = i;
+            metric.ccn = i % 7;
+            metric.javadocs = i % 2;
+            table.add( metric );
+        }
+
+        assertEquals( 1000, table.size() );
+        assertEquals( "A.f500()", table.getName( 500 ) );
+        assertEquals( 500, table.getNcss( 500 ) );
+        assertEquals( 500 % 7, table.getCcn( 500 ) );
+        assertEquals( 999L * 1000 / 2, table.sum( MetricTable.NCSS ) );
+
+        List<FunctionMetric> vFunctions = table.asFunctionList();
+        assertEquals( 1000, vFunctions.size() );
+        FunctionMetric metric = vFunctions.get( 999 );
+        assertEquals( "A.f999()", metric.name );
+        assertEquals( 999 % 7, metric.ccn );
+        assertEquals( 1, metric.javadocs );
+
+        try
+        {
+            table.getNcss( 1000 );
+            fail( "row out of range" );
+        }
+        catch ( IndexOutOfBoundsException expected )
+        {
+        }
+    }
+
+    public void testNameIndex()
+    {
+        String[] asNames = { "a.b.C.g()", "a.b.C.f(java.util.List)", "Top", "a.b.C", "a.b.D.h(a.b.C, int)",
+                             "a.b.C.f()", "a.b.C$1.run()", "a.b.C.g()" };
+        MetricTable table = new MetricTable();
+        for ( int i = 0; i < asNames.length; i++ )
+        {
+            FunctionMetric metric = new FunctionMetric();
+            metric.name = asNames[ i ];
+            metric.ncss = i;
+            table.add( metric );
+        }
+
+        int[] order = table.getNameOrder();
+        for ( int i = 0; i < asNames.length; i++ )
+        {
+            assertEquals( asNames[ i ], table.getName( i ) );
+            if ( i > 0 )
+            {
+                assertTrue( table.getName( order[ i - 1 ] ).compareTo( table.getName( order[ i ] ) ) <= 0 );
+            }
+        }
+        assertEquals( 0, order[ 5 ] );
+        assertEquals( 7, order[ 6 ] );
+        assertEquals( 4, order[ 7 ] );
+    }
+
+    public void testSpill()
+    {
+        MetricTable table = new MetricTable();
+        table.setMemoryBudget( 4096 );
+        for ( int i = 0; i < 200000; i++ )
+        {
+            ObjectMetric metric = new ObjectMetric();
+            metric.name = "p\u00e4ckage.C" + i;
+            metric.ncss = i;
+            metric.functions = i % 11;
+            metric.classes = i % 3;
+            table.add( metric );
+        }
+
+        assertEquals( 200000, table.size() );
+        assertTrue( table.getSpilledRows() > 0 );
+        assertEquals( 199999L * 200000 / 2, table.sum( MetricTable.NCSS ) );
+        for ( int row = 0; row < table.size(); row++ )
+        {
+            assertEquals( row, table.getNcss( row ) );
+            assertEquals( row % 11, table.getFunctions( row ) );
+        }
+        ObjectMetric metric = table.asObjectList().get( 123456 );
+        assertEquals( "p\u00e4ckage.C123456", metric.name );
+        assertEquals( 123456 % 3, metric.classes );
+        assertEquals( "p\u00e4ckage.C7", table.getName( 7 ) );
+
+        table.clear();
+        assertEquals( 0, table.size() );
+        assertEquals( 0, table.getSpilledRows() );
+    }
+
+    public void testClearDeletesSpillFiles()
+    {
+        int before = countSpillFiles();
+        MetricTable table = new MetricTable();
+        table.setMemoryBudget( 1024 );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            FunctionMetric metric = new FunctionMetric();
+            metric.name = "C.f" + i + "()";
+            table.add( metric );
+        }
+        assertTrue( table.getSpilledRows() > 0 );
+        assertEquals( before + 1, countSpillFiles() );
+
+        table.clear();
+        assertEquals( before, countSpillFiles() );
+    }
+
+    public void testSameAsParser()
+    {
+        Javancss javancss = measureTestFile( 32 );
+        MetricTable objectTable = javancss.getObjectTable();
+        List<ObjectMetric> vObjects = javancss.getObjectMetrics();
+
+        assertEquals( objectTable.size(), vObjects.size() );
+        for ( int row = 0; row < objectTable.size(); row++ )
+        {
+            ObjectMetric metric = vObjects.get( row );
+            assertEquals( objectTable.getName( row ), metric.name );
+            assertEquals( objectTable.getNcss( row ), metric.ncss );
+            assertEquals( objectTable.getFunctions( row ), metric.functions );
+            assertEquals( objectTable.getClasses( row ), metric.classes );
+        }
+    }
+}
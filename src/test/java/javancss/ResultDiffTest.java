@@ -0,0 +1,231 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests comparing two results.
+ *
+ * @version $Id$
+ */
+public class ResultDiffTest extends AbstractTestCase
+{
+    private static class Collector
+        implements ResultDiff.Handler
+    {
+        final List<String> vAdded = new ArrayList<String>();
+        final List<String> vRemoved = new ArrayList<String>();
+        final List<String> vChanged = new ArrayList<String>();
+
+        public void added( String sKind, Metric metric )
+        {
+            vAdded.add( sKind + " " + metric.name );
+        }
+
+        public void removed( String sKind, Metric metric )
+        {
+            vRemoved.add( sKind + " " + metric.name );
+        }
+
+        public void changed( String sKind, Metric oldMetric, Metric newMetric )
+        {
+            assertEquals( oldMetric.name, newMetric.name );
+            vChanged.add( sKind + " " + oldMetric.name );
+        }
+    }
+
+    private static Set<String> names( List<FunctionMetric> vFunctions )
+    {
+        Set<String> names = new HashSet<String>();
+        for ( FunctionMetric function : vFunctions )
+        {
+            names.add( function.name );
+        }
+
+        return names;
+    }
+
+    private static Javancss functions( int... ncss )
+    {
+        MetricTable functionTable = new MetricTable();
+        for ( int value : ncss )
+        {
+            FunctionMetric metric = new FunctionMetric();
+            metric.name = "A.f()";
+            metric.ncss = value;
+            functionTable.add( metric );
+        }
+        Javancss result = new Javancss();
+        result.setResult( 0, 0, new ArrayList<PackageMetric>(), new MetricTable(), functionTable );
+
+        return result;
+    }
+
+    public void testDuplicateNames()
+        throws IOException
+    {
+        Collector collector = new Collector();
+        ResultDiff.diff( functions( 10, 5 ), functions( 12, 10 ), collector );
+        assertEquals( 2, collector.vChanged.size() );
+        assertEquals( 0, collector.vAdded.size() );
+
+        collector = new Collector();
+        ResultDiff.diff( functions( 10, 5 ), functions( 5, 12, 10 ), collector );
+        assertEquals( 0, collector.vChanged.size() );
+        assertEquals( 1, collector.vAdded.size() );
+    }
+
+    public void testSameResult()
+        throws IOException
+    {
+        Javancss result = measure( 11, 56 );
+        Collector collector = new Collector();
+        ResultDiff.diff( result, result, collector );
+
+        assertEquals( 0, collector.vAdded.size() );
+        assertEquals( 0, collector.vRemoved.size() );
+        assertEquals( 0, collector.vChanged.size() );
+    }
+
+    public void testAddedAndRemoved()
+        throws IOException
+    {
+        Javancss oldResult = measure( 11, 56 );
+        Javancss newResult = measure( 11, 32 );
+        Collector collector = new Collector();
+        ResultDiff.diff( oldResult, newResult, collector );
+
+        Set<String> oldNames = names( oldResult.getFunctionMetrics() );
+        Set<String> newNames = names( newResult.getFunctionMetrics() );
+        int added = 0;
+        for ( String name : newNames )
+        {
+            if ( !oldNames.contains( name ) )
+            {
+                added++;
+                assertTrue( name, collector.vAdded.contains( ResultDiff.FUNCTION + " " + name ) );
+            }
+        }
+        int removed = 0;
+        for ( String name : oldNames )
+        {
+            if ( !newNames.contains( name ) )
+            {
+                removed++;
+                assertTrue( name, collector.vRemoved.contains( ResultDiff.FUNCTION + " " + name ) );
+            }
+        }
+        assertTrue( added > 0 );
+        assertTrue( removed > 0 );
+    }
+
+    public void testFilesWithIndex()
+        throws IOException
+    {
+        Javancss oldResult = measure( 11, 12, 56 );
+        Javancss newResult = measure( 12, 32, 56, 152 );
+        File oldFile = getTestFile( "old.jncs" );
+        File newFile = getTestFile( "new.jncs" );
+        ResultFile.save( oldResult, oldFile );
+        ResultFile.save( newResult, newFile );
+
+        StringWriter expected = new StringWriter();
+        ResultDiff.diff( oldResult, newResult, new ResultDiff.TextWriter( expected ) );
+        StringWriter actual = new StringWriter();
+        ResultDiff.diff( oldFile, newFile, new ResultDiff.TextWriter( actual ) );
+
+        assertEquals( expected.toString(), actual.toString() );
+        assertTrue( actual.toString().indexOf( "+ function " ) >= 0 );
+        assertTrue( actual.toString().indexOf( "- function " ) >= 0 );
+    }
+
+    public void testWithinBudget()
+        throws IOException
+    {
+        Javancss oldResult = measure( 11, 12, 56 );
+        Javancss newResult = measure( 12, 32, 56, 152 );
+        File oldFile = getTestFile( "old.jncs" );
+        File newFile = getTestFile( "new.xml" );
+        ResultFile.save( oldResult, oldFile );
+        Writer w = new OutputStreamWriter( new FileOutputStream( newFile ), "UTF-8" );
+        Formatter formatter = new XmlFormatter( newResult );
+        formatter.printStart( w );
+        formatter.printPackageNcss( w );
+        formatter.printObjectNcss( w );
+        formatter.printFunctionNcss( w );
+        formatter.printEnd( w );
+        w.close();
+
+        StringWriter expected = new StringWriter();
+        ResultDiff.diff( oldFile, newFile, new ResultDiff.TextWriter( expected ) );
+        StringWriter actual = new StringWriter();
+        ResultDiff.diff( oldFile, newFile, new ResultDiff.TextWriter( actual ), 4 );
+
+        assertEquals( expected.toString(), actual.toString() );
+        assertTrue( actual.toString().indexOf( "+ function " ) >= 0 );
+    }
+
+    public void testChangedLine()
+        throws IOException
+    {
+        FunctionMetric oldFunction = new FunctionMetric();
+        oldFunction.name = "a.B.c()";
+        oldFunction.ncss = 4;
+        oldFunction.ccn = 2;
+        FunctionMetric newFunction = new FunctionMetric();
+        newFunction.name = "a.B.c()";
+        newFunction.ncss = 6;
+        newFunction.ccn = 2;
+        newFunction.javadocs = 1;
+
+        MetricTable oldTable = new MetricTable();
+        oldTable.add( oldFunction );
+        MetricTable newTable = new MetricTable();
+        newTable.add( newFunction );
+        Javancss oldResult = new Javancss();
+        oldResult.setResult( 4, 10, new ArrayList<PackageMetric>(), new MetricTable(), oldTable );
+        Javancss newResult = new Javancss();
+        newResult.setResult( 7, 12, new ArrayList<PackageMetric>(), new MetricTable(), newTable );
+
+        StringWriter w = new StringWriter();
+        ResultDiff.TextWriter writer = new ResultDiff.TextWriter( w );
+        ResultDiff.diff( oldResult, newResult, writer );
+        writer.printSummary( w, oldResult.getNcss(), newResult.getNcss() );
+
+        String[] asLines = w.toString().split( "\r?\n" );
+        assertEquals( Arrays.asList( "~ function a.B.c()  ncss 4 -> 6 (+2)  javadocs 0 -> 1 (+1)"
+                                     , "Packages: 0 added, 0 removed, 0 changed"
+                                     , "Classes: 0 added, 0 removed, 0 changed"
+                                     , "Functions: 0 added, 0 removed, 1 changed"
+                                     , "Program NCSS: 4 -> 7 (+3)" ), Arrays.asList( asLines ) );
+    }
+}
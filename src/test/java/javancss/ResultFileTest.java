@@ -0,0 +1,113 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests saving and loading binary result files.
+ *
+ * @version $Id$
+ */
+public class ResultFileTest extends AbstractTestCase
+{
+    public void testRoundTrip()
+        throws IOException
+    {
+        List<File> vFiles = new ArrayList<File>();
+        vFiles.add( getTestFile( 32 ) );
+        vFiles.add( getTestFile( 56 ) );
+        vFiles.add( getTestFile( 152 ) );
+        Javancss javancss = new Javancss( vFiles );
+
+        File file = getTestFile( "result.jncs" );
+        ResultFile.save( javancss, file );
+        ResultFile result = ResultFile.read( file );
+        Javancss loaded = result.getJavancss();
+
+        assertEquals( javancss.getNcss(), loaded.getNcss() );
+        assertEquals( javancss.getLOC(), loaded.getLOC() );
+        assertEquals( javancss.getJvdc(), loaded.getJvdc() );
+        assertEquals( javancss.getJdcl(), loaded.getJdcl() );
+        assertEquals( javancss.getSl(), loaded.getSl() );
+        assertEquals( javancss.getMl(), loaded.getMl() );
+        assertEquals( format( javancss ), format( loaded ) );
+
+        int[] index = result.getFunctionIndex();
+        MetricTable functions = loaded.getFunctionTable();
+        assertEquals( functions.size(), index.length );
+        for ( int i = 1; i < index.length; i++ )
+        {
+            assertTrue( functions.getName( index[ i - 1 ] ).compareTo( functions.getName( index[ i ] ) ) <= 0 );
+        }
+
+        ResultFile.save( javancss, file, false );
+        assertNull( ResultFile.read( file ).getObjectIndex() );
+        assertEquals( format( javancss ), format( ResultFile.load( file ) ) );
+    }
+
+    public void testWithinBudget()
+        throws IOException
+    {
+        List<File> vFiles = new ArrayList<File>();
+        vFiles.add( getTestFile( 32 ) );
+        vFiles.add( getTestFile( 56 ) );
+        vFiles.add( getTestFile( 152 ) );
+        Javancss javancss = new Javancss();
+        javancss.setMemoryBudget( 2 );
+        javancss.measure( vFiles );
+        assertTrue( javancss.getFunctionTable().getSpilledRows() > 0 );
+
+        File file = getTestFile( "budget.jncs" );
+        ResultFile.save( javancss, file );
+        Javancss loaded = new Javancss();
+        loaded.setMemoryBudget( 2 );
+        ResultFile result = ResultFile.read( file, loaded );
+        assertTrue( loaded.getFunctionTable().getSpilledRows() > 0 );
+        assertEquals( format( new Javancss( vFiles ) ), format( loaded ) );
+        assertTrue( Arrays.equals( new Javancss( vFiles ).getFunctionTable().getNameOrder(), result.getFunctionIndex() ) );
+
+        javancss.close();
+        loaded.close();
+    }
+
+    public void testNotAResultFile()
+        throws IOException
+    {
+        File file = getTestFile( "garbage.jncs" );
+        FileOutputStream out = new FileOutputStream( file );
+        out.write( new byte[ 100 ] );
+        out.close();
+        try
+        {
+            ResultFile.load( file );
+            fail( "garbage loaded" );
+        }
+        catch ( IOException expected )
+        {
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests merging of partial results.
+ *
+ * @version $Id$
+ */
+public class ResultMergerTest extends AbstractTestCase
+{
+    public void testShardsGiveSameResultAsSingleRun()
+        throws IOException
+    {
+        Javancss single = measure( 11, 12, 32, 56, 152 );
+        Javancss shard1 = measure( 11, 56 );
+        Javancss shard2 = measure( 12, 32, 152 );
+
+        File file1 = getTestFile( "shard1.jncs" );
+        File file2 = getTestFile( "shard2.jncs" );
+        ResultFile.save( shard1, file1 );
+        ResultFile.save( shard2, file2 );
+
+        Javancss expected = ResultMerger.merge( Arrays.asList( single ) );
+        Javancss merged = ResultMerger.merge( new File[] { file1, file2 } );
+
+        assertEquals( single.getNcss(), merged.getNcss() );
+        assertEquals( single.getLOC(), merged.getLOC() );
+        assertEquals( single.getJvdc(), merged.getJvdc() );
+        assertEquals( single.getJdcl(), merged.getJdcl() );
+        assertEquals( single.getSl(), merged.getSl() );
+        assertEquals( single.getMl(), merged.getMl() );
+        assertTrue( merged.getJdcl() > 0 );
+        assertEquals( single.getFunctionMetrics().size(), merged.getFunctionMetrics().size() );
+        assertEquals( format( expected ), format( merged ) );
+
+        MetricTable functions = merged.getFunctionTable();
+        for ( int row = 1; row < functions.size(); row++ )
+        {
+            assertTrue( functions.getName( row - 1 ).compareTo( functions.getName( row ) ) <= 0 );
+        }
+    }
+
+    public void testXmlInput()
+        throws IOException
+    {
+        Javancss shard1 = measure( 11, 56 );
+        Javancss shard2 = measure( 32 );
+
+        File xml = getTestFile( "shard1.xml" );
+        Writer w = new OutputStreamWriter( new FileOutputStream( xml ), "UTF-8" );
+        Formatter formatter = new XmlFormatter( shard1 );
+        formatter.printStart( w );
+        formatter.printPackageNcss( w );
+        formatter.printObjectNcss( w );
+        formatter.printFunctionNcss( w );
+        formatter.printEnd( w );
+        w.close();
+        File binary = getTestFile( "shard2.jncs" );
+        ResultFile.save( shard2, binary );
+
+        Javancss fromXml = ResultMerger.read( xml );
+        assertEquals( shard1.getNcss(), fromXml.getNcss() );
+        assertEquals( shard1.getPackageMetrics().size(), fromXml.getPackageMetrics().size() );
+        assertEquals( shard1.getObjectMetrics().size(), fromXml.getObjectMetrics().size() );
+        assertEquals( shard1.getFunctionMetrics().get( 3 ).name, fromXml.getFunctionMetrics().get( 3 ).name );
+        assertEquals( shard1.getFunctionMetrics().get( 3 ).ccn, fromXml.getFunctionMetrics().get( 3 ).ccn );
+
+        Javancss merged = ResultMerger.merge( new File[] { xml, binary } );
+        Javancss expected = ResultMerger.merge( Arrays.asList( shard1, shard2 ) );
+        assertEquals( expected.getNcss(), merged.getNcss() );
+        assertEquals( format( expected ), format( merged ) );
+    }
+
+    public void testXmlWithDoctype()
+        throws IOException
+    {
+        File secret = getTestFile( "secret.txt" );
+        Writer w = new OutputStreamWriter( new FileOutputStream( secret ), "UTF-8" );
+        w.write( "42" );
+        w.close();
+        File xml = getTestFile( "doctype.xml" );
+        w = new OutputStreamWriter( new FileOutputStream( xml ), "UTF-8" );
+        w.write( "<?xml version=\"1.0\"?>\n"
+                 + "<!DOCTYPE javancss [ <!ENTITY ncss SYSTEM \"" + secret.toURI() + "\"> ]>\n"
+                 + "<javancss><ncss>&ncss;</ncss></javancss>\n" );
+        w.close();
+
+        try
+        {
+            ResultMerger.read( xml );
+            fail( "document type declaration accepted" );
+        }
+        catch ( IOException expected )
+        {
+        }
+    }
+
+    public void testWithinBudget()
+        throws IOException
+    {
+        Javancss shard1 = measure( 11, 56 );
+        Javancss shard2 = measure( 12, 32, 152 );
+        File file1 = getTestFile( "shard1.jncs" );
+        File file2 = getTestFile( "shard2.jncs" );
+        ResultFile.save( shard1, file1 );
+        ResultFile.save( shard2, file2, false );
+
+        List<Javancss> vInputs = new ArrayList<Javancss>();
+        for ( File file : new File[] { file1, file2 } )
+        {
+            Javancss input = new Javancss();
+            input.setMemoryBudget( 2 );
+            ResultMerger.read( file, input );
+            assertTrue( input.getFunctionTable().getSpilledRows() > 0 );
+            vInputs.add( input );
+        }
+        assertTrue( vInputs.get( 0 ).getFunctionTable().hasNameOrder() );
+        assertFalse( vInputs.get( 1 ).getFunctionTable().hasNameOrder() );
+
+        Javancss merged = new Javancss();
+        merged.setMemoryBudget( 2 );
+        ResultMerger.merge( vInputs, merged );
+        assertEquals( format( ResultMerger.merge( Arrays.asList( shard1, shard2 ) ) ), format( merged ) );
+
+        merged.close();
+        for ( Javancss input : vInputs )
+        {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests the -shard file partitioning.
+ *
+ * @version $Id$
+ */
+public class ShardTest extends AbstractTestCase
+{
+    private List<File> testFiles( int from, int to )
+    {
+        List<File> vFiles = new ArrayList<File>();
+        for ( int id = from; id <= to; id++ )
+        {
+            vFiles.add( getTestFile( id ) );
+        }
+
+        return vFiles;
+    }
+
+    private void assertPartition( List<File> vFiles, int count, boolean balanceBySize )
+    {
+        Set<File> seen = new HashSet<File>();
+        for ( int index = 1; index <= count; index++ )
+        {
+            Shard shard = new Shard( index, count );
+            shard.setBalanceBySize( balanceBySize );
+            for ( File file : shard.select( vFiles ) )
+            {
+                assertTrue( "in two shards: " + file, seen.add( file ) );
+            }
+        }
+        assertEquals( vFiles.size(), seen.size() );
+    }
+
+    public void testPartition()
+    {
+        List<File> vFiles = testFiles( 1, 150 );
+        assertPartition( vFiles, 1, false );
+        assertPartition( vFiles, 7, false );
+        assertPartition( vFiles, 16, false );
+        assertPartition( vFiles, 16, true );
+    }
+
+    public void testStableWhenFilesAreAdded()
+    {
+        List<File> vFiles = testFiles( 1, 100 );
+        List<File> vMoreFiles = testFiles( 1, 150 );
+        for ( int index = 1; index <= 16; index++ )
+        {
+            Shard shard = new Shard( index, 16 );
+            List<File> vSelected = shard.select( vMoreFiles );
+            for ( File file : shard.select( vFiles ) )
+            {
+                assertTrue( "moved: " + file, vSelected.contains( file ) );
+            }
+        }
+    }
+
+    public void testBalanceBySize()
+    {
+        List<File> vFiles = testFiles( 1, 150 );
+        long total = 0;
+        long largest = 0;
+        for ( File file : vFiles )
+        {
+            total += file.length();
+            largest = Math.max( largest, file.length() );
+        }
+        for ( int index = 1; index <= 4; index++ )
+        {
+            Shard shard = new Shard( index, 4 );
+            shard.setBalanceBySize( true );
+            long size = 0;
+            for ( File file : shard.select( vFiles ) )
+            {
+                size += file.length();
+            }
+            assertTrue( "shard " + index + " too large: " + size, size <= Math.max( 1.25 * total / 4, largest ) );
+        }
+    }
+
+    public void testParse()
+    {
+        Shard shard = Shard.parse( "3/16" );
+        assertEquals( 3, shard.getIndex() );
+        assertEquals( 16, shard.getCount() );
+        try
+        {
+            Shard.parse( "0/16" );
+            fail( "shard 0 accepted" );
+        }
+        catch ( IllegalArgumentException expected )
+        {
+        }
+        try
+        {
+            Shard.parse( "3" );
+            fail( "missing count accepted" );
+        }
+        catch ( IllegalArgumentException expected )
+        {
+        }
+    }
+
+    public void testRelativePath()
+    {
+        assertEquals( "target/test-classes/Test1.java", Shard.relativePath( getTestFile( 1 ) ) );
+    }
+}
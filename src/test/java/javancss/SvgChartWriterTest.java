@@ -0,0 +1,130 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Checks the SVG charts against the ones the stylesheets in
+ * xslt/svg make of the xml output.
+ *
+ * @version $Id$
+ */
+public class SvgChartWriterTest extends AbstractTestCase
+{
+    /**
+     * Texts and bar positions and widths, which is what tells charts apart.
+     */
+    private static final Pattern CONTENT = Pattern.compile( "<text[^>]*>([^<]*)</text>|<rect x=\"464\" y=\"(\\d+)\" width=\"(\\d+)\"" );
+
+    private static List<String> content( String sSvg )
+    {
+        List<String> vContent = new ArrayList<String>();
+        Matcher matcher = CONTENT.matcher( sSvg );
+        while ( matcher.find() )
+        {
+            if ( matcher.group( 1 ) != null )
+            {
+                vContent.add( matcher.group( 1 ).replaceAll( "\\s+", " " ).trim() );
+            }
+            else
+            {
+                vContent.add( matcher.group( 2 ) + ":" + matcher.group( 3 ) );
+            }
+        }
+
+        return vContent;
+    }
+
+    private String transform( String sXml, String sStylesheet )
+        throws Exception
+    {
+        StreamSource styleSource = new StreamSource( new File( getTestDir(), "../../xslt/svg/" + sStylesheet ) );
+        Transformer transformer = TransformerFactory.newInstance().newTransformer( styleSource );
+        ByteArrayOutputStream output = new ByteArrayOutputStream( 4096 );
+        transformer.transform( new StreamSource( new StringReader( sXml ) ), new StreamResult( output ) );
+
+        return output.toString( "UTF-8" );
+    }
+
+    public void testSameChartsAsStylesheets()
+        throws Exception
+    {
+        List<File> vFiles = new ArrayList<File>();
+        for ( int test = 1; test <= 60; test++ )
+        {
+            vFiles.add( getTestFile( test ) );
+        }
+        Javancss javancss = new Javancss( vFiles, null );
+
+        Formatter formatter = new XmlFormatter( javancss );
+        StringWriter sw = new StringWriter();
+        formatter.printStart( sw );
+        formatter.printPackageNcss( sw );
+        formatter.printObjectNcss( sw );
+        formatter.printFunctionNcss( sw );
+        formatter.printEnd( sw );
+        String sXml = sw.toString();
+
+        File directory = new File( getTestDir(), "svg" );
+        SvgChartWriter.writeCharts( javancss, directory );
+
+        String[] asCharts = { SvgChartWriter.CHART_CCN, SvgChartWriter.CHART_NCSS
+                              , SvgChartWriter.CHART_NCSS_PACKAGE, SvgChartWriter.CHART_FUNCTION_PACKAGE };
+        for ( String sChart : asCharts )
+        {
+            List<String> vExpected = content( transform( sXml, sChart.replace( ".svg", ".xsl" ) ) );
+            List<String> vContent = content( FileUtils.readFileToString( new File( directory, sChart ), "UTF-8" ) );
+            assertEquals( 7 + 11 + 11 + 11, vContent.size() );
+            assertEquals( sChart, vExpected, vContent );
+        }
+    }
+
+    public void testLargeValues()
+    {
+        SvgChartWriter.Distribution distribution = new SvgChartWriter.Distribution();
+        distribution.add( 1 );
+        distribution.add( 2 );
+        distribution.add( 3 );
+        distribution.add( 100000 );
+        assertEquals( 25001.5, distribution.getAverage(), 0.0001 );
+        assertEquals( 10001, distribution.getStep() );
+        assertEquals( 3, distribution.count( 0, 10001 ) );
+        assertEquals( 0, distribution.count( 10001, 20002 ) );
+        assertEquals( 1, distribution.count( 90009, 100010 ) );
+        assertEquals( 0, distribution.count( 100010, Long.MAX_VALUE ) );
+        assertEquals( 4, distribution.count( 0, Long.MAX_VALUE ) );
+    }
+}
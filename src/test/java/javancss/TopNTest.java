@@ -0,0 +1,160 @@
+/*
+Copyright (C) 2014 Chr. Clemens Lee <clemens@kclee.com>.
+
+This file is part of JavaNCSS
+(http://javancss.codehaus.org/).
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA*/
+
+package javancss;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Tests the -top mode.
+ *
+ * @version $Id$
+ */
+public class TopNTest extends AbstractTestCase
+{
+    private static FunctionMetric function( String name, int ncss, int ccn )
+    {
+        FunctionMetric function = new FunctionMetric();
+        function.name = name;
+        function.ncss = ncss;
+        function.ccn = ccn;
+
+        return function;
+    }
+
+    public void testBoundedHeap()
+    {
+        TopN<FunctionMetric> top = new TopN<FunctionMetric>( 3, TopN.CCN );
+        top.offer( function( "a", 10, 1 ) );
+        top.offer( function( "b", 1, 7 ) );
+        top.offer( function( "c", 1, 3 ) );
+        top.offer( function( "d", 1, 9 ) );
+        top.offer( function( "e", 1, 3 ) );
+        top.offer( function( "f", 1, 2 ) );
+        assertEquals( 3, top.size() );
+
+        List<FunctionMetric> vTop = top.toList();
+        assertEquals( "d", vTop.get( 0 ).name );
+        assertEquals( "b", vTop.get( 1 ).name );
+        // equal values are ranked by name
+        assertEquals( "c", vTop.get( 2 ).name );
+    }
+
+    public void testInvalidMetric()
+    {
+        try
+        {
+            new TopN<FunctionMetric>( 3, "loc" );
+            fail();
+        }
+        catch ( IllegalArgumentException e )
+        {
+        }
+    }
+
+    public void testCommandLine()
+        throws IOException
+    {
+        int[] testFileIds = { 11, 12, 32, 56, 152 };
+        Javancss all = measure( testFileIds );
+        List<String> vArgs = new ArrayList<String>();
+        vArgs.add( "-top" );
+        vArgs.add( "5" );
+        vArgs.add( "-by" );
+        vArgs.add( "ccn" );
+        for ( int id : testFileIds )
+        {
+            vArgs.add( getTestFile( id ).getAbsolutePath() );
+        }
+
+        List<FunctionMetric> vExpected = new ArrayList<FunctionMetric>( all.getFunctionMetrics() );
+        Collections.sort( vExpected, new Comparator<FunctionMetric>()
+        {
+            public int compare( FunctionMetric f1, FunctionMetric f2 )
+            {
+                if ( f1.ccn != f2.ccn )
+                {
+                    return f1.ccn > f2.ccn ? -1 : 1;
+                }
+
+                return f1.name.compareTo( f2.name );
+            }
+        } );
+
+        PrintStream psStdout = System.out;
+        Javancss top;
+        try
+        {
+            System.setOut( new PrintStream( new ByteArrayOutputStream() ) );
+            top = new Javancss( vArgs.toArray( new String[ vArgs.size() ] ) );
+        }
+        finally
+        {
+            System.setOut( psStdout );
+        }
+
+        List<FunctionMetric> vTop = top.getFunctionMetrics();
+        assertEquals( 5, vTop.size() );
+        for ( int i = 0; i < vTop.size(); i++ )
+        {
+            assertEquals( vExpected.get( i ).name, vTop.get( i ).name );
+            assertEquals( vExpected.get( i ).ccn, vTop.get( i ).ccn );
+        }
+        assertTrue( top.getObjectMetrics().size() <= 5 );
+        assertTrue( top.getPackageMetrics().size() <= 5 );
+        assertEquals( all.getNcss(), top.getNcss() );
+
+        // the averages and totals still cover all functions, objects and packages
+        assertEquals( summary( all ), summary( top ) );
+        assertEquals( all.getFunctionMetrics().size(), top.getTotals().getFunctions() );
+        assertEquals( all.getPackageMetrics().size(), top.getTotals().getPackages() );
+    }
+
+    /**
+     * The lines of the ASCII report that are not about single entries.
+     */
+    private static String summary( Javancss javancss )
+        throws IOException
+    {
+        AsciiFormatter pFormatter = new AsciiFormatter( javancss );
+        StringWriter sw = new StringWriter();
+        pFormatter.printPackageNcss( sw );
+        pFormatter.printObjectNcss( sw );
+        pFormatter.printFunctionNcss( sw );
+        StringBuilder sb = new StringBuilder();
+        for ( String sLine : sw.toString().split( "\\r?\\n" ) )
+        {
+            if ( sLine.startsWith( "Average" ) || sLine.startsWith( "Program" ) || sLine.contains( "Total" )
+                 || sLine.contains( "Project" ) )
+            {
+                sb.append( sLine ).append( '\n' );
+            }
+        }
+
+        return sb.toString();
+    }
+}
@@ -177,6 +177,12 @@
         <td colspan="5">Average Object Javadoc Comments:</td>
         <td><xsl:value-of select="averages/javadocs"/></td>
       </tr>
+      <xsl:if test="percentiles">
+        <tr>
+          <td colspan="5">Object NCSS p50/p90/p99/max:</td>
+          <td><xsl:value-of select="concat(percentiles/percentile[@metric='ncss']/@p50,'/',percentiles/percentile[@metric='ncss']/@p90,'/',percentiles/percentile[@metric='ncss']/@p99,'/',percentiles/percentile[@metric='ncss']/@max)"/></td>
+        </tr>
+      </xsl:if>
       <tr>
         <td colspan="5">Program NCSS:</td>
         <td><xsl:value-of select="ncss"/></td>
@@ -219,6 +225,16 @@
         <td colspan="4">Average Function Javadocs:</td>
         <td><xsl:value-of select="function_averages/javadocs"/></td>
       </tr>
+      <xsl:if test="percentiles">
+        <tr>
+          <td colspan="4">Function NCSS p50/p90/p99/max:</td>
+          <td><xsl:value-of select="concat(percentiles/percentile[@metric='ncss']/@p50,'/',percentiles/percentile[@metric='ncss']/@p90,'/',percentiles/percentile[@metric='ncss']/@p99,'/',percentiles/percentile[@metric='ncss']/@max)"/></td>
+        </tr>
+        <tr>
+          <td colspan="4">Function CCN p50/p90/p99/max:</td>
+          <td><xsl:value-of select="concat(percentiles/percentile[@metric='ccn']/@p50,'/',percentiles/percentile[@metric='ccn']/@p90,'/',percentiles/percentile[@metric='ccn']/@p99,'/',percentiles/percentile[@metric='ccn']/@max)"/></td>
+        </tr>
+      </xsl:if>
       <tr>
         <td colspan="4">Program NCSS:</td>
         <td><xsl:value-of select="ncss"/></td>
@@ -105,6 +105,11 @@ Average Object Inner Classes:    </xsl:text>
     <xsl:text>
 Average Object Javadoc Comments: </xsl:text>
     <xsl:call-template name="pad"><xsl:with-param name="length" select="9"/><xsl:with-param name="value" select="averages/javadocs"/></xsl:call-template>
+    <xsl:if test="percentiles">
+      <xsl:text>
+Object NCSS p50/p90/p99/max: </xsl:text>
+      <xsl:call-template name="pad"><xsl:with-param name="length" select="13"/><xsl:with-param name="value" select="concat(percentiles/percentile[@metric='ncss']/@p50,'/',percentiles/percentile[@metric='ncss']/@p90,'/',percentiles/percentile[@metric='ncss']/@p99,'/',percentiles/percentile[@metric='ncss']/@max)"/></xsl:call-template>
+    </xsl:if>
     <xsl:text>
 Program NCSS:                    </xsl:text>
     <xsl:call-template name="pad"><xsl:with-param name="length" select="9"/><xsl:with-param name="value" select="ncss"/></xsl:call-template>
@@ -142,6 +147,17 @@ Average Function CCN:  </xsl:text>
     <xsl:text>
 Average Function JVDC: </xsl:text>
     <xsl:call-template name="pad"><xsl:with-param name="length" select="10"/><xsl:with-param name="value" select="function_averages/javadocs"/></xsl:call-template>
+    <xsl:if test="percentiles">
+      <xsl:variable name="ncss" select="concat(percentiles/percentile[@metric='ncss']/@p50,'/',percentiles/percentile[@metric='ncss']/@p90,'/',percentiles/percentile[@metric='ncss']/@p99,'/',percentiles/percentile[@metric='ncss']/@max)"/>
+      <xsl:variable name="ccn" select="concat(percentiles/percentile[@metric='ccn']/@p50,'/',percentiles/percentile[@metric='ccn']/@p90,'/',percentiles/percentile[@metric='ccn']/@p99,'/',percentiles/percentile[@metric='ccn']/@max)"/>
+      <xsl:variable name="length" select="java:java.lang.Math.max(string-length($ncss),string-length($ccn))"/>
+      <xsl:text>
+Function NCSS p50/p90/p99/max: </xsl:text>
+      <xsl:call-template name="pad"><xsl:with-param name="length" select="$length"/><xsl:with-param name="value" select="$ncss"/></xsl:call-template>
+      <xsl:text>
+Function CCN p50/p90/p99/max:  </xsl:text>
+      <xsl:call-template name="pad"><xsl:with-param name="length" select="$length"/><xsl:with-param name="value" select="$ccn"/></xsl:call-template>
+    </xsl:if>
     <xsl:text>
 Program NCSS:          </xsl:text>
     <xsl:call-template name="pad"><xsl:with-param name="length" select="10"/><xsl:with-param name="value" select="ncss"/></xsl:call-template>